@@ -0,0 +1,68 @@
+package me.hugmanrique.riviere.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the time it takes each thread to add {@link #BATCH_SIZE}
+ * elements to a shared target.
+ *
+ * <p>A fresh target is created for every iteration, so its size
+ * is bounded by the batch size times the number of threads.
+ * Run with {@code -prof gc} to measure allocation rates.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 20, batchSize = AcceptBenchmark.BATCH_SIZE)
+@Measurement(iterations = 20, batchSize = AcceptBenchmark.BATCH_SIZE)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AcceptBenchmark {
+
+    static final int BATCH_SIZE = 100_000;
+
+    @Param
+    Implementation implementation;
+
+    @Param
+    ElementType elementType;
+
+    @Param({ "16", "1024" })
+    int initialCapacity;
+
+    Target target;
+    final AtomicInteger threadIndices = new AtomicInteger();
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        target = implementation.create(elementType, initialCapacity);
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        int value;
+
+        @Setup(Level.Trial)
+        public void setUp(final AcceptBenchmark benchmark) {
+            // Spread the added values between threads
+            value = benchmark.threadIndices.getAndIncrement() * BATCH_SIZE;
+        }
+    }
+
+    @Benchmark
+    public void accept(final ThreadState state) {
+        target.accept(state.value++);
+    }
+}
@@ -0,0 +1,50 @@
+package me.hugmanrique.riviere.benchmark;
+
+import java.io.IOException;
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks selected by the given JMH command line options
+ * once for every thread count in {@link #THREAD_COUNTS}, unless
+ * a thread count is given with {@code -t}. The GC profiler is
+ * enabled unless other profilers are given with {@code -prof}.
+ */
+public final class BenchmarkRunner {
+
+    private static final int[] THREAD_COUNTS = { 1, 2, 4, 8, 16, 32, 64 };
+
+    public static void main(final String[] args)
+            throws CommandLineOptionException, IOException, RunnerException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        if (commandLine.shouldHelp() || commandLine.shouldList()
+                || commandLine.shouldListProfilers() || commandLine.shouldListResultFormats()) {
+            Main.main(args);
+            return;
+        }
+
+        if (commandLine.getThreads().hasValue()) {
+            new Runner(options(commandLine).build()).run();
+            return;
+        }
+        for (int threads : THREAD_COUNTS)
+            new Runner(options(commandLine).threads(threads).build()).run();
+    }
+
+    private static ChainedOptionsBuilder options(final CommandLineOptions commandLine) {
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine);
+        if (commandLine.getProfilers().isEmpty())
+            options.addProfiler(GCProfiler.class);
+        return options;
+    }
+
+    private BenchmarkRunner() {
+        throw new AssertionError();
+    }
+}
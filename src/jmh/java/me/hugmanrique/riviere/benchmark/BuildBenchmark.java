@@ -0,0 +1,61 @@
+package me.hugmanrique.riviere.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the time it takes to build a stream from a filled target
+ * (if applicable) and traverse all its elements.
+ *
+ * <p>Targets are filled by a single thread, before every invocation.
+ * Run with a single benchmark thread.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BuildBenchmark {
+
+    @Param
+    Implementation implementation;
+
+    @Param
+    ElementType elementType;
+
+    @Param({ "16", "1024" })
+    int initialCapacity;
+
+    @Param({ "1000", "1000000" })
+    int size;
+
+    @Param({ "false", "true" })
+    boolean parallel;
+
+    Target target;
+
+    // Filling takes longer than a timer call, Level.Invocation is fine here
+    @Setup(Level.Invocation)
+    public void setUp() {
+        target = implementation.create(elementType, initialCapacity);
+        for (int i = 0; i < size; i++)
+            target.accept(i);
+    }
+
+    @Benchmark
+    public long buildAndTraverse() {
+        return target.traverse(parallel);
+    }
+}
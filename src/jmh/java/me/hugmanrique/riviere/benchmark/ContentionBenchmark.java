@@ -0,0 +1,67 @@
+package me.hugmanrique.riviere.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import me.hugmanrique.riviere.BuilderOptions;
+import me.hugmanrique.riviere.ContentionStrategy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the time it takes each thread to add {@link #BATCH_SIZE}
+ * elements to a shared ordered builder with the given contention
+ * strategy.
+ *
+ * <p>Meant to be run with 64 threads ({@code -t 64}, since
+ * {@link BenchmarkRunner} otherwise overrides the thread count),
+ * comparing the allocation rates reported by the GC profiler.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 20, batchSize = ContentionBenchmark.BATCH_SIZE)
+@Measurement(iterations = 20, batchSize = ContentionBenchmark.BATCH_SIZE)
+@Fork(1)
+@Threads(64)
+@State(Scope.Benchmark)
+public class ContentionBenchmark {
+
+    static final int BATCH_SIZE = 100_000;
+
+    @Param
+    ContentionStrategy strategy;
+
+    @Param({ "INT", "REFERENCE" })
+    ElementType elementType;
+
+    @Param({ "16", "1024" })
+    int initialCapacity;
+
+    Target target;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        target = Implementation.riviere(elementType, BuilderOptions.defaults()
+                .withInitialCapacity(initialCapacity)
+                .withContentionStrategy(strategy));
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        int value;
+    }
+
+    @Benchmark
+    public void accept(final ThreadState state) {
+        target.accept(state.value++);
+    }
+}
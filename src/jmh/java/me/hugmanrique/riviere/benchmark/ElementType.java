@@ -0,0 +1,50 @@
+package me.hugmanrique.riviere.benchmark;
+
+/**
+ * The type of the elements added to a {@link Target}.
+ */
+public enum ElementType {
+    INT,
+    LONG,
+    DOUBLE,
+    REFERENCE;
+
+    private static final int REFERENCE_COUNT = 1024;
+    private static final Object[] REFERENCES = new Object[REFERENCE_COUNT];
+
+    static {
+        for (int i = 0; i < REFERENCE_COUNT; i++)
+            REFERENCES[i] = new Object();
+    }
+
+    /**
+     * Returns a reference element. References are preallocated, so
+     * adding them to a target doesn't measure their allocation.
+     *
+     * @param value the element sequence number
+     * @return the reference element
+     */
+    static Object reference(final int value) {
+        return REFERENCES[value & (REFERENCE_COUNT - 1)];
+    }
+
+    /**
+     * Returns the element with the given sequence number, boxed if
+     * this is a primitive type.
+     *
+     * @param value the element sequence number
+     * @return the (boxed) element
+     */
+    Object box(final int value) {
+        switch (this) {
+            case INT:
+                return value;
+            case LONG:
+                return (long) value;
+            case DOUBLE:
+                return (double) value;
+            default:
+                return reference(value);
+        }
+    }
+}
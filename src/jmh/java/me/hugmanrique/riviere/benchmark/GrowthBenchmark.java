@@ -0,0 +1,86 @@
+package me.hugmanrique.riviere.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import me.hugmanrique.riviere.BuilderOptions;
+import me.hugmanrique.riviere.GrowthPolicy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the time it takes to fill an ordered builder with
+ * the given growth policy, build a stream and traverse it.
+ *
+ * <p>Run with a single benchmark thread, and with {@code -prof gc}
+ * to compare the allocation rates of each policy.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GrowthBenchmark {
+
+    /**
+     * The maximum capacity of capped and fixed nodes.
+     */
+    private static final int NODE_CAPACITY = 1 << 20;
+
+    public enum Policy {
+        GEOMETRIC {
+            @Override
+            GrowthPolicy create(final int size) {
+                return GrowthPolicy.geometric();
+            }
+        },
+        CAPPED {
+            @Override
+            GrowthPolicy create(final int size) {
+                return GrowthPolicy.geometric(NODE_CAPACITY);
+            }
+        },
+        FIXED {
+            @Override
+            GrowthPolicy create(final int size) {
+                return GrowthPolicy.fixed(NODE_CAPACITY);
+            }
+        },
+        HINTED {
+            @Override
+            GrowthPolicy create(final int size) {
+                return GrowthPolicy.hinted(size);
+            }
+        };
+
+        abstract GrowthPolicy create(int size);
+    }
+
+    @Param
+    Policy policy;
+
+    @Param({ "INT", "REFERENCE" })
+    ElementType elementType;
+
+    @Param({ "1000", "1000000", "10000000" })
+    int size;
+
+    @Param({ "false", "true" })
+    boolean parallel;
+
+    @Benchmark
+    public long fillAndTraverse() {
+        Target target = Implementation.riviere(elementType,
+                BuilderOptions.defaults().withGrowthPolicy(policy.create(size)));
+        for (int i = 0; i < size; i++)
+            target.accept(i);
+        return target.traverse(parallel);
+    }
+}
@@ -0,0 +1,114 @@
+package me.hugmanrique.riviere.benchmark;
+
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import me.hugmanrique.riviere.BuilderOptions;
+import me.hugmanrique.riviere.ConcurrentDoubleStreamBuilder;
+import me.hugmanrique.riviere.ConcurrentIntStreamBuilder;
+import me.hugmanrique.riviere.ConcurrentLongStreamBuilder;
+import me.hugmanrique.riviere.ConcurrentStreamBuilder;
+import me.hugmanrique.riviere.UnorderedConcurrentDoubleStreamBuilder;
+import me.hugmanrique.riviere.UnorderedConcurrentIntStreamBuilder;
+import me.hugmanrique.riviere.UnorderedConcurrentLongStreamBuilder;
+import me.hugmanrique.riviere.UnorderedConcurrentStreamBuilder;
+
+/**
+ * The benchmarked {@link Target} implementations.
+ */
+public enum Implementation {
+    RIVIERE {
+        @Override
+        Target create(final ElementType elementType, final int initialCapacity) {
+            return riviere(elementType, options(initialCapacity));
+        }
+    },
+    RIVIERE_CHUNKED {
+        @Override
+        Target create(final ElementType elementType, final int initialCapacity) {
+            return riviere(elementType, options(initialCapacity).withChunkSize(CHUNK_SIZE));
+        }
+    },
+    RIVIERE_UNORDERED {
+        @Override
+        Target create(final ElementType elementType, final int initialCapacity) {
+            BuilderOptions options = options(initialCapacity);
+            switch (elementType) {
+                case INT:
+                    return new Target.OfInt(new UnorderedConcurrentIntStreamBuilder(options));
+                case LONG:
+                    return new Target.OfLong(new UnorderedConcurrentLongStreamBuilder(options));
+                case DOUBLE:
+                    return new Target.OfDouble(new UnorderedConcurrentDoubleStreamBuilder(options));
+                default:
+                    return new Target.OfRef(new UnorderedConcurrentStreamBuilder<>(options));
+            }
+        }
+    },
+    SYNCHRONIZED_BUILDER {
+        @Override
+        Target create(final ElementType elementType, final int initialCapacity) {
+            switch (elementType) {
+                case INT:
+                    return new Target.Synchronized(new Target.OfInt(IntStream.builder()));
+                case LONG:
+                    return new Target.Synchronized(new Target.OfLong(LongStream.builder()));
+                case DOUBLE:
+                    return new Target.Synchronized(new Target.OfDouble(DoubleStream.builder()));
+                default:
+                    return new Target.Synchronized(new Target.OfRef(Stream.builder()));
+            }
+        }
+    },
+    SYNCHRONIZED_LIST {
+        @Override
+        Target create(final ElementType elementType, final int initialCapacity) {
+            return new Target.Synchronized(new Target.OfCollection(
+                    new ArrayList<>(initialCapacity), elementType));
+        }
+    },
+    CONCURRENT_LINKED_QUEUE {
+        @Override
+        Target create(final ElementType elementType, final int initialCapacity) {
+            return new Target.OfCollection(new ConcurrentLinkedQueue<>(), elementType);
+        }
+    };
+
+    private static final int CHUNK_SIZE = 64;
+
+    /**
+     * Creates an empty target.
+     *
+     * @param elementType the type of the added elements
+     * @param initialCapacity the initial capacity, if applicable
+     * @return the target
+     */
+    abstract Target create(ElementType elementType, int initialCapacity);
+
+    static BuilderOptions options(final int initialCapacity) {
+        return BuilderOptions.defaults().withInitialCapacity(initialCapacity);
+    }
+
+    /**
+     * Creates an empty ordered builder target.
+     *
+     * @param elementType the type of the added elements
+     * @param options the builder options
+     * @return the target
+     */
+    static Target riviere(final ElementType elementType, final BuilderOptions options) {
+        switch (elementType) {
+            case INT:
+                return new Target.OfInt(new ConcurrentIntStreamBuilder(options));
+            case LONG:
+                return new Target.OfLong(new ConcurrentLongStreamBuilder(options));
+            case DOUBLE:
+                return new Target.OfDouble(new ConcurrentDoubleStreamBuilder(options));
+            default:
+                return new Target.OfRef(new ConcurrentStreamBuilder<>(options));
+        }
+    }
+}
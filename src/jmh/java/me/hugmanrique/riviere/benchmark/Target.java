@@ -0,0 +1,150 @@
+package me.hugmanrique.riviere.benchmark;
+
+import java.util.Collection;
+import java.util.Objects;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ * A container elements are concurrently added to, and then traversed.
+ *
+ * <p>Every call is dispatched through this interface, so
+ * the overhead is the same for all implementations.
+ */
+interface Target {
+
+    /**
+     * Adds the element with the given sequence number.
+     *
+     * @param value the element sequence number
+     */
+    void accept(int value);
+
+    /**
+     * Builds a stream (if applicable) and traverses all the elements.
+     *
+     * @param parallel whether to traverse the elements in parallel
+     * @return a checksum of the elements
+     */
+    long traverse(boolean parallel);
+
+    final class OfInt implements Target {
+        private final IntStream.Builder builder;
+
+        OfInt(final IntStream.Builder builder) {
+            this.builder = builder;
+        }
+
+        @Override
+        public void accept(final int value) {
+            builder.accept(value);
+        }
+
+        @Override
+        public long traverse(final boolean parallel) {
+            IntStream stream = builder.build();
+            return (parallel ? stream.parallel() : stream).asLongStream().sum();
+        }
+    }
+
+    final class OfLong implements Target {
+        private final LongStream.Builder builder;
+
+        OfLong(final LongStream.Builder builder) {
+            this.builder = builder;
+        }
+
+        @Override
+        public void accept(final int value) {
+            builder.accept(value);
+        }
+
+        @Override
+        public long traverse(final boolean parallel) {
+            LongStream stream = builder.build();
+            return (parallel ? stream.parallel() : stream).sum();
+        }
+    }
+
+    final class OfDouble implements Target {
+        private final DoubleStream.Builder builder;
+
+        OfDouble(final DoubleStream.Builder builder) {
+            this.builder = builder;
+        }
+
+        @Override
+        public void accept(final int value) {
+            builder.accept(value);
+        }
+
+        @Override
+        public long traverse(final boolean parallel) {
+            DoubleStream stream = builder.build();
+            return (long) (parallel ? stream.parallel() : stream).sum();
+        }
+    }
+
+    final class OfRef implements Target {
+        private final Stream.Builder<Object> builder;
+
+        OfRef(final Stream.Builder<Object> builder) {
+            this.builder = builder;
+        }
+
+        @Override
+        public void accept(final int value) {
+            builder.accept(ElementType.reference(value));
+        }
+
+        @Override
+        public long traverse(final boolean parallel) {
+            Stream<Object> stream = builder.build();
+            // Stream#count() may not traverse SIZED streams
+            return (parallel ? stream.parallel() : stream).filter(Objects::nonNull).count();
+        }
+    }
+
+    final class OfCollection implements Target {
+        private final Collection<Object> collection;
+        private final ElementType elementType;
+
+        OfCollection(final Collection<Object> collection, final ElementType elementType) {
+            this.collection = collection;
+            this.elementType = elementType;
+        }
+
+        @Override
+        public void accept(final int value) {
+            collection.add(elementType.box(value));
+        }
+
+        @Override
+        public long traverse(final boolean parallel) {
+            Stream<Object> stream = parallel ? collection.parallelStream() : collection.stream();
+            if (elementType == ElementType.REFERENCE)
+                return stream.filter(Objects::nonNull).count();
+            return stream.mapToLong(element -> ((Number) element).longValue()).sum();
+        }
+    }
+
+    final class Synchronized implements Target {
+        private final Target target;
+
+        Synchronized(final Target target) {
+            this.target = target;
+        }
+
+        @Override
+        public synchronized void accept(final int value) {
+            target.accept(value);
+        }
+
+        @Override
+        public synchronized long traverse(final boolean parallel) {
+            return target.traverse(parallel);
+        }
+    }
+}
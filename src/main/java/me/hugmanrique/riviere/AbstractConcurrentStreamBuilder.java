@@ -3,7 +3,18 @@ package me.hugmanrique.riviere;
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.VarHandle;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Spliterator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
 import java.util.stream.Stream;
 
 /**
@@ -25,9 +36,8 @@ import java.util.stream.Stream;
  * actions subsequent to building the stream in another thread.
  *
  * @param <A> the array type for the stream element type
- * @param <S> the supplier type for the stream element type
  */
-abstract class AbstractConcurrentStreamBuilder<A, S> {
+abstract class AbstractConcurrentStreamBuilder<A> {
 
     // This is a modification of the enqueuing algorithm based on
     // a singly linked unrolled list proposed by B. Didot
@@ -53,25 +63,129 @@ abstract class AbstractConcurrentStreamBuilder<A, S> {
     // addHint is replaced by a thread-safe counter incremented atomically
     // on every write attempt.
     //
+    // Enqueuing is split in two steps so that subclasses can write
+    // values of their element type directly into the claimed slot
+    // without boxing or capturing them: #lastNode finds the last Node,
+    // and #claim reserves a slot in it (appending an empty Node if it
+    // is full, in which case the caller retries).
+    //
+    // If the chunk size is greater than 1, each thread instead claims
+    // a range of slots with a single atomic operation (see Chunk) and
+    // fills them in order. This breaks the fourth invariant: a thread
+    // may not fill its last range before the builder is built. These
+    // holes are compacted when transitioning to the built state.
+    // The number of items in each Node is then stored in its size,
+    // and the index of its first item in its offset.
+    // Slots left in a chunk are claimed without accessing the count,
+    // so each addition is bracketed by the counter of its Writer (as
+    // with rotation, see below), incremented in volatile mode before
+    // reading the built flag, also in volatile mode. The transition
+    // sets the flag and then waits until every odd counter changes:
+    // either the adding thread sees the flag and fails, or its items
+    // (and chunk) are initialized before compacting. Chunks are then
+    // cleared, so they don't retain the nodes of built builders, and
+    // the chunks (and writers) of terminated threads are removed.
+    // If running statistics are enabled, additions are bracketed in
+    // the same way, so that the statistics updated by each adding
+    // thread (see #itemsStored) are visible once the builder is built.
+    //
     // The tail is permitted to lag. Both head and tail may point to
     // an empty Node. Since no dequeuing is performed, tail cannot lag
     // behind head, so head need not be a dummy node as in
     // the original implementation.
+    //
+    // In streaming mode, each Node has an array of ready flags, set
+    // (in volatile mode) after initializing the item in each slot.
+    // A single consumer follows the list from the head, reading
+    // items up to the first slot that is not ready. This relaxes
+    // the fifth invariant for that consumer only. Chunks are not
+    // supported in this mode, since the consumer would wait for
+    // ranges that may never be filled.
+    //
+    // If rotation is enabled, the list is cut at its last Node by
+    // appending a Node with the initial capacity, and then filling
+    // the count of the cut Node so that later claims fail. The Nodes
+    // up to the cut form a segment whose items are sealed and
+    // traversed as in the built state, and the appended Node becomes
+    // the head. Items claimed before the cut
+    // may not be initialized yet, so each adding thread increments
+    // a counter before claiming a slot and after initializing it
+    // (see Writer). The cut waits until every odd counter changes.
+    // Since the claim precedes the cut in the synchronization order
+    // of the count, the counter increment is visible to the cut.
+    // The writers of terminated threads are then removed, so that
+    // the cost of a cut doesn't grow with the number of threads that
+    // ever added elements.
+    //
+    // If the number of elements is limited, a permit is acquired
+    // before claiming each slot, and the permits of a segment are
+    // released when it is cut. Nodes are then never larger than
+    // the limit, nor than the number of available permits (or 1).
+    //
+    // Under contention, many threads may find the last Node full at
+    // once. By default each of them allocates a Node and attempts to
+    // append it, and the losers discard theirs. Otherwise (see
+    // ContentionStrategy), a single thread is elected by CASing the
+    // appender flag of the full Node, and the others wait until its
+    // next reference is set. The flag is cleared if the elected thread
+    // fails to allocate the Node, so that another one is elected.
+    //
+    // If preallocation is enabled, the thread claiming the slot at
+    // the threshold of a Node allocates the next Node (directly, or
+    // on the given executor), and stores it in the prepared field of
+    // the Node instead of appending it, which would break the first
+    // invariant. Threads finding the Node full then append the prepared
+    // Node, as they do with spares. If another Node is appended first,
+    // the prepared Node is discarded by whichever thread clears the
+    // field.
+    //
+    // If metrics are enabled, contended operations are counted where
+    // they are detected (see MetricsRecorder), and the time spent
+    // adding elements is measured between #beginWrite and #endWrite.
+    // Otherwise the recorder is null, and each of these points costs
+    // a single predictable branch.
 
     /**
      * The default initial capacity of the first {@link Node} in
      * a {@link AbstractConcurrentStreamBuilder}.
      */
-    private static final int DEFAULT_INITIAL_CAPACITY = 16;
+    static final int DEFAULT_INITIAL_CAPACITY = 16;
+
+    /**
+     * The characteristics of built spliterators.
+     */
+    static final int CHARACTERISTICS = Spliterator.ORDERED | Spliterator.SIZED
+            | Spliterator.SUBSIZED
+            // Once the builder is in built state, no further modifications can be made
+            | Spliterator.IMMUTABLE;
 
     /**
-     * The maximum capacity of a {@link Node}.
+     * The default maximum capacity of a {@link Node}.
      */
     // Prevents overflow by a single left-shift when creating the next Node
-    private static final int MAX_NODE_CAPACITY = 1 << 30;
+    static final int MAX_NODE_CAPACITY = 1 << 30;
+
+    /**
+     * The maximum length of an array returned by {@code toArray}.
+     */
+    // Some VMs reserve header words in an array
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
 
-    abstract static class Node<A, S> {
-        private volatile Node<A, S> next;
+    /**
+     * The number of times a thread waiting for a node to be appended
+     * spins before parking, with {@link ContentionStrategy#BACKOFF}.
+     */
+    private static final int BACKOFF_SPINS = 1 << 6;
+
+    /**
+     * The minimum and maximum times a thread waiting for a node to be
+     * appended parks, with {@link ContentionStrategy#BACKOFF}.
+     */
+    private static final long MIN_PARK_NANOS = 1L << 10;
+    private static final long MAX_PARK_NANOS = 1L << 20;
+
+    abstract static class Node<A> {
+        private volatile Node<A> next;
         protected final A items;
         private final int capacity;
 
@@ -88,6 +202,45 @@ abstract class AbstractConcurrentStreamBuilder<A, S> {
          */
         private volatile int count;
 
+        /**
+         * The number of items, computed when the builder transitions
+         * to the built state.
+         */
+        private int size;
+
+        /**
+         * The index of the first item in the builder, computed when
+         * the builder transitions to the built state.
+         */
+        private long offset;
+
+        /**
+         * An empty node (the first in a chain of empty nodes linked by
+         * this field) to append after this node, recycled by
+         * {@link #reset()}. Never modified once the node is reachable
+         * by adding threads.
+         */
+        private Node<A> spare;
+
+        /**
+         * The ready flag of each slot, or {@code null} if the builder
+         * is not in streaming mode.
+         */
+        private byte[] ready;
+
+        /**
+         * Whether a thread has been elected to append the next node,
+         * unless the contention strategy is {@link ContentionStrategy#COMPETE}.
+         */
+        @SuppressWarnings("UnusedVariable")
+        private volatile boolean appending;
+
+        /**
+         * The node allocated in advance to be appended after this node,
+         * or {@code null}.
+         */
+        private volatile Node<A> prepared;
+
         /**
          * Constructs an empty node that can hold {@code capacity} items.
          *
@@ -101,22 +254,78 @@ abstract class AbstractConcurrentStreamBuilder<A, S> {
         }
 
         /**
-         * Constructs a node that can hold {@code capacity} items
-         * whose {@code expectedCount} first items are to be
-         * initialized by the parent class constructor.
+         * Constructs an empty node storing its items in the given
+         * storage, which can hold {@code capacity} items.
          *
+         * @param items the item storage
          * @param capacity the node capacity
-         * @param expectedCount the number of initialized items
          */
-        protected Node(final int capacity, final int expectedCount) {
-            this(capacity);
-            // Relaxed write, we piggyback on publication via CAS
-            COUNT.set(this, expectedCount);
+        Node(final A items, final int capacity) {
+            if (capacity <= 0)
+                throw new IllegalArgumentException("Got non-positive capacity " + capacity);
+            this.capacity = capacity;
+            this.items = items;
         }
 
         protected abstract A newArray(int length);
 
-        protected abstract void setPlain(final int index, final S supplier);
+        /**
+         * Returns the number of bytes allocated to store the items
+         * of this node.
+         *
+         * @return the size of the item storage, in bytes
+         */
+        protected abstract long itemBytes();
+
+        /**
+         * Copies {@code length} items from the {@code src} array,
+         * starting at index {@code srcIndex}, into this node starting
+         * at index {@code index}.
+         *
+         * @param src the source array of the element type
+         * @param srcIndex the index of the first item in {@code src}
+         * @param index the index of the first item in this node
+         * @param length the number of items to copy
+         */
+        protected void putItems(final Object src, final int srcIndex,
+                                final int index, final int length) {
+            System.arraycopy(src, srcIndex, items, index, length);
+        }
+
+        /**
+         * Copies {@code length} items of this node, starting at index
+         * {@code index}, into the {@code dst} array starting at index
+         * {@code dstIndex}.
+         *
+         * @param index the index of the first item in this node
+         * @param dst the destination array of the element type
+         * @param dstIndex the index of the first item in {@code dst}
+         * @param length the number of items to copy
+         */
+        protected void getItems(final int index, final Object dst,
+                                final int dstIndex, final int length) {
+            System.arraycopy(items, index, dst, dstIndex, length);
+        }
+
+        /**
+         * Moves {@code length} items of this node from index {@code from}
+         * to the lower index {@code to}.
+         *
+         * @param from the index of the first item to move
+         * @param to the destination index, lower than {@code from}
+         * @param length the number of items to move
+         */
+        protected void moveItems(final int from, final int to, final int length) {
+            System.arraycopy(items, from, items, to, length);
+        }
+
+        /**
+         * Clears the first {@code length} items of this node, so that
+         * they can be garbage collected once the node is recycled.
+         *
+         * @param length the number of items to clear
+         */
+        protected void clearItems(final int length) {}
     }
 
     /**
@@ -127,29 +336,203 @@ abstract class AbstractConcurrentStreamBuilder<A, S> {
     private volatile boolean built;
 
     /**
-     * The first node in the list (may contain items).
+     * The first node in the list (may contain items), or in the current
+     * segment if the builder has been rotated.
      */
-    private final Node<A, S> head;
+    private volatile Node<A> head;
 
     /**
      * A node from which the last node on the list can be reached.
      */
-    private volatile Node<A, S> tail;
+    private volatile Node<A> tail;
+
+    /**
+     * A range of slots claimed by a thread, which fills them in order.
+     * Slots in {@code [next, end)} of {@code node} are not initialized.
+     *
+     * @param <A> the array type for the stream element type
+     */
+    protected static final class Chunk<A> {
+        Node<A> node;
+        private int next;
+        private int end;
+    }
+
+    /**
+     * The number of additions started and completed by a thread. It is
+     * odd while the thread is adding an element.
+     */
+    protected static final class Writer {
+        @SuppressWarnings("UnusedVariable")
+        private volatile long version;
+
+        /**
+         * The time at which the current addition started, if metrics
+         * are enabled. Only accessed by the owner thread.
+         */
+        private long start;
+    }
+
+    /**
+     * A sealed range of nodes, cut from the list by rotating the builder.
+     *
+     * @param <A> the array type for the stream element type
+     */
+    protected static final class Segment<A> {
+        private final Node<A> first;
+        private final Node<A> last;
+
+        private Segment(final Node<A> first, final Node<A> last) {
+            this.first = first;
+            this.last = last;
+        }
+    }
+
+    /**
+     * The number of slots claimed at a time by each thread.
+     */
+    private final int chunkSize;
+
+    /**
+     * The chunk of each thread, or {@code null} if {@code chunkSize} is 1.
+     */
+    private final ThreadCells<Chunk<A>> chunks;
+
+    /**
+     * The maximum capacity of a node.
+     */
+    private final int maxNodeCapacity;
+
+    /**
+     * Whether added elements are published to the consumer.
+     */
+    private final boolean streaming;
+
+    /**
+     * The node of the next element to consume in streaming mode.
+     * Only accessed by the consumer thread.
+     */
+    private Node<A> readNode;
+
+    /**
+     * The index of the next element to consume in {@code readNode}.
+     */
+    private int readIndex;
+
+    /**
+     * The consumer thread parked until an element is published or
+     * the builder transitions to the built state, or {@code null}.
+     */
+    private volatile Thread waiter;
+
+    /**
+     * Whether the builder can be rotated.
+     */
+    private final boolean rotation;
+
+    /**
+     * The writer of each adding thread, or {@code null} if rotation,
+     * chunks, metrics and statistics are disabled.
+     */
+    private final ThreadCells<Writer> writers;
+
+    /**
+     * Whether the transition to the built state waits for the threads
+     * adding elements, if slots are claimed in chunks or running
+     * statistics are enabled.
+     */
+    private final boolean waitForWriters;
+
+    /**
+     * The metrics recorder, or {@code null} if metrics are disabled.
+     */
+    private final MetricsRecorder metrics;
+
+    /**
+     * How the next node is appended once the last node is full.
+     */
+    private final ContentionStrategy contention;
+
+    /**
+     * The fraction of a node's capacity at which the next node
+     * is allocated, or {@code 0} if nodes are not preallocated.
+     */
+    private final double preallocation;
+
+    /**
+     * The executor allocating the next node, or {@code null} to allocate
+     * it on the thread crossing the preallocation threshold.
+     */
+    private final Executor preallocator;
+
+    /**
+     * The maximum number of elements in the current segment,
+     * or {@code 0} if unlimited.
+     */
+    private final int elementLimit;
+
+    /**
+     * A permit for each element that can be added, or {@code null}
+     * if the number of elements is unlimited.
+     */
+    private final Semaphore permits;
 
     protected AbstractConcurrentStreamBuilder() {
-        this(DEFAULT_INITIAL_CAPACITY);
+        this(BuilderOptions.defaults());
     }
 
     protected AbstractConcurrentStreamBuilder(final int initialCapacity) {
-        head = tail = createEmptyNode(initialCapacity);
+        this(BuilderOptions.defaults().withInitialCapacity(initialCapacity));
+    }
+
+    protected AbstractConcurrentStreamBuilder(final BuilderOptions options) {
+        this(options, MAX_NODE_CAPACITY);
+    }
+
+    /**
+     * Constructs a builder whose nodes hold at most
+     * {@code maxNodeCapacity} items.
+     *
+     * @param options the builder options
+     * @param maxNodeCapacity the maximum capacity of a node, which must
+     *                        be at most {@link #MAX_NODE_CAPACITY}
+     */
+    protected AbstractConcurrentStreamBuilder(final BuilderOptions options,
+                                              final int maxNodeCapacity) {
+        GrowthPolicy growthPolicy = options.growthPolicy();
+        this.metrics = options.metrics() ? new MetricsRecorder(getClass().getName()) : null;
+        this.elementLimit = options.elementLimit();
+        this.permits = elementLimit > 0 ? new Semaphore(elementLimit) : null;
+        this.maxNodeCapacity = Math.min(Math.min(maxNodeCapacity, growthPolicy.maxCapacity()),
+                elementLimit > 0 ? elementLimit : Integer.MAX_VALUE);
+        this.streaming = options.streaming();
+        this.contention = options.contentionStrategy();
+        this.preallocation = options.preallocation();
+        this.preallocator = options.preallocator();
+        head = tail = newNode(Math.min(
+                growthPolicy.headCapacity(options.initialCapacity()), this.maxNodeCapacity));
+        readNode = head;
+        chunkSize = options.chunkSize();
+        chunks = chunkSize > 1 ? new ThreadCells<>(Chunk::new) : null;
+        rotation = options.rotation();
+        waitForWriters = chunks != null || options.statistics();
+        writers = rotation || waitForWriters || metrics != null
+                ? new ThreadCells<>(Writer::new) : null;
     }
 
-    protected abstract Node<A, S> createEmptyNode(final int capacity);
+    protected abstract Node<A> createEmptyNode(final int capacity);
 
-    protected abstract Node<A, S> createNextNode(final int capacity, final S valueSupplier);
+    private Node<A> newNode(final int capacity) {
+        Node<A> node = createEmptyNode(capacity);
+        if (streaming)
+            node.ready = new byte[capacity];
+        if (metrics != null)
+            metrics.nodeAllocated(capacity, node.itemBytes());
+        return node;
+    }
 
-    private void throwBuilt() {
-        throw new IllegalStateException("Builder is in built state");
+    private static IllegalStateException alreadyBuilt() {
+        return new IllegalStateException("Builder is in built state");
     }
 
     private boolean isBuilt() {
@@ -157,55 +540,997 @@ abstract class AbstractConcurrentStreamBuilder<A, S> {
         return (boolean) BUILT.getOpaque(this);
     }
 
+    /**
+     * Ensures the builder is in built state. The transition to the built
+     * state happens-before the return of this method.
+     *
+     * @throws IllegalStateException if the builder is not in built state
+     */
+    protected final void checkBuilt() {
+        if (!(boolean) BUILT.getVolatile(this))
+            throw new IllegalStateException("Builder is not in built state");
+    }
+
+    /**
+     * Ensures the builder is not in built state.
+     *
+     * @throws IllegalStateException if the builder is in built state
+     */
+    protected final void checkNotBuilt() {
+        if (isBuilt())
+            throw alreadyBuilt();
+    }
+
     protected void checkAndSetBuilt() {
+        if (!trySetBuilt())
+            throw alreadyBuilt();
+    }
+
+    /**
+     * Transitions the builder to the built state, unless it
+     * already is.
+     *
+     * @return {@code true} if the builder transitioned to the built state
+     */
+    protected final boolean trySetBuilt() {
         if (!BUILT.compareAndSet(this, false, true))
-            throwBuilt();
-    }
-
-    protected void enqueue(final S valueSupplier) {
-        Node<A, S> nextNode = null;
-        while (!isBuilt()) {
-            Node<A, S> curTail = tail;
-            Node<A, S> tailNext = curTail.next;
-            if (tailNext == null) {
-                // curTail is last node
-                int index = (int) COUNT.getAndAdd(curTail, 1);
-                if (index < curTail.capacity) {
-                    curTail.setPlain(index, valueSupplier);
+            return false;
+        seal();
+        if (streaming)
+            signal();
+        if (metrics != null)
+            metrics.commit();
+        return true;
+    }
+
+    /**
+     * Transitions the builder from the built state back to its initial
+     * state, recycling its nodes. Subsequently added elements are stored
+     * in the existing nodes (in order) before allocating new ones.
+     *
+     * <p>This method must not be called concurrently with any other
+     * method, and the streams (and views) previously built from the
+     * builder must no longer be used.
+     *
+     * @throws IllegalStateException if the builder is not in built state
+     */
+    protected void reset() {
+        checkBuilt();
+        Node<A> node = head;
+        while (node != null) {
+            Node<A> next = node.next;
+            if (next == null)
+                discardPrepared(node);
+            PREPARED.set(node, null);
+            node.clearItems(Math.min(node.count, node.capacity));
+            if (node.ready != null)
+                Arrays.fill(node.ready, (byte) 0);
+            // The spare of the last node is the chain of unused spares
+            if (next != null)
+                node.spare = next;
+            NEXT.set(node, null);
+            COUNT.set(node, 0);
+            APPENDING.set(node, false);
+            node = next;
+        }
+        tail = head;
+        readNode = head;
+        readIndex = 0;
+        if (permits != null) {
+            permits.drainPermits();
+            permits.release(elementLimit);
+        }
+        BUILT.setVolatile(this, false);
+    }
+
+    /**
+     * Acquires a permit for each of the given number of elements
+     * to add, if their number is limited.
+     *
+     * @param length the number of elements to add
+     * @throws IllegalStateException if fewer permits are available
+     */
+    protected final void acquire(final int length) {
+        if (permits != null && !permits.tryAcquire(length))
+            throw new IllegalStateException("Builder is full");
+    }
+
+    /**
+     * Releases the permits acquired for the given number of elements
+     * that were not added, if their number is limited.
+     *
+     * @param length the number of elements not added
+     */
+    protected final void release(final int length) {
+        if (permits != null)
+            permits.release(length);
+    }
+
+    /**
+     * Acquires a permit for an element to add, if their number
+     * is limited.
+     *
+     * @return {@code true} if a permit was acquired, or the number
+     *         of elements is unlimited
+     */
+    protected final boolean tryAcquire() {
+        return permits == null || permits.tryAcquire();
+    }
+
+    /**
+     * Acquires a permit for an element to add, if their number
+     * is limited, waiting up to the given time for one to become
+     * available.
+     *
+     * @param timeout the maximum time to wait
+     * @param unit the time unit of {@code timeout}
+     * @return {@code true} if a permit was acquired, or the number
+     *         of elements is unlimited
+     * @throws InterruptedException if interrupted while waiting
+     */
+    protected final boolean tryAcquire(final long timeout, final TimeUnit unit)
+            throws InterruptedException {
+        return permits == null || permits.tryAcquire(timeout, unit);
+    }
+
+    /**
+     * Marks the start of an addition by the current thread, before
+     * claiming any slot. Must be followed by a call to
+     * {@link #endWrite(Writer)} once the claimed slots are initialized.
+     *
+     * @return the writer of the current thread, or {@code null} if
+     *         rotation, chunks, metrics and statistics are disabled
+     */
+    protected final Writer beginWrite() {
+        if (writers == null)
+            return null;
+        Writer writer = writers.get();
+        if (waitForWriters) {
+            // Ordered before the built check of claims, see #seal
+            VERSION.setVolatile(writer, (long) VERSION.getOpaque(writer) + 1);
+        } else if (rotation) {
+            // Ordered before the claim by the volatile access to the count
+            VERSION.setOpaque(writer, (long) VERSION.getOpaque(writer) + 1);
+        }
+        if (metrics != null)
+            writer.start = System.nanoTime();
+        return writer;
+    }
+
+    /**
+     * Marks the end of an addition by the current thread.
+     *
+     * @param writer the writer returned by {@link #beginWrite()}
+     */
+    protected final void endWrite(final Writer writer) {
+        if (writer == null)
+            return;
+        if (rotation || waitForWriters)
+            VERSION.setRelease(writer, (long) VERSION.getOpaque(writer) + 1);
+        if (metrics != null)
+            metrics.enqueued(System.nanoTime() - writer.start);
+    }
+
+    /**
+     * Returns a snapshot of the metrics recorded so far.
+     *
+     * @return the metrics snapshot
+     * @throws IllegalStateException if metrics are disabled
+     */
+    protected final BuilderMetrics metricsSnapshot() {
+        if (metrics == null)
+            throw new IllegalStateException("Builder metrics are disabled");
+        return metrics.snapshot();
+    }
+
+    /**
+     * Cuts the list after its last node, and seals the items added
+     * so far. Later items are added to a new node with the initial
+     * capacity, which becomes the head. Waits for the threads that
+     * claimed a slot before the cut to initialize it.
+     *
+     * <p>This method must not be called concurrently with itself,
+     * {@link #reset()} or the methods transitioning to the built state.
+     *
+     * @return the sealed segment
+     * @throws IllegalStateException if rotation is disabled, or
+     *         the builder is in built state
+     */
+    protected final Segment<A> cut() {
+        if (!rotation)
+            throw new IllegalStateException("Builder does not support rotation");
+        Node<A> first = head;
+        Node<A> next = newNode(head.capacity);
+        Node<A> last;
+        do {
+            last = lastNode();
+            next.spare = last.spare;
+        } while (!append(last, next));
+        // Slots may still be claimed in the cut node until its count is filled
+        int count;
+        do {
+            count = last.count;
+        } while (count < last.capacity && !COUNT.compareAndSet(last, count, last.capacity));
+        head = next;
+
+        awaitWriters();
+        long offset = 0;
+        for (Node<A> node = first; ; node = node.next) {
+            node.size = node == last ? Math.min(count, node.capacity)
+                    : Math.min(node.count, node.capacity);
+            node.offset = offset;
+            offset += node.size;
+            if (node == last)
+                break;
+        }
+        if (permits != null)
+            permits.release((int) offset);
+        if (metrics != null)
+            metrics.commit();
+        return new Segment<>(first, last);
+    }
+
+    /**
+     * Waits until every thread that started adding items has finished,
+     * and removes the writers of terminated threads.
+     */
+    private void awaitWriters() {
+        writers.forEachReclaiming(writer -> {
+            long version = (long) VERSION.getAcquire(writer);
+            if ((version & 1) != 0) {
+                while ((long) VERSION.getAcquire(writer) == version)
+                    Thread.onSpinWait();
+            }
+        });
+    }
+
+    /**
+     * Computes the size and offset of every node, compacting the slots
+     * left uninitialized by unfinished chunks.
+     */
+    private void seal() {
+        if (waitForWriters)
+            awaitWriters();
+        for (Node<A> node = head; node != null; node = node.next)
+            node.size = Math.min(node.count, node.capacity);
+        if (chunks != null) {
+            compact();
+            chunks.forEachReclaiming(chunk -> {
+                chunk.node = null;
+                chunk.next = chunk.end = 0;
+            });
+        }
+        long offset = 0;
+        for (Node<A> node = head; node != null; node = node.next) {
+            node.offset = offset;
+            offset += node.size;
+        }
+    }
+
+    private void compact() {
+        Map<Node<A>, List<Chunk<A>>> holes = new IdentityHashMap<>();
+        chunks.forEach(chunk -> {
+            if (chunk.next < chunk.end)
+                holes.computeIfAbsent(chunk.node, node -> new ArrayList<>()).add(chunk);
+        });
+        holes.forEach((node, nodeHoles) -> {
+            nodeHoles.sort(Comparator.comparingInt(chunk -> chunk.next));
+            int size = nodeHoles.get(0).next;
+            for (int i = 0; i < nodeHoles.size(); i++) {
+                int from = nodeHoles.get(i).end;
+                int to = i + 1 < nodeHoles.size() ? nodeHoles.get(i + 1).next : node.size;
+                node.moveItems(from, size, to - from);
+                size += to - from;
+            }
+            node.size = size;
+        });
+    }
+
+    /**
+     * Performs the given action for each node, from the head.
+     * The builder must be in built state.
+     *
+     * @param action the action to perform
+     */
+    protected final void forEachNode(final Consumer<? super Node<A>> action) {
+        for (Node<A> node = head; node != null; node = node.next)
+            action.accept(node);
+    }
+
+    /**
+     * Returns the chunk of the current thread.
+     *
+     * @return the chunk of the current thread, or {@code null} if
+     *         slots are not claimed in chunks
+     */
+    protected final Chunk<A> localChunk() {
+        return chunks != null ? chunks.get() : null;
+    }
+
+    /**
+     * Returns the last node in the list, helping to advance
+     * the tail if it lags behind.
+     *
+     * @return the last node
+     * @throws IllegalStateException if the builder is in built state
+     */
+    protected final Node<A> lastNode() {
+        while (!isBuiltForWriter()) {
+            Node<A> curTail = tail;
+            Node<A> tailNext = curTail.next;
+            if (tailNext == null)
+                return curTail; // curTail is last node
+            // Help advance tail
+            if (TAIL.compareAndSet(this, curTail, tailNext) && metrics != null)
+                metrics.tailAdvanced();
+        }
+        throw alreadyBuilt();
+    }
+
+    /**
+     * Attempts to claim an item slot in the given node, as returned
+     * by {@link #lastNode()}. The caller must initialize the item at
+     * the returned index, or retry from {@link #lastNode()} if no slot
+     * could be claimed.
+     *
+     * @param node the last node
+     * @return the index of the claimed slot, or {@code -1} if the node is full
+     */
+    protected final int claim(final Node<A> node) {
+        int index = (int) COUNT.getAndAdd(node, 1);
+        if (index < node.capacity) {
+            if (preallocation > 0 && index == preallocationIndex(node))
+                prepare(node);
+            return index;
+        }
+        if (metrics != null)
+            metrics.overshoot(1);
+        // The node is full (was already full or lost CAS race).
+        // Create next node (if necessary) and try to append.
+        if (node.next == null)
+            appendEmptyNode(node);
+        return -1;
+    }
+
+    /**
+     * Claims the next slot in the given chunk, owned by the current
+     * thread. If all its slots have been claimed, a new range is
+     * claimed in the last node. The caller must initialize the item
+     * at the returned index in the {@link Chunk#node} of the chunk.
+     *
+     * @param chunk the chunk of the current thread
+     * @return the index of the claimed slot
+     * @throws IllegalStateException if the builder is in built state
+     */
+    protected final int claim(final Chunk<A> chunk) {
+        checkChunkClaimable();
+        int index = chunk.next;
+        if (index >= chunk.end) {
+            claimRange(chunk);
+            index = chunk.next;
+        }
+        chunk.next = index + 1;
+        return index;
+    }
+
+    /**
+     * Ensures slots can be claimed from the chunk of the current thread,
+     * once its writer counter is odd (see {@link #beginWrite()}).
+     *
+     * @throws IllegalStateException if the builder is in built state
+     */
+    private void checkChunkClaimable() {
+        if (isBuiltForWriter())
+            throw alreadyBuilt();
+    }
+
+    /**
+     * Returns whether the builder is in built state, as seen by a thread
+     * adding elements before claiming a slot.
+     *
+     * @return {@code true} if the builder is in built state
+     */
+    private boolean isBuiltForWriter() {
+        // Ordered after the counter increment, see #seal
+        return waitForWriters ? (boolean) BUILT.getVolatile(this) : isBuilt();
+    }
+
+    private void claimRange(final Chunk<A> chunk) {
+        for (;;) {
+            Node<A> node = lastNode();
+            int capacity = node.capacity;
+            int count = node.count;
+            if (count < capacity) {
+                int length = Math.min(chunkSize, capacity - count);
+                int index = (int) COUNT.getAndAdd(node, length);
+                if (metrics != null && index + length > capacity)
+                    metrics.overshoot(Math.min(index + length - capacity, length));
+                if (index < capacity) {
+                    chunk.node = node;
+                    chunk.next = index;
+                    chunk.end = Math.min(index + length, capacity);
+                    prepareIfCrossed(node, index, chunk.end);
                     return;
-                } else {
-                    // The node is full (was already full or lost CAS race).
-                    // Create next node (if necessary) and try to append.
-                    int nextCap = Math.min(curTail.capacity << 1, MAX_NODE_CAPACITY);
-                    if (nextNode == null || nextNode.capacity != nextCap) {
-                        nextNode = createNextNode(nextCap, valueSupplier);
-                    }
+                }
+            } else if (node.next == null) {
+                appendEmptyNode(node);
+            }
+        }
+    }
 
-                    if (NEXT.compareAndSet(curTail, null, nextNode)) {
-                        // If this CAS fails, another caller will advance tail
-                        TAIL.weakCompareAndSet(this, curTail, nextNode);
-                        return;
+    /**
+     * Enqueues {@code length} items of the {@code src} array, starting
+     * at index {@code offset}. A contiguous range of slots is claimed
+     * with a single atomic operation per node. Items that do not fit
+     * in the last node are copied to a new node large enough to hold
+     * them (if possible), which is then appended.
+     *
+     * @param src the source array of the element type
+     * @param offset the index of the first item in {@code src}
+     * @param length the number of items to enqueue
+     * @throws IllegalStateException if the builder is in built state,
+     *         or fewer than {@code length} elements can be added
+     */
+    protected final void enqueueAll(final Object src, final int offset, final int length) {
+        checkNotBuilt();
+        acquire(length);
+        enqueueAcquired(src, offset, length);
+    }
+
+    /**
+     * Enqueues {@code length} items of the {@code src} array, starting
+     * at index {@code offset}, for which permits have already been
+     * acquired (see {@link #enqueueAll(Object, int, int)}). The permits
+     * of the items that can't be enqueued are released.
+     *
+     * @param src the source array of the element type
+     * @param offset the index of the first item in {@code src}
+     * @param length the number of items to enqueue
+     * @throws IllegalStateException if the builder is in built state
+     */
+    protected final void enqueueAcquired(final Object src, int offset, int length) {
+        Writer writer = beginWrite();
+        try {
+            Chunk<A> chunk = localChunk();
+            if (chunk != null && chunk.next < chunk.end && length > 0) {
+                // Fill the rest of the chunk first, keeping the order of the thread's items
+                checkChunkClaimable();
+                int filled = Math.min(length, chunk.end - chunk.next);
+                chunk.node.putItems(src, offset, chunk.next, filled);
+                itemsStored(src, offset, filled);
+                chunk.next += filled;
+                offset += filled;
+                length -= filled;
+            }
+            while (length > 0) {
+                Node<A> node = lastNode();
+                int capacity = node.capacity;
+                int count = node.count;
+                if (count < capacity) {
+                    // Don't claim more than the free slots, otherwise
+                    // count could overflow with large ranges.
+                    int requested = Math.min(length, capacity - count);
+                    int index = (int) COUNT.getAndAdd(node, requested);
+                    if (metrics != null && index + requested > capacity)
+                        metrics.overshoot(Math.min(index + requested - capacity, requested));
+                    if (index < capacity) {
+                        int claimed = Math.min(requested, capacity - index);
+                        prepareIfCrossed(node, index, index + claimed);
+                        node.putItems(src, offset, index, claimed);
+                        itemsStored(src, offset, claimed);
+                        publish(node, index, claimed);
+                        offset += claimed;
+                        length -= claimed;
+                    }
+                } else if (node.next == null && !appendPrepared(node) && !appendSpare(node)
+                        && elect(node)) {
+                    // Spill the remaining items into a right-sized node
+                    int nextCap = Math.max(allocationCapacity(node),
+                            Math.min(length, maxNodeCapacity));
+                    Node<A> nextNode = newAppendedNode(node, nextCap);
+                    nextNode.spare = node.spare;
+                    int filled = Math.min(length, nextCap);
+                    nextNode.putItems(src, offset, 0, filled);
+                    // Relaxed writes, we piggyback on publication via CAS
+                    COUNT.set(nextNode, filled);
+                    if (nextNode.ready != null)
+                        Arrays.fill(nextNode.ready, 0, filled, (byte) 1);
+                    if (append(node, nextNode)) {
+                        itemsStored(src, offset, filled);
+                        if (streaming)
+                            signal();
+                        prepareIfCrossed(nextNode, 0, filled);
+                        offset += filled;
+                        length -= filled;
+                    } else {
+                        discardNode(nextNode);
                     }
                 }
+            }
+        } finally {
+            endWrite(writer);
+            // The permits of the items that could not be enqueued
+            release(length);
+        }
+    }
+
+    /**
+     * Transitions the given builder to the built state, and appends its
+     * nodes to the list of this builder without copying any item. Its
+     * items then follow the items added to this builder so far, and
+     * precede the items added afterwards. The given builder must no
+     * longer be used.
+     *
+     * <p>This method must not be called concurrently with any other
+     * method of either builder. Both builders must store their items
+     * on-heap, and have neither running statistics nor distinct mode
+     * enabled.
+     *
+     * @param other the builder whose nodes to append
+     * @throws IllegalStateException if either builder is in built state
+     * @throws IllegalArgumentException if either builder is in
+     *         streaming mode, or limits its number of elements
+     */
+    protected final void link(final AbstractConcurrentStreamBuilder<A> other) {
+        if (streaming || other.streaming || permits != null || other.permits != null)
+            throw new IllegalArgumentException(
+                    "Can't link builders in streaming mode or with an element limit");
+        checkNotBuilt();
+        other.checkAndSetBuilt();
+        // Once compacted, the items of each node precede its count
+        long size = 0;
+        for (Node<A> node = other.head; node != null; node = node.next) {
+            COUNT.set(node, node.size);
+            size += node.size;
+        }
+        if (size > 0)
+            append(lastNode(), other.head);
+    }
+
+    /**
+     * Called by the thread adding the items of a bulk addition after
+     * storing {@code length} of them, before the end of the addition.
+     * Does nothing by default.
+     *
+     * @param src the source array of the element type
+     * @param offset the index of the first stored item in {@code src}
+     * @param length the number of stored items
+     */
+    protected void itemsStored(final Object src, final int offset, final int length) {}
+
+    private void appendEmptyNode(final Node<A> node) {
+        if (appendPrepared(node) || appendSpare(node) || !elect(node))
+            return;
+        Node<A> nextNode = newAppendedNode(node, allocationCapacity(node));
+        nextNode.spare = node.spare;
+        if (!append(node, nextNode))
+            discardNode(nextNode);
+    }
+
+    /**
+     * Appends the first spare of the given full node, if it can hold
+     * as many items as a newly allocated node.
+     *
+     * @param node the full last node
+     * @return {@code true} if a spare was appended (possibly by another
+     *         thread), in which case the given node is no longer
+     *         the last node
+     */
+    private boolean appendSpare(final Node<A> node) {
+        Node<A> spare = node.spare;
+        if (spare == null || spare.capacity < allocationCapacity(node))
+            return false;
+        // Every thread appends the same spare, no node is discarded
+        append(node, spare);
+        return true;
+    }
+
+    /**
+     * Returns the index of the slot at which the node following
+     * the given node is preallocated.
+     *
+     * @param node the node
+     * @return the index of the slot crossing the threshold
+     */
+    private int preallocationIndex(final Node<A> node) {
+        return Math.min((int) (node.capacity * preallocation), node.capacity - 1);
+    }
+
+    /**
+     * Preallocates the node following the given node if the claimed
+     * range of slots contains the preallocation threshold.
+     *
+     * @param node the node
+     * @param from the index of the first claimed slot
+     * @param to the index after the last claimed slot
+     */
+    private void prepareIfCrossed(final Node<A> node, final int from, final int to) {
+        if (preallocation > 0) {
+            int index = preallocationIndex(node);
+            if (from <= index && index < to)
+                prepare(node);
+        }
+    }
+
+    private void prepare(final Node<A> node) {
+        if (preallocator == null) {
+            prepareNow(node);
+            return;
+        }
+        try {
+            preallocator.execute(() -> prepareNow(node));
+        } catch (final RejectedExecutionException e) {
+            prepareNow(node);
+        }
+    }
+
+    /**
+     * Allocates the node to append after the given node, unless
+     * a recycled node can be appended instead.
+     *
+     * @param node the node
+     */
+    private void prepareNow(final Node<A> node) {
+        int nextCap = allocationCapacity(node);
+        Node<A> spare = node.spare;
+        if (node.next != null || (spare != null && spare.capacity >= nextCap))
+            return;
+        Node<A> prepared = newNode(nextCap);
+        prepared.spare = spare;
+        node.prepared = prepared;
+        // Another node may have been appended in the meantime
+        if (node.next != null)
+            discardPrepared(node);
+    }
+
+    /**
+     * Appends the node prepared for the given full node, if any.
+     *
+     * @param node the full last node
+     * @return {@code true} if a node was prepared, in which case
+     *         the given node is no longer the last node
+     */
+    private boolean appendPrepared(final Node<A> node) {
+        Node<A> prepared = node.prepared;
+        if (prepared == null)
+            return false;
+        // Every thread appends the same node, unless a node
+        // is appended by other means
+        append(node, prepared);
+        return true;
+    }
+
+    /**
+     * Discards the node prepared for the given node, unless it
+     * has been appended.
+     *
+     * @param node the node
+     */
+    private void discardPrepared(final Node<A> node) {
+        Node<A> prepared = node.prepared;
+        if (prepared != null && prepared != node.next
+                && PREPARED.compareAndSet(node, prepared, null))
+            discardNode(prepared);
+    }
+
+    /**
+     * Elects the current thread to append a node after the given full
+     * node, unless another thread already is. In that case, waits until
+     * the other thread appends the node, or fails to.
+     *
+     * @param node the full last node
+     * @return {@code true} if the current thread must append the node
+     */
+    private boolean elect(final Node<A> node) {
+        if (contention == ContentionStrategy.COMPETE)
+            return true;
+        if (!node.appending && APPENDING.compareAndSet(node, false, true))
+            return true;
+        for (int attempt = 0; node.next == null && node.appending && !isBuilt(); attempt++) {
+            if (contention == ContentionStrategy.SPIN || attempt < BACKOFF_SPINS) {
+                Thread.onSpinWait();
             } else {
-                // Help advance tail
-                TAIL.compareAndSet(this, curTail, tailNext);
+                int shift = Math.min(attempt - BACKOFF_SPINS, 10);
+                LockSupport.parkNanos(Math.min(MIN_PARK_NANOS << shift, MAX_PARK_NANOS));
             }
         }
-        throwBuilt();
+        return false;
+    }
+
+    /**
+     * Creates a node to append after the given node by the elected
+     * thread. If the allocation fails, another thread can be elected.
+     *
+     * @param node the full last node
+     * @param capacity the capacity of the new node
+     * @return the new node
+     */
+    private Node<A> newAppendedNode(final Node<A> node, final int capacity) {
+        try {
+            return newNode(capacity);
+        } catch (final RuntimeException | Error e) {
+            APPENDING.setVolatile(node, false);
+            throw e;
+        }
+    }
+
+    /**
+     * Publishes the item initialized in the given slot to the consumer,
+     * if the builder is in streaming mode.
+     *
+     * @param node the node holding the item
+     * @param index the index of the item in {@code node}
+     */
+    protected final void publish(final Node<A> node, final int index) {
+        byte[] ready = node.ready;
+        if (ready != null) {
+            READY.setVolatile(ready, index, (byte) 1);
+            signal();
+        }
+    }
+
+    private void publish(final Node<A> node, final int index, final int length) {
+        byte[] ready = node.ready;
+        if (ready != null) {
+            for (int i = index; i < index + length; i++)
+                READY.setVolatile(ready, i, (byte) 1);
+            signal();
+        }
+    }
+
+    private void signal() {
+        Thread thread = waiter;
+        if (thread != null)
+            LockSupport.unpark(thread);
+    }
+
+    /**
+     * Returned by {@link #pollIndex()} if all the elements have been
+     * consumed, and the builder is in built state.
+     */
+    protected static final int EXHAUSTED = -1;
+
+    /**
+     * Returned by {@link #pollIndex()} if the next element is not
+     * ready yet.
+     */
+    protected static final int NOT_READY = -2;
+
+    /**
+     * Consumes the next element, if it is ready. Must only be called
+     * by a single consumer thread at a time.
+     *
+     * @return the index of the element in {@link #readNode()},
+     *         {@link #NOT_READY} or {@link #EXHAUSTED}
+     * @throws IllegalStateException if the builder is not in streaming mode
+     */
+    protected final int pollIndex() {
+        if (!streaming)
+            throw new IllegalStateException("Builder is not in streaming mode");
+        for (;;) {
+            Node<A> node = readNode;
+            int index = readIndex;
+            if (index >= node.capacity) {
+                Node<A> next = node.next;
+                if (next == null) {
+                    // A node may have been appended before transitioning
+                    return (boolean) BUILT.getVolatile(this) && node.next == null
+                            ? EXHAUSTED : NOT_READY;
+                }
+                readNode = next;
+                readIndex = 0;
+                continue;
+            }
+            if ((byte) READY.getVolatile(node.ready, index) != 0) {
+                readIndex = index + 1;
+                return index;
+            }
+            // The slot is not claimed yet, or its item is being initialized.
+            // Slots are claimed in order, so once the builder is built,
+            // no item follows the last claimed slot.
+            if (!(boolean) BUILT.getVolatile(this) || index < Math.min(node.count, node.capacity))
+                return NOT_READY;
+            return EXHAUSTED;
+        }
+    }
+
+    /**
+     * Consumes the next element, waiting until it is ready if necessary.
+     * Must only be called by a single consumer thread at a time.
+     *
+     * @return the index of the element in {@link #readNode()},
+     *         or {@link #EXHAUSTED}
+     * @throws InterruptedException if interrupted while waiting
+     * @throws IllegalStateException if the builder is not in streaming mode
+     */
+    protected final int takeIndex() throws InterruptedException {
+        try {
+            for (;;) {
+                int index = pollIndex();
+                if (index != NOT_READY)
+                    return index;
+                if (waiter == null) {
+                    // Check again after publishing the waiter
+                    waiter = Thread.currentThread();
+                    continue;
+                }
+                LockSupport.park(this);
+                if (Thread.interrupted())
+                    throw new InterruptedException();
+            }
+        } finally {
+            waiter = null;
+        }
+    }
+
+    /**
+     * Returns the node holding the element consumed by the last call
+     * to {@link #pollIndex()} or {@link #takeIndex()}.
+     *
+     * @return the node of the last consumed element
+     */
+    protected final Node<A> readNode() {
+        return readNode;
+    }
+
+    /**
+     * Called when a node created by {@link #createEmptyNode(int)} could
+     * not be appended to the list, and will never be accessed again.
+     *
+     * @param node the discarded node
+     */
+    protected void discardNode(final Node<A> node) {}
+
+    private int nextCapacity(final Node<?> node) {
+        return Math.min(node.capacity << 1, maxNodeCapacity);
+    }
+
+    /**
+     * Returns the capacity of a node to append after the given node,
+     * which doesn't exceed the number of available permits (if any).
+     *
+     * @param node the last node
+     * @return the capacity of the next node
+     */
+    private int allocationCapacity(final Node<?> node) {
+        int capacity = nextCapacity(node);
+        if (permits != null)
+            capacity = Math.min(capacity, Math.max(permits.availablePermits(), 1));
+        return capacity;
+    }
+
+    /**
+     * Attempts to append {@code nextNode} to {@code node}.
+     *
+     * @param node the last node
+     * @param nextNode the node to append
+     * @return {@code true} if successful
+     */
+    private boolean append(final Node<A> node, final Node<A> nextNode) {
+        if (NEXT.compareAndSet(node, null, nextNode)) {
+            // If this CAS fails, another caller will advance tail
+            TAIL.weakCompareAndSet(this, node, nextNode);
+            if (preallocation > 0)
+                discardPrepared(node);
+            return true;
+        }
+        if (metrics != null)
+            metrics.failedAppend();
+        return false;
+    }
+
+    /**
+     * Transitions the builder to the built state, and returns
+     * the number of items.
+     *
+     * @return the number of items
+     * @throws IllegalStateException if the builder is in built state
+     * @throws IllegalArgumentException if the number of items exceeds
+     *         the maximum array length
+     */
+    protected final int buildArraySize() {
+        checkAndSetBuilt();
+        long size = 0;
+        for (Node<A> node = head; node != null; node = node.next)
+            size += node.size;
+        if (size > MAX_ARRAY_SIZE)
+            throw new IllegalArgumentException("Builder size exceeds max array size");
+        return (int) size;
+    }
+
+    /**
+     * Copies all the items into the given array, starting at index
+     * {@code offset}, with a single copy per node. The builder must
+     * be in built state.
+     *
+     * @param dst the destination array
+     * @param offset the index of the first item in {@code dst}
+     */
+    protected final void copyItems(final Object dst, int offset) {
+        for (Node<A> node = head; node != null; node = node.next) {
+            node.getItems(0, dst, offset, node.size);
+            offset += node.size;
+        }
     }
 
     protected abstract class AbstractSpliterator<T extends Spliterator<?>> {
-        protected Node<A, S> node;
+        protected Node<A> node;
         protected int index; // current index in node
 
-        private long est = -1; // size estimate, -1 until needed
+        // Traversal ends at index fence (exclusive) of the last node,
+        // and at the size of all preceding nodes.
+        private final Node<A> last;
+        private final int fence;
 
         protected AbstractSpliterator() {
             if (!isBuilt())
                 throw new AssertionError(
                         "Spliterator constructed while builder is not in built state");
+            Node<A> current = head;
+            Node<A> next;
+            while ((next = current.next) != null)
+                current = next;
             this.node = head;
+            this.last = current;
+            this.fence = current.size;
+        }
+
+        /**
+         * Creates a spliterator covering the elements of the given
+         * segment.
+         *
+         * @param segment the segment
+         */
+        protected AbstractSpliterator(final Segment<A> segment) {
+            this(segment.first, 0, segment.last, segment.last.size);
+        }
+
+        protected AbstractSpliterator(final Node<A> node, final int index,
+                                      final Node<A> last, final int fence) {
+            this.node = node;
+            this.index = index;
+            this.last = last;
+            this.fence = fence;
+        }
+
+        /**
+         * Creates a spliterator covering the elements from the given
+         * {@code index} of {@code node} up to index {@code fence}
+         * (exclusive) of {@code last}.
+         *
+         * @param node the first node
+         * @param index the index of the first element in {@code node}
+         * @param last the last node, reachable from {@code node}
+         * @param fence the index after the last element in {@code last}
+         * @return the spliterator
+         */
+        protected abstract T newSpliterator(Node<A> node, int index,
+                                            Node<A> last, int fence);
+
+        /**
+         * Returns the index after the last element to traverse
+         * in the current node.
+         *
+         * @return the end index in the current node
+         */
+        protected final int end() {
+            return node == last ? fence : node.size;
+        }
+
+        /**
+         * Moves to the next node, if the current node is not the last
+         * to traverse. The caller must have traversed all the elements
+         * of the current node up to {@link #end()}, and updated
+         * the current index accordingly.
+         *
+         * @return {@code true} if there is a next node to traverse
+         */
+        protected final boolean advanceNode() {
+            if (node == last)
+                return false;
+            node = node.next;
+            index = 0;
+            return true;
         }
 
         /**
@@ -215,40 +1540,204 @@ abstract class AbstractConcurrentStreamBuilder<A, S> {
          * @return {@code true} if a remaining element exists
          */
         protected boolean canAdvance() {
-            if (node == null) return false;
-            if (index >= node.capacity) {
+            while (index >= end()) {
+                if (node == last) return false;
                 node = node.next;
                 index = 0;
-                if (node == null) return false;
             }
-            return index < node.count;
+            return true;
         }
 
         public T trySplit() {
-            return null;
+            while (node != last && index >= node.size) {
+                node = node.next;
+                index = 0;
+            }
+            if (node != last) {
+                // Hand off the nodes preceding the node boundary closest
+                // to the middle element. Offsets are exact, so the halves
+                // are balanced whatever the growth policy, and the nodes
+                // past the boundary are never visited.
+                long middle = (node.offset + index + last.offset + fence) >>> 1;
+                Node<A> prev = node;
+                Node<A> next = node.next;
+                while (next != last && next.next.offset - middle < middle - next.offset) {
+                    prev = next;
+                    next = next.next;
+                }
+                T prefix = newSpliterator(node, index, prev, prev.size);
+                node = next;
+                index = 0;
+                return prefix;
+            }
+            int mid = (index + fence) >>> 1;
+            if (mid <= index)
+                return null;
+            T prefix = newSpliterator(node, index, node, mid);
+            index = mid;
+            return prefix;
         }
 
         public long estimateSize() {
-            if (est < 0) {
-                // Traverse list to sum up counts
-                // TODO Nodes have increasing power of 2 capacities, we could
-                // compute the size of all nodes except the last with a shift.
-                long count = 0;
-                Node<A, S> current = head;
-                do {
-                    count += Math.min(current.count, current.capacity);
-                } while ((current = current.next) != null);
-                est = count;
-            }
-            return est;
+            return (last.offset + fence) - (node.offset + index);
         }
 
         public int characteristics() {
-            return Spliterator.ORDERED | Spliterator.SIZED
-                    // Once the builder is in built state, no further modifications can be made
-                    | Spliterator.IMMUTABLE
-                    // trySplit always returns null
-                    | Spliterator.SUBSIZED;
+            return CHARACTERISTICS;
+        }
+    }
+
+    /**
+     * A read-only view of the items of a built builder, supporting
+     * random access and slicing without copying.
+     *
+     * <p>If every node but the last is full and node capacities have
+     * doubled from the head capacity, the node holding an item is
+     * computed in constant time. Otherwise, it is found by binary
+     * search over the node offsets.
+     *
+     * @param <T> the type of the spliterators over the items
+     */
+    protected abstract class AbstractSequence<T extends Spliterator<?>> {
+        private final Node<A>[] nodes;
+        private final long size;
+        private final boolean geometric;
+
+        /**
+         * The index of the first node with the maximum capacity,
+         * or the number of nodes if there is none.
+         */
+        private final int firstMaxNode;
+
+        @SuppressWarnings("unchecked")
+        protected AbstractSequence() {
+            if (!isBuilt())
+                throw new AssertionError(
+                        "Sequence constructed while builder is not in built state");
+            int length = 0;
+            for (Node<A> node = head; node != null; node = node.next)
+                length++;
+            this.nodes = (Node<A>[]) new Node<?>[length];
+            boolean geometric = true;
+            int firstMaxNode = length;
+            Node<A> node = head;
+            for (int i = 0; i < length; i++, node = node.next) {
+                nodes[i] = node;
+                if (i > 0 && (node.capacity != nextCapacity(nodes[i - 1])
+                        || nodes[i - 1].size != nodes[i - 1].capacity))
+                    geometric = false;
+                if (node.capacity >= maxNodeCapacity && firstMaxNode == length)
+                    firstMaxNode = i;
+            }
+            Node<A> last = nodes[length - 1];
+            this.size = last.offset + last.size;
+            this.geometric = geometric;
+            this.firstMaxNode = firstMaxNode;
+        }
+
+        /**
+         * Creates a spliterator covering the elements from the given
+         * {@code index} of {@code node} up to index {@code fence}
+         * (exclusive) of {@code last}.
+         *
+         * @param node the first node
+         * @param index the index of the first element in {@code node}
+         * @param last the last node, reachable from {@code node}
+         * @param fence the index after the last element in {@code last}
+         * @return the spliterator
+         */
+        protected abstract T newSpliterator(Node<A> node, int index,
+                                            Node<A> last, int fence);
+
+        /**
+         * Returns the number of elements in this sequence.
+         *
+         * @return the number of elements
+         */
+        public final long size() {
+            return size;
+        }
+
+        /**
+         * Returns the node holding the element at the given index.
+         *
+         * @param index the element index
+         * @return the node holding the element
+         * @throws IndexOutOfBoundsException if the index is out of range
+         */
+        protected final Node<A> nodeOf(final long index) {
+            if (index < 0 || index >= size)
+                throw new IndexOutOfBoundsException(
+                        "Index " + index + " out of bounds for length " + size);
+            return nodes[nodeIndex(index)];
+        }
+
+        private int nodeIndex(final long index) {
+            if (geometric) {
+                if (firstMaxNode < nodes.length) {
+                    long maxOffset = nodes[firstMaxNode].offset;
+                    if (index >= maxOffset)
+                        return firstMaxNode + (int) ((index - maxOffset) / maxNodeCapacity);
+                }
+                // Node k holds the items from c * (2^k - 1) (inclusive)
+                // to c * (2^(k + 1) - 1), where c is the head capacity.
+                return 63 - Long.numberOfLeadingZeros(index / nodes[0].capacity + 1);
+            }
+            // Find the last node whose offset is at most index,
+            // which skips empty nodes.
+            int low = 0;
+            int high = nodes.length - 1;
+            while (low < high) {
+                int mid = (low + high + 1) >>> 1;
+                if (nodes[mid].offset <= index)
+                    low = mid;
+                else
+                    high = mid - 1;
+            }
+            return low;
+        }
+
+        /**
+         * Returns the index in the given node of the element at
+         * the given sequence index.
+         *
+         * @param node the node holding the element
+         * @param index the element index
+         * @return the index of the element in {@code node}
+         */
+        protected final int indexIn(final Node<A> node, final long index) {
+            return (int) (index - node.offset);
+        }
+
+        /**
+         * Returns a spliterator over the elements of this sequence.
+         *
+         * @return a spliterator over the elements
+         */
+        public final T spliterator() {
+            return spliterator(0, size);
+        }
+
+        /**
+         * Returns a spliterator over the elements of this sequence from
+         * index {@code from} (inclusive) to {@code to} (exclusive).
+         * The first element is found without traversing the preceding
+         * elements.
+         *
+         * @param from the index of the first element
+         * @param to the index after the last element
+         * @return a spliterator over the elements in the given range
+         * @throws IndexOutOfBoundsException if the range is out of bounds
+         */
+        public final T spliterator(final long from, final long to) {
+            if (from < 0 || from > to || to > size)
+                throw new IndexOutOfBoundsException(
+                        "Range [" + from + ", " + to + ") out of bounds for length " + size);
+            if (from == to)
+                return newSpliterator(head, 0, head, 0);
+            Node<A> first = nodeOf(from);
+            Node<A> last = nodeOf(to - 1);
+            return newSpliterator(first, indexIn(first, from), last, indexIn(last, to - 1) + 1);
         }
     }
 
@@ -257,6 +1746,10 @@ abstract class AbstractConcurrentStreamBuilder<A, S> {
     private static final VarHandle BUILT;
     private static final VarHandle NEXT;
     private static final VarHandle COUNT;
+    private static final VarHandle VERSION;
+    private static final VarHandle APPENDING;
+    private static final VarHandle PREPARED;
+    private static final VarHandle READY = MethodHandles.arrayElementVarHandle(byte[].class);
     static {
         try {
             MethodHandles.Lookup l = MethodHandles.lookup();
@@ -265,6 +1758,9 @@ abstract class AbstractConcurrentStreamBuilder<A, S> {
                     AbstractConcurrentStreamBuilder.class, "built", boolean.class);
             NEXT = l.findVarHandle(Node.class, "next", Node.class);
             COUNT = l.findVarHandle(Node.class, "count", int.class);
+            VERSION = l.findVarHandle(Writer.class, "version", long.class);
+            APPENDING = l.findVarHandle(Node.class, "appending", boolean.class);
+            PREPARED = l.findVarHandle(Node.class, "prepared", Node.class);
         } catch (final ReflectiveOperationException e) {
             throw new ExceptionInInitializerError(e);
         }
@@ -0,0 +1,218 @@
+package me.hugmanrique.riviere;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+
+/**
+ * Off-heap concurrent {@code Stream} builder base implementation.
+ *
+ * <p>Nodes store their items in direct buffers, which are neither
+ * copied nor marked by the garbage collector. If spill options are
+ * given, only the first nodes are kept in memory, and further nodes
+ * map regions of a temporary file. Their memory (and the file) is
+ * released when the builder is closed.
+ *
+ * <p>Streams built from the builder must not be traversed after
+ * (or concurrently with) closing it, and the builder must not be
+ * closed while elements are being added. Traversals check whether
+ * the builder is closed, but only to detect misuse on a best-effort
+ * basis.
+ *
+ * <p>Spilled nodes are only created by a thread elected to append
+ * them, so that the regions of the spill file (and the disk usage)
+ * are exactly those of the appended nodes. Builders spilling with
+ * the {@link ContentionStrategy#COMPETE} strategy use
+ * {@link ContentionStrategy#BACKOFF} instead.
+ */
+abstract class AbstractOffHeapStreamBuilder extends AbstractConcurrentStreamBuilder<ByteBuffer>
+        implements AutoCloseable {
+
+    /**
+     * The maximum size of a node, in bytes.
+     */
+    private static final int MAX_NODE_BYTES = 1 << 30;
+
+    /**
+     * A node storing its items in a direct buffer, which may map
+     * a region of the spill file.
+     */
+    abstract static class BufferNode extends Node<ByteBuffer> {
+        private final boolean mapped;
+
+        protected BufferNode(final ByteBuffer buffer, final int capacity, final boolean mapped) {
+            super(buffer, capacity);
+            this.mapped = mapped;
+        }
+
+        @Override
+        protected final ByteBuffer newArray(final int length) {
+            // Buffers are allocated by the builder
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        protected final long itemBytes() {
+            return items.capacity();
+        }
+    }
+
+    private volatile boolean closed;
+
+    /**
+     * The spill file, or {@code null} if all nodes are kept in memory.
+     */
+    private final SpillFile spillFile;
+
+    /**
+     * The number of nodes (including the head node) kept in memory
+     * before spilling.
+     */
+    private final int memoryNodes;
+
+    /**
+     * The number of nodes created after the head node, minus
+     * the discarded nodes and failed allocations. Only updated
+     * if spilling.
+     */
+    @SuppressWarnings("UnusedVariable")
+    private volatile int nodeCount;
+
+    /**
+     * Constructs an off-heap builder with the given options.
+     *
+     * @param options the builder options
+     * @param spillOptions the spill options, or {@code null} to keep
+     *                     all the nodes in memory
+     * @param shift the base 2 logarithm of the element size, in bytes
+     * @throws IllegalArgumentException if streaming mode, rotation,
+     *         an element limit, preallocation, statistics or distinct mode
+     *         are enabled
+     */
+    protected AbstractOffHeapStreamBuilder(final BuilderOptions options,
+                                           final SpillOptions spillOptions,
+                                           final int shift) {
+        super(electAppenders(options.requireNotStreaming().requireNoRotation()
+                .requireNoElementLimit().requireNoPreallocation().requireNoStatistics()
+                .requireNotDistinct(), spillOptions), MAX_NODE_BYTES >> shift);
+        if (spillOptions != null) {
+            this.spillFile = new SpillFile(spillOptions);
+            this.memoryNodes = spillOptions.memoryNodes();
+        } else {
+            this.spillFile = null;
+            this.memoryNodes = 0;
+        }
+    }
+
+    /**
+     * Returns the given options, electing a single thread to append
+     * each node if the builder spills.
+     *
+     * @param options the builder options
+     * @param spillOptions the spill options, or {@code null}
+     * @return the options of the builder
+     */
+    private static BuilderOptions electAppenders(final BuilderOptions options,
+                                                 final SpillOptions spillOptions) {
+        // Competing threads would map (and charge) a region each,
+        // and count their nodes before all but one are discarded.
+        if (spillOptions != null && options.contentionStrategy() == ContentionStrategy.COMPETE)
+            return options.withContentionStrategy(ContentionStrategy.BACKOFF);
+        return options;
+    }
+
+    @Override
+    protected final BufferNode createEmptyNode(final int capacity) {
+        if (spillFile == null)
+            return newNode(capacity, false);
+        // The head node is created before the spill file
+        boolean mapped = (int) NODE_COUNT.getAndAdd(this, 1) >= memoryNodes - 1;
+        try {
+            return newNode(capacity, mapped);
+        } catch (final RuntimeException | Error e) {
+            NODE_COUNT.getAndAdd(this, -1);
+            throw e;
+        }
+    }
+
+    /**
+     * Creates an empty node whose buffer is allocated by
+     * {@link #allocate(int, boolean)}.
+     *
+     * @param capacity the node capacity
+     * @param mapped whether the buffer maps a region of the spill file
+     * @return the node
+     */
+    protected abstract BufferNode newNode(int capacity, boolean mapped);
+
+    /**
+     * Allocates a direct buffer in native byte order.
+     *
+     * @param size the buffer size, in bytes
+     * @param mapped whether the buffer maps a region of the spill file
+     * @return the buffer
+     * @throws IllegalStateException if mapping the region would exceed
+     *         the disk limit of the spill file
+     * @throws java.io.UncheckedIOException if an I/O error occurs
+     *         while mapping the region
+     */
+    protected final ByteBuffer allocate(final int size, final boolean mapped) {
+        return mapped ? spillFile.map(size) : DirectBuffers.allocate(size);
+    }
+
+    @Override
+    protected final void discardNode(final Node<ByteBuffer> node) {
+        if (spillFile != null)
+            NODE_COUNT.getAndAdd(this, -1);
+        release((BufferNode) node);
+    }
+
+    private void release(final BufferNode node) {
+        int size = node.items.capacity();
+        DirectBuffers.free(node.items);
+        if (node.mapped)
+            spillFile.release(size);
+    }
+
+    /**
+     * Throws an {@link IllegalStateException} if the builder is closed.
+     *
+     * @throws IllegalStateException if the builder is closed
+     */
+    protected final void ensureOpen() {
+        if (closed)
+            throw new IllegalStateException("Builder is closed");
+    }
+
+    /**
+     * Transitions the builder to the built state (if it is not
+     * already), and releases the memory of its nodes. The spill file,
+     * if any, is deleted. Closing a closed builder has no effect.
+     *
+     * @throws java.io.UncheckedIOException if an I/O error occurs
+     *         while deleting the spill file
+     */
+    @Override
+    public void close() {
+        if (!CLOSED.compareAndSet(this, false, true))
+            return;
+        trySetBuilt();
+        forEachNode(node -> release((BufferNode) node));
+        if (spillFile != null)
+            spillFile.close();
+    }
+
+    // VarHandle mechanics
+    private static final VarHandle CLOSED;
+    private static final VarHandle NODE_COUNT;
+    static {
+        try {
+            MethodHandles.Lookup l = MethodHandles.lookup();
+            CLOSED = l.findVarHandle(AbstractOffHeapStreamBuilder.class, "closed", boolean.class);
+            NODE_COUNT = l.findVarHandle(
+                    AbstractOffHeapStreamBuilder.class, "nodeCount", int.class);
+        } catch (final ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+}
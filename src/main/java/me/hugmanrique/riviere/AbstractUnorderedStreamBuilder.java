@@ -0,0 +1,66 @@
+package me.hugmanrique.riviere;
+
+import java.util.Spliterator;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * Unordered concurrent {@code Stream} builder base implementation.
+ *
+ * <p>Elements are added to one of several independent ordered
+ * builders (lanes), picked by hashing the current thread. Threads
+ * adding elements to different lanes never contend with each other.
+ * When built, the lanes are concatenated without copying, and
+ * parallel traversals split the elements by lane.
+ *
+ * @param <B> the type of the lane builders
+ */
+abstract class AbstractUnorderedStreamBuilder<B> {
+
+    /**
+     * The characteristics of built spliterators.
+     */
+    static final int CHARACTERISTICS = Spliterator.SIZED | Spliterator.SUBSIZED
+            | Spliterator.IMMUTABLE;
+
+    /**
+     * The maximum number of lanes.
+     */
+    private static final int MAX_LANES = 1 << 16;
+
+    protected final B[] lanes;
+    private final int mask;
+
+    protected AbstractUnorderedStreamBuilder(final int laneCount,
+                                             final IntFunction<B[]> arrayFactory,
+                                             final Supplier<B> laneFactory) {
+        if (laneCount <= 0 || laneCount > MAX_LANES)
+            throw new IllegalArgumentException("Got invalid lane count " + laneCount);
+        // Round up to the next power of two
+        int length = laneCount == 1 ? 1 : Integer.highestOneBit(laneCount - 1) << 1;
+        this.lanes = arrayFactory.apply(length);
+        for (int i = 0; i < length; i++)
+            lanes[i] = laneFactory.get();
+        this.mask = length - 1;
+    }
+
+    /**
+     * Returns the default number of lanes, the number of processors
+     * available to the Java virtual machine.
+     *
+     * @return the default number of lanes
+     */
+    protected static int defaultLaneCount() {
+        return Math.min(Runtime.getRuntime().availableProcessors(), MAX_LANES);
+    }
+
+    /**
+     * Returns the lane the current thread adds elements to.
+     *
+     * @return the lane of the current thread
+     */
+    protected final B lane() {
+        int h = System.identityHashCode(Thread.currentThread());
+        return lanes[(h ^ (h >>> 16)) & mask];
+    }
+}
@@ -0,0 +1,130 @@
+package me.hugmanrique.riviere;
+
+/**
+ * A snapshot of the metrics recorded by a concurrent builder, if
+ * enabled. All values are cumulative since the builder was constructed.
+ *
+ * <p>Each value is read separately, so a snapshot taken while elements
+ * are being added is not necessarily consistent. Getters follow the
+ * JavaBeans conventions, so snapshots can be returned by MXBeans.
+ *
+ * @see BuilderOptions#withMetrics(boolean)
+ */
+public final class BuilderMetrics {
+
+    private final long enqueues;
+    private final long enqueueNanos;
+    private final long failedAppends;
+    private final long overshoot;
+    private final long tailAdvances;
+    private final long allocatedNodes;
+    private final long allocatedBytes;
+
+    BuilderMetrics(final long enqueues, final long enqueueNanos, final long failedAppends,
+                   final long overshoot, final long tailAdvances, final long allocatedNodes,
+                   final long allocatedBytes) {
+        this.enqueues = enqueues;
+        this.enqueueNanos = enqueueNanos;
+        this.failedAppends = failedAppends;
+        this.overshoot = overshoot;
+        this.tailAdvances = tailAdvances;
+        this.allocatedNodes = allocatedNodes;
+        this.allocatedBytes = allocatedBytes;
+    }
+
+    /**
+     * Returns the number of calls adding one or more elements.
+     *
+     * @return the number of additions
+     */
+    public long getEnqueues() {
+        return enqueues;
+    }
+
+    /**
+     * Returns the total time spent adding elements, including
+     * the time spent waiting for other threads.
+     *
+     * @return the time spent adding elements, in nanoseconds
+     */
+    public long getEnqueueNanos() {
+        return enqueueNanos;
+    }
+
+    /**
+     * Returns the number of nodes that could not be appended because
+     * another thread appended a node first.
+     *
+     * @return the number of failed appends
+     */
+    public long getFailedAppends() {
+        return failedAppends;
+    }
+
+    /**
+     * Returns the number of slots claimed past the capacity of a node,
+     * which are retried in the next node.
+     *
+     * @return the number of slots claimed past node capacities
+     */
+    public long getOvershoot() {
+        return overshoot;
+    }
+
+    /**
+     * Returns the number of times a thread advanced the tail on behalf
+     * of the thread that appended a node.
+     *
+     * @return the number of tail advances by helping threads
+     */
+    public long getTailAdvances() {
+        return tailAdvances;
+    }
+
+    /**
+     * Returns the number of allocated nodes, including discarded nodes.
+     *
+     * @return the number of allocated nodes
+     */
+    public long getAllocatedNodes() {
+        return allocatedNodes;
+    }
+
+    /**
+     * Returns the number of bytes allocated to store the items of
+     * the nodes. References are assumed to take 4 bytes (compressed).
+     *
+     * @return the number of bytes allocated for items
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /**
+     * Returns the sum of these metrics and the given metrics.
+     *
+     * @param other the metrics to add
+     * @return the summed metrics
+     */
+    BuilderMetrics plus(final BuilderMetrics other) {
+        return new BuilderMetrics(enqueues + other.enqueues,
+                enqueueNanos + other.enqueueNanos,
+                failedAppends + other.failedAppends,
+                overshoot + other.overshoot,
+                tailAdvances + other.tailAdvances,
+                allocatedNodes + other.allocatedNodes,
+                allocatedBytes + other.allocatedBytes);
+    }
+
+    @Override
+    public String toString() {
+        return "BuilderMetrics{enqueues=" + enqueues
+                + ", enqueueNanos=" + enqueueNanos
+                + ", failedAppends=" + failedAppends
+                + ", overshoot=" + overshoot
+                + ", tailAdvances=" + tailAdvances
+                + ", allocatedNodes=" + allocatedNodes
+                + ", allocatedBytes=" + allocatedBytes
+                + '}';
+    }
+}
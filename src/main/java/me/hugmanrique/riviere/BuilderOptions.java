@@ -0,0 +1,483 @@
+package me.hugmanrique.riviere;
+
+import java.util.Objects;
+import java.util.concurrent.Executor;
+
+/**
+ * Configuration of a concurrent stream builder.
+ *
+ * <p>Instances are immutable; every {@code with} method returns
+ * a copy with the given option replaced. Options are validated
+ * eagerly, so a builder can always be constructed from an instance.
+ *
+ * <pre>{@code
+ * var builder = new ConcurrentLongStreamBuilder(
+ *         BuilderOptions.defaults()
+ *                 .withInitialCapacity(1024)
+ *                 .withChunkSize(64));
+ * }</pre>
+ */
+public final class BuilderOptions {
+
+    private static final BuilderOptions DEFAULTS = new BuilderOptions(
+            AbstractConcurrentStreamBuilder.DEFAULT_INITIAL_CAPACITY, 1, false, false, 0,
+            GrowthPolicy.geometric(), false, ContentionStrategy.COMPETE, 0, null, false, false);
+
+    private final int initialCapacity;
+    private final int chunkSize;
+    private final boolean streaming;
+    private final boolean rotation;
+    private final int elementLimit;
+    private final GrowthPolicy growthPolicy;
+    private final boolean metrics;
+    private final ContentionStrategy contention;
+    private final double preallocation;
+    private final Executor preallocator;
+    private final boolean statistics;
+    private final boolean distinct;
+
+    private BuilderOptions(final int initialCapacity, final int chunkSize,
+                           final boolean streaming, final boolean rotation,
+                           final int elementLimit, final GrowthPolicy growthPolicy,
+                           final boolean metrics, final ContentionStrategy contention,
+                           final double preallocation, final Executor preallocator,
+                           final boolean statistics, final boolean distinct) {
+        if (chunkSize > 1 && streaming)
+            throw new IllegalArgumentException("Chunks are not supported in streaming mode");
+        if (chunkSize > 1 && rotation)
+            throw new IllegalArgumentException("Chunks are not supported with rotation");
+        if (streaming && rotation)
+            throw new IllegalArgumentException("Rotation is not supported in streaming mode");
+        if (statistics && rotation)
+            throw new IllegalArgumentException("Statistics are not supported with rotation");
+        this.initialCapacity = initialCapacity;
+        this.chunkSize = chunkSize;
+        this.streaming = streaming;
+        this.rotation = rotation;
+        this.elementLimit = elementLimit;
+        this.growthPolicy = growthPolicy;
+        this.metrics = metrics;
+        this.contention = contention;
+        this.preallocation = preallocation;
+        this.preallocator = preallocator;
+        this.statistics = statistics;
+        this.distinct = distinct;
+    }
+
+    /**
+     * Returns the default options, used by the no-argument
+     * builder constructors.
+     *
+     * @return the default options
+     */
+    public static BuilderOptions defaults() {
+        return DEFAULTS;
+    }
+
+    /**
+     * Returns a copy of these options with the given initial
+     * (the first node) capacity. It defaults to 16.
+     *
+     * @param initialCapacity the capacity of the head node
+     * @return the new options
+     * @throws IllegalArgumentException if {@code initialCapacity} is not positive
+     */
+    public BuilderOptions withInitialCapacity(final int initialCapacity) {
+        if (initialCapacity <= 0)
+            throw new IllegalArgumentException("Got non-positive capacity " + initialCapacity);
+        return new BuilderOptions(initialCapacity, chunkSize, streaming, rotation,
+                elementLimit, growthPolicy, metrics, contention, preallocation,
+                preallocator, statistics, distinct);
+    }
+
+    /**
+     * Returns a copy of these options with the given chunk size.
+     *
+     * <p>If the chunk size is greater than 1, each thread claims
+     * {@code chunkSize} slots at a time with a single atomic operation,
+     * and fills them without further synchronization. This reduces
+     * contention on the last node when many threads add elements
+     * concurrently, at the cost of the following:
+     * <ul>
+     *     <li>Elements added by different threads are no longer ordered
+     *     by the time they were added. Elements added by the same thread
+     *     remain in order.</li>
+     *     <li>Slots claimed but not filled by the time the builder
+     *     transitions to the built state are compacted, which takes time
+     *     proportional to the size of the nodes containing them.</li>
+     * </ul>
+     *
+     * <p>It defaults to 1, i.e. every element claims its own slot.
+     *
+     * @param chunkSize the number of slots claimed at a time by each thread
+     * @return the new options
+     * @throws IllegalArgumentException if {@code chunkSize} is not positive,
+     *         or greater than 1 in streaming mode or with rotation
+     */
+    public BuilderOptions withChunkSize(final int chunkSize) {
+        if (chunkSize <= 0)
+            throw new IllegalArgumentException("Got non-positive chunk size " + chunkSize);
+        return new BuilderOptions(initialCapacity, chunkSize, streaming, rotation,
+                elementLimit, growthPolicy, metrics, contention, preallocation,
+                preallocator, statistics, distinct);
+    }
+
+    /**
+     * Returns a copy of these options with streaming mode enabled
+     * or disabled.
+     *
+     * <p>In streaming mode, every element is published as soon as it
+     * is added, so a single consumer can read the added elements (in
+     * order) while other threads keep adding elements, without waiting
+     * for the builder to transition to the built state. This requires
+     * an additional byte per element, and a chunk size of 1.
+     * Off-heap and unordered builders don't support streaming mode.
+     *
+     * <p>It is disabled by default.
+     *
+     * @param streaming whether to enable streaming mode
+     * @return the new options
+     * @throws IllegalArgumentException if {@code streaming} is {@code true},
+     *         and the chunk size is greater than 1 or rotation is enabled
+     * @see ConcurrentIntStreamBuilder#take(java.util.function.IntConsumer)
+     */
+    public BuilderOptions withStreaming(final boolean streaming) {
+        return new BuilderOptions(initialCapacity, chunkSize, streaming, rotation,
+                elementLimit, growthPolicy, metrics, contention, preallocation,
+                preallocator, statistics, distinct);
+    }
+
+    /**
+     * Returns a copy of these options with rotation enabled or disabled.
+     *
+     * <p>If enabled, the builder can be rotated any number of times
+     * before transitioning to the built state: rotating returns a stream
+     * of the elements added so far, and later elements are added to
+     * a new segment of the builder. Threads adding elements are never
+     * blocked, but each addition updates a per-thread counter. Requires
+     * a chunk size of 1, and running statistics to be disabled.
+     * Off-heap builders don't support rotation.
+     *
+     * <p>It is disabled by default.
+     *
+     * @param rotation whether to enable rotation
+     * @return the new options
+     * @throws IllegalArgumentException if {@code rotation} is {@code true},
+     *         and the chunk size is greater than 1, streaming mode or
+     *         running statistics are enabled
+     * @see ConcurrentIntStreamBuilder#rotate()
+     */
+    public BuilderOptions withRotation(final boolean rotation) {
+        return new BuilderOptions(initialCapacity, chunkSize, streaming, rotation,
+                elementLimit, growthPolicy, metrics, contention, preallocation,
+                preallocator, statistics, distinct);
+    }
+
+    /**
+     * Returns a copy of these options with the given maximum number
+     * of elements. Unordered builders apply the limit to each lane.
+     *
+     * <p>If limited, {@code accept} and {@code acceptAll} throw
+     * an {@link IllegalStateException} if the builder is full, and
+     * {@code tryAccept} returns {@code false} instead (after waiting
+     * for the given time, if any). Nodes are never larger than
+     * the limit, nor than the number of elements that can still be
+     * added, so the memory allocated by the builder is bounded.
+     *
+     * <p>Elements are counted until the builder is rotated (or reset),
+     * which makes room for the same number of elements. Waiting threads
+     * are parked, not spinning.
+     *
+     * <p>It defaults to {@code 0}, i.e. the number of elements is
+     * unlimited. Off-heap builders don't support a limit.
+     *
+     * @param elementLimit the maximum number of elements, or {@code 0}
+     *                     if unlimited
+     * @return the new options
+     * @throws IllegalArgumentException if {@code elementLimit} is negative
+     * @see ConcurrentIntStreamBuilder#tryAccept(int, long, java.util.concurrent.TimeUnit)
+     */
+    public BuilderOptions withElementLimit(final int elementLimit) {
+        if (elementLimit < 0)
+            throw new IllegalArgumentException("Got negative element limit " + elementLimit);
+        return new BuilderOptions(initialCapacity, chunkSize, streaming, rotation,
+                elementLimit, growthPolicy, metrics, contention, preallocation,
+                preallocator, statistics, distinct);
+    }
+
+    /**
+     * Returns a copy of these options with the given growth policy,
+     * which determines the capacity of the nodes.
+     *
+     * <p>It defaults to {@link GrowthPolicy#geometric()}.
+     *
+     * @param growthPolicy the growth policy
+     * @return the new options
+     */
+    public BuilderOptions withGrowthPolicy(final GrowthPolicy growthPolicy) {
+        return new BuilderOptions(initialCapacity, chunkSize, streaming, rotation,
+                elementLimit, Objects.requireNonNull(growthPolicy), metrics, contention,
+                preallocation, preallocator, statistics, distinct);
+    }
+
+    /**
+     * Returns a copy of these options with metrics enabled or disabled.
+     *
+     * <p>If enabled, the builder counts the contended operations when
+     * adding elements, the allocated nodes and the time spent adding
+     * elements. These are returned by {@code metrics()}, and emitted
+     * as JFR events named {@code me.hugmanrique.riviere.NodeAllocation}
+     * (for each node) and {@code me.hugmanrique.riviere.BuilderMetrics}
+     * (when transitioning to the built state, or rotating). If disabled,
+     * adding elements doesn't record anything.
+     *
+     * <p>It is disabled by default.
+     *
+     * @param metrics whether to enable metrics
+     * @return the new options
+     * @see ConcurrentIntStreamBuilder#metrics()
+     */
+    public BuilderOptions withMetrics(final boolean metrics) {
+        return new BuilderOptions(initialCapacity, chunkSize, streaming, rotation,
+                elementLimit, growthPolicy, metrics, contention, preallocation,
+                preallocator, statistics, distinct);
+    }
+
+    /**
+     * Returns a copy of these options with the given contention
+     * strategy, which determines how threads append a node once
+     * the last node is full.
+     *
+     * <p>It defaults to {@link ContentionStrategy#COMPETE}.
+     *
+     * @param contention the contention strategy
+     * @return the new options
+     */
+    public BuilderOptions withContentionStrategy(final ContentionStrategy contention) {
+        return new BuilderOptions(initialCapacity, chunkSize, streaming, rotation,
+                elementLimit, growthPolicy, metrics, Objects.requireNonNull(contention),
+                preallocation, preallocator, statistics, distinct);
+    }
+
+    /**
+     * Returns a copy of these options with the given preallocation
+     * threshold. The next node is allocated by the thread claiming
+     * the slot at which the threshold is crossed.
+     *
+     * @param threshold the fraction of a node's capacity
+     * @return the new options
+     * @throws IllegalArgumentException if {@code threshold} is not
+     *         between 0 and 1
+     * @see #withPreallocation(double, Executor)
+     */
+    public BuilderOptions withPreallocation(final double threshold) {
+        checkPreallocation(threshold);
+        return new BuilderOptions(initialCapacity, chunkSize, streaming, rotation,
+                elementLimit, growthPolicy, metrics, contention, threshold, null, statistics,
+                distinct);
+    }
+
+    /**
+     * Returns a copy of these options with the given preallocation
+     * threshold, and the executor allocating the next node.
+     *
+     * <p>If the threshold is positive, the next node is allocated once
+     * the number of slots claimed in the last node reaches the given
+     * fraction of its capacity, instead of once the node is full.
+     * The node is appended when the last node fills up, so no thread
+     * adding elements waits for a large node to be allocated (and
+     * zeroed), unless the elements are added faster than the node
+     * is allocated. Off-heap builders don't support preallocation.
+     *
+     * <p>It defaults to {@code 0}, i.e. nodes are allocated once the last
+     * node is full.
+     *
+     * @param threshold the fraction of a node's capacity, or {@code 0}
+     *                  to disable preallocation
+     * @param executor the executor allocating the next node
+     * @return the new options
+     * @throws IllegalArgumentException if {@code threshold} is not
+     *         between 0 and 1
+     */
+    public BuilderOptions withPreallocation(final double threshold, final Executor executor) {
+        checkPreallocation(threshold);
+        return new BuilderOptions(initialCapacity, chunkSize, streaming, rotation,
+                elementLimit, growthPolicy, metrics, contention, threshold,
+                Objects.requireNonNull(executor), statistics, distinct);
+    }
+
+    /**
+     * Returns a copy of these options with running statistics enabled
+     * or disabled.
+     *
+     * <p>If enabled, primitive builders update the count, sum, minimum
+     * and maximum of the elements as they are added, in a separate
+     * accumulator per adding thread. Once built, the summary statistics
+     * of the elements are computed by combining the accumulators,
+     * without traversing the elements. Since the accumulators can't
+     * be split at a cut, statistics are not supported with rotation.
+     * Reference and off-heap builders don't support statistics.
+     *
+     * <p>It is disabled by default.
+     *
+     * @param statistics whether to enable running statistics
+     * @return the new options
+     * @throws IllegalArgumentException if {@code statistics} is {@code true}
+     *         and rotation is enabled
+     * @see ConcurrentLongStreamBuilder#summaryStatistics()
+     */
+    public BuilderOptions withStatistics(final boolean statistics) {
+        return new BuilderOptions(initialCapacity, chunkSize, streaming, rotation,
+                elementLimit, growthPolicy, metrics, contention, preallocation,
+                preallocator, statistics, distinct);
+    }
+
+    /**
+     * Returns a copy of these options with distinct mode enabled
+     * or disabled.
+     *
+     * <p>If enabled, {@code int} and {@code long} builders record
+     * the added elements in a lock-free hash set, and drop the elements
+     * that were already added, so the built stream only contains
+     * the first occurrence of each element, in the order the first
+     * occurrences were added. Elements are recorded until the builder
+     * is reset, including across rotations. Other builders don't
+     * support distinct mode.
+     *
+     * <p>It is disabled by default.
+     *
+     * @param distinct whether to enable distinct mode
+     * @return the new options
+     * @see ConcurrentLongStreamBuilder#accept(long)
+     */
+    public BuilderOptions withDistinct(final boolean distinct) {
+        return new BuilderOptions(initialCapacity, chunkSize, streaming, rotation,
+                elementLimit, growthPolicy, metrics, contention, preallocation,
+                preallocator, statistics, distinct);
+    }
+
+    private static void checkPreallocation(final double threshold) {
+        if (!(threshold >= 0 && threshold <= 1))
+            throw new IllegalArgumentException("Got invalid preallocation threshold " + threshold);
+    }
+
+    int initialCapacity() {
+        return initialCapacity;
+    }
+
+    int chunkSize() {
+        return chunkSize;
+    }
+
+    boolean streaming() {
+        return streaming;
+    }
+
+    boolean rotation() {
+        return rotation;
+    }
+
+    int elementLimit() {
+        return elementLimit;
+    }
+
+    GrowthPolicy growthPolicy() {
+        return growthPolicy;
+    }
+
+    boolean metrics() {
+        return metrics;
+    }
+
+    ContentionStrategy contentionStrategy() {
+        return contention;
+    }
+
+    double preallocation() {
+        return preallocation;
+    }
+
+    Executor preallocator() {
+        return preallocator;
+    }
+
+    boolean statistics() {
+        return statistics;
+    }
+
+    boolean distinct() {
+        return distinct;
+    }
+
+    /**
+     * Returns these options, unless streaming mode is enabled.
+     *
+     * @return these options
+     * @throws IllegalArgumentException if streaming mode is enabled
+     */
+    BuilderOptions requireNotStreaming() {
+        if (streaming)
+            throw new IllegalArgumentException("Streaming mode is not supported by this builder");
+        return this;
+    }
+
+    /**
+     * Returns these options, unless rotation is enabled.
+     *
+     * @return these options
+     * @throws IllegalArgumentException if rotation is enabled
+     */
+    BuilderOptions requireNoRotation() {
+        if (rotation)
+            throw new IllegalArgumentException("Rotation is not supported by this builder");
+        return this;
+    }
+
+    /**
+     * Returns these options, unless the number of elements is limited.
+     *
+     * @return these options
+     * @throws IllegalArgumentException if the number of elements is limited
+     */
+    BuilderOptions requireNoElementLimit() {
+        if (elementLimit > 0)
+            throw new IllegalArgumentException("Element limit is not supported by this builder");
+        return this;
+    }
+
+    /**
+     * Returns these options, unless preallocation is enabled.
+     *
+     * @return these options
+     * @throws IllegalArgumentException if preallocation is enabled
+     */
+    BuilderOptions requireNoPreallocation() {
+        if (preallocation > 0)
+            throw new IllegalArgumentException("Preallocation is not supported by this builder");
+        return this;
+    }
+
+    /**
+     * Returns these options, unless running statistics are enabled.
+     *
+     * @return these options
+     * @throws IllegalArgumentException if running statistics are enabled
+     */
+    BuilderOptions requireNoStatistics() {
+        if (statistics)
+            throw new IllegalArgumentException("Statistics are not supported by this builder");
+        return this;
+    }
+
+    /**
+     * Returns these options, unless distinct mode is enabled.
+     *
+     * @return these options
+     * @throws IllegalArgumentException if distinct mode is enabled
+     */
+    BuilderOptions requireNotDistinct() {
+        if (distinct)
+            throw new IllegalArgumentException("Distinct mode is not supported by this builder");
+        return this;
+    }
+}
@@ -0,0 +1,196 @@
+package me.hugmanrique.riviere;
+
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
+import java.util.function.IntConsumer;
+import java.util.function.LongConsumer;
+
+/**
+ * A {@link Spliterator} traversing the elements of a sequence of
+ * {@code SIZED} and {@code SUBSIZED} spliterators, in order.
+ *
+ * <p>Splitting hands off the remaining spliterators holding about
+ * half of the remaining elements. Once a single one remains,
+ * splitting is delegated to it.
+ *
+ * @param <T> the type of the elements
+ * @param <S> the type of the concatenated spliterators
+ */
+abstract class ConcatSpliterator<T, S extends Spliterator<T>> implements Spliterator<T> {
+
+    protected final S[] parts;
+    protected int index; // current part index
+    protected final int fence; // one past last part index
+    private final int characteristics;
+
+    /**
+     * Constructs a spliterator over {@code parts[index]} up to
+     * {@code parts[fence - 1]}.
+     *
+     * @param parts the spliterators to concatenate
+     * @param index the index of the first part
+     * @param fence the index after the last part
+     * @param characteristics the characteristics of the concatenation,
+     *                        which must be satisfied by every part
+     */
+    ConcatSpliterator(final S[] parts, final int index, final int fence,
+                      final int characteristics) {
+        this.parts = parts;
+        this.index = index;
+        this.fence = fence;
+        this.characteristics = characteristics;
+    }
+
+    protected abstract S newSpliterator(int index, int fence);
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public S trySplit() {
+        int remaining = fence - index;
+        if (remaining > 1) {
+            // Both halves contain at least one part
+            long half = estimateSize() >>> 1;
+            long prefixSize = parts[index].estimateSize();
+            int mid = index + 1;
+            while (mid < fence - 1 && prefixSize + parts[mid].estimateSize() <= half)
+                prefixSize += parts[mid++].estimateSize();
+            S prefix = newSpliterator(index, mid);
+            index = mid;
+            return prefix;
+        }
+        // Every part is an S, whose trySplit returns an S
+        return remaining == 1 ? (S) parts[index].trySplit() : null;
+    }
+
+    @Override
+    public boolean tryAdvance(final Consumer<? super T> action) {
+        Objects.requireNonNull(action);
+        for (; index < fence; index++) {
+            if (parts[index].tryAdvance(action))
+                return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void forEachRemaining(final Consumer<? super T> action) {
+        Objects.requireNonNull(action);
+        for (; index < fence; index++)
+            parts[index].forEachRemaining(action);
+    }
+
+    @Override
+    public long estimateSize() {
+        long size = 0;
+        for (int i = index; i < fence; i++) {
+            size += parts[i].estimateSize();
+            if (size < 0) // overflow
+                return Long.MAX_VALUE;
+        }
+        return size;
+    }
+
+    @Override
+    public int characteristics() {
+        return characteristics;
+    }
+
+    static final class OfRef<T> extends ConcatSpliterator<T, Spliterator<T>> {
+
+        OfRef(final Spliterator<T>[] parts, final int characteristics) {
+            this(parts, 0, parts.length, characteristics);
+        }
+
+        private OfRef(final Spliterator<T>[] parts, final int index, final int fence,
+                      final int characteristics) {
+            super(parts, index, fence, characteristics);
+        }
+
+        @Override
+        protected Spliterator<T> newSpliterator(final int index, final int fence) {
+            return new OfRef<>(parts, index, fence, characteristics());
+        }
+    }
+
+    private abstract static class OfPrimitive<T, C, S extends Spliterator.OfPrimitive<T, C, S>>
+            extends ConcatSpliterator<T, S> implements Spliterator.OfPrimitive<T, C, S> {
+
+        private OfPrimitive(final S[] parts, final int index, final int fence,
+                            final int characteristics) {
+            super(parts, index, fence, characteristics);
+        }
+
+        @Override
+        public boolean tryAdvance(final C action) {
+            Objects.requireNonNull(action);
+            for (; index < fence; index++) {
+                if (parts[index].tryAdvance(action))
+                    return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(final C action) {
+            Objects.requireNonNull(action);
+            for (; index < fence; index++)
+                parts[index].forEachRemaining(action);
+        }
+    }
+
+    static final class OfInt extends OfPrimitive<Integer, IntConsumer, Spliterator.OfInt>
+            implements Spliterator.OfInt {
+
+        OfInt(final Spliterator.OfInt[] parts, final int characteristics) {
+            this(parts, 0, parts.length, characteristics);
+        }
+
+        private OfInt(final Spliterator.OfInt[] parts, final int index, final int fence,
+                      final int characteristics) {
+            super(parts, index, fence, characteristics);
+        }
+
+        @Override
+        protected Spliterator.OfInt newSpliterator(final int index, final int fence) {
+            return new ConcatSpliterator.OfInt(parts, index, fence, characteristics());
+        }
+    }
+
+    static final class OfLong extends OfPrimitive<Long, LongConsumer, Spliterator.OfLong>
+            implements Spliterator.OfLong {
+
+        OfLong(final Spliterator.OfLong[] parts, final int characteristics) {
+            this(parts, 0, parts.length, characteristics);
+        }
+
+        private OfLong(final Spliterator.OfLong[] parts, final int index, final int fence,
+                       final int characteristics) {
+            super(parts, index, fence, characteristics);
+        }
+
+        @Override
+        protected Spliterator.OfLong newSpliterator(final int index, final int fence) {
+            return new ConcatSpliterator.OfLong(parts, index, fence, characteristics());
+        }
+    }
+
+    static final class OfDouble extends OfPrimitive<Double, DoubleConsumer, Spliterator.OfDouble>
+            implements Spliterator.OfDouble {
+
+        OfDouble(final Spliterator.OfDouble[] parts, final int characteristics) {
+            this(parts, 0, parts.length, characteristics);
+        }
+
+        private OfDouble(final Spliterator.OfDouble[] parts, final int index, final int fence,
+                         final int characteristics) {
+            super(parts, index, fence, characteristics);
+        }
+
+        @Override
+        protected Spliterator.OfDouble newSpliterator(final int index, final int fence) {
+            return new ConcatSpliterator.OfDouble(parts, index, fence, characteristics());
+        }
+    }
+}
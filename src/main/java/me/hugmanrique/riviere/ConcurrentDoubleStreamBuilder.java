@@ -1,9 +1,14 @@
 package me.hugmanrique.riviere;
 
+import java.util.Arrays;
+import java.util.DoubleSummaryStatistics;
 import java.util.Objects;
+import java.util.PrimitiveIterator;
 import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 import java.util.function.DoubleConsumer;
-import java.util.function.DoubleSupplier;
 import java.util.stream.DoubleStream;
 import java.util.stream.StreamSupport;
 
@@ -15,35 +20,38 @@ import java.util.stream.StreamSupport;
  * actions subsequent to building the stream in another thread.
  */
 public final class ConcurrentDoubleStreamBuilder
-        extends AbstractConcurrentStreamBuilder<double[], DoubleSupplier>
+        extends AbstractConcurrentStreamBuilder<double[]>
         implements DoubleStream.Builder {
 
-    private static final class DoubleNode extends Node<double[], DoubleSupplier> {
+    private static final class DoubleNode extends Node<double[]> {
 
         private DoubleNode(final int capacity) {
             super(capacity);
         }
 
-        private DoubleNode(final int capacity, final double firstItem) {
-            super(capacity, 1);
-            this.items[0] = firstItem;
-        }
-
         @Override
         protected double[] newArray(final int length) {
             return new double[length];
         }
 
         @Override
-        protected void setPlain(final int index, final DoubleSupplier supplier) {
-            this.items[index] = supplier.getAsDouble();
+        protected long itemBytes() {
+            return (long) items.length * Double.BYTES;
         }
     }
 
+    /**
+     * The running statistics of each adding thread, or {@code null}
+     * if disabled. Replaced when the builder is reset.
+     */
+    private ThreadCells<DoubleSummaryStatistics> statistics;
+
     /**
      * Constructs a concurrent {@link DoubleStream} builder.
      */
-    public ConcurrentDoubleStreamBuilder() {}
+    public ConcurrentDoubleStreamBuilder() {
+        this(BuilderOptions.defaults());
+    }
 
     /**
      * Constructs a concurrent {@link DoubleStream} builder with
@@ -52,7 +60,20 @@ public final class ConcurrentDoubleStreamBuilder
      * @param initialCapacity the capacity of the head node
      */
     public ConcurrentDoubleStreamBuilder(final int initialCapacity) {
-        super(initialCapacity);
+        this(BuilderOptions.defaults().withInitialCapacity(initialCapacity));
+    }
+
+    /**
+     * Constructs a concurrent {@link DoubleStream} builder with
+     * the given options.
+     *
+     * @param options the builder options
+     * @throws IllegalArgumentException if distinct mode is enabled
+     */
+    public ConcurrentDoubleStreamBuilder(final BuilderOptions options) {
+        super(options.requireNotDistinct());
+        this.statistics = options.statistics()
+                ? new ThreadCells<>(DoubleSummaryStatistics::new) : null;
     }
 
     @Override
@@ -60,25 +81,496 @@ public final class ConcurrentDoubleStreamBuilder
         return new DoubleNode(capacity);
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IllegalStateException if the builder has already transitioned
+     *         to the built state, or the number of elements is limited
+     *         and the builder is full
+     */
     @Override
-    protected DoubleNode createNextNode(final int capacity, final DoubleSupplier valueSupplier) {
-        return new DoubleNode(capacity, valueSupplier.getAsDouble());
+    public void accept(final double value) {
+        checkNotBuilt();
+        acquire(1);
+        enqueue(value);
+    }
+
+    /**
+     * Adds an element to the stream being built, unless the number of
+     * elements is limited and the builder is full.
+     *
+     * @param value the element to add
+     * @return {@code true} if the element was added
+     * @throws IllegalStateException if the builder has already transitioned
+     *         to the built state
+     * @see BuilderOptions#withElementLimit(int)
+     */
+    public boolean tryAccept(final double value) {
+        checkNotBuilt();
+        if (!tryAcquire())
+            return false;
+        enqueue(value);
+        return true;
+    }
+
+    /**
+     * Adds an element to the stream being built, waiting up to
+     * the given time for the builder to make room for it if the number
+     * of elements is limited and the builder is full.
+     *
+     * @param value the element to add
+     * @param timeout the maximum time to wait
+     * @param unit the time unit of {@code timeout}
+     * @return {@code true} if the element was added
+     * @throws InterruptedException if interrupted while waiting
+     * @throws IllegalStateException if the builder has already transitioned
+     *         to the built state
+     * @see BuilderOptions#withElementLimit(int)
+     */
+    public boolean tryAccept(final double value, final long timeout, final TimeUnit unit)
+            throws InterruptedException {
+        checkNotBuilt();
+        if (!tryAcquire(timeout, unit))
+            return false;
+        enqueue(value);
+        return true;
+    }
+
+    /**
+     * Enqueues the given element, for which a permit has been acquired.
+     * The permit is released if the element can't be enqueued.
+     */
+    private void enqueue(final double value) {
+        Writer writer = beginWrite();
+        boolean enqueued = false;
+        try {
+            Node<double[]> node;
+            int index;
+            Chunk<double[]> chunk = localChunk();
+            if (chunk != null) {
+                index = claim(chunk);
+                node = chunk.node;
+            } else {
+                do {
+                    node = lastNode();
+                } while ((index = claim(node)) < 0);
+            }
+            node.items[index] = value;
+            if (statistics != null)
+                statistics.get().accept(value);
+            publish(node, index);
+            enqueued = true;
+        } finally {
+            endWrite(writer);
+            if (!enqueued)
+                release(1);
+        }
+    }
+
+    /**
+     * Adds all the elements of the given array to the stream being built.
+     *
+     * @param values the elements to add
+     * @throws IllegalStateException if the builder has already transitioned
+     *         to the built state
+     * @see #acceptAll(double[], int, int)
+     */
+    public void acceptAll(final double[] values) {
+        acceptAll(values, 0, values.length);
+    }
+
+    /**
+     * Adds {@code length} elements of the given array to the stream
+     * being built, starting at index {@code offset}.
+     *
+     * <p>The elements are added in order, claiming as many free slots as
+     * possible with a single atomic operation. Elements added concurrently
+     * by other threads may be interleaved with the given range.
+     *
+     * @param values the array containing the elements to add
+     * @param offset the index of the first element to add
+     * @param length the number of elements to add
+     * @throws IndexOutOfBoundsException if the range is out of bounds
+     * @throws IllegalStateException if the builder has already transitioned
+     *         to the built state, or the number of elements is limited
+     *         and the builder can't hold all the elements
+     */
+    public void acceptAll(final double[] values, final int offset, final int length) {
+        Objects.checkFromIndexSize(offset, length, values.length);
+        enqueueAll(values, offset, length);
     }
 
     @Override
-    public void accept(final double value) {
-        enqueue(() -> value);
+    protected void itemsStored(final Object src, final int offset, final int length) {
+        if (statistics != null) {
+            double[] values = (double[]) src;
+            DoubleSummaryStatistics local = statistics.get();
+            for (int i = offset; i < offset + length; i++)
+                local.accept(values[i]);
+        }
+    }
+
+    /**
+     * Performs the given action on the next element added to this
+     * builder, if it is ready. The builder must be in streaming mode.
+     *
+     * <p>Elements are consumed in the same order as they appear in
+     * the built stream, while other threads keep adding elements.
+     * This method (and {@link #take}, {@link #drain}) must only be
+     * called by a single thread at a time. Consumed elements are
+     * not removed, and are still included in the built stream.
+     *
+     * @param action the action to perform
+     * @return {@code false} if the next element is not ready, or all
+     *         the elements have been consumed
+     * @throws IllegalStateException if the builder is not in streaming mode
+     * @see BuilderOptions#withStreaming(boolean)
+     */
+    public boolean poll(final DoubleConsumer action) {
+        Objects.requireNonNull(action);
+        int index = pollIndex();
+        if (index < 0)
+            return false;
+        action.accept(readNode().items[index]);
+        return true;
+    }
+
+    /**
+     * Performs the given action on the next element added to this
+     * builder, waiting until it is ready if necessary. The builder
+     * must be in streaming mode.
+     *
+     * @param action the action to perform
+     * @return {@code false} if the builder transitioned to the built
+     *         state, and all its elements have been consumed
+     * @throws InterruptedException if interrupted while waiting
+     * @throws IllegalStateException if the builder is not in streaming mode
+     * @see #poll
+     */
+    public boolean take(final DoubleConsumer action) throws InterruptedException {
+        Objects.requireNonNull(action);
+        int index = takeIndex();
+        if (index < 0)
+            return false;
+        action.accept(readNode().items[index]);
+        return true;
+    }
+
+    /**
+     * Performs the given action on each element added to this builder
+     * that is ready, in order, until reaching an element that is not.
+     * The builder must be in streaming mode.
+     *
+     * @param action the action to perform
+     * @return the number of consumed elements
+     * @throws IllegalStateException if the builder is not in streaming mode
+     * @see #poll
+     */
+    public int drain(final DoubleConsumer action) {
+        Objects.requireNonNull(action);
+        int count = 0;
+        int index;
+        while ((index = pollIndex()) >= 0) {
+            action.accept(readNode().items[index]);
+            count++;
+        }
+        return count;
     }
 
     @Override
     public DoubleStream build() {
+        return StreamSupport.doubleStream(buildSpliterator(), false);
+    }
+
+    /**
+     * Transitions the builder to the built state, and returns a stream
+     * of its elements in ascending order, as defined by
+     * {@link Double#compare(double, double)}. This is equivalent to
+     * {@code build().sorted()}, but the elements are directly copied
+     * into an array of the exact size, which is sorted in parallel on
+     * the {@link ForkJoinPool#commonPool() common pool}. The stream is
+     * {@link Spliterator#SORTED SORTED}, so later {@link DoubleStream#sorted()}
+     * calls do nothing.
+     *
+     * @return a sorted stream of the elements of this builder
+     * @throws IllegalStateException if the builder has already transitioned
+     *         to the built state
+     * @throws IllegalArgumentException if the number of elements exceeds
+     *         the maximum array length
+     * @see Arrays#parallelSort(double[])
+     */
+    public DoubleStream buildSorted() {
+        double[] array = toArray();
+        Arrays.parallelSort(array);
+        return StreamSupport.doubleStream(
+                Spliterators.spliterator(array, CHARACTERISTICS | Spliterator.SORTED), false);
+    }
+
+    /**
+     * Transitions the given builders to the built state, and returns
+     * a stream of their elements, in order: the elements of each builder
+     * follow the elements of the preceding one. No element is copied.
+     *
+     * <p>Unlike {@link DoubleStream#concat(DoubleStream, DoubleStream)}, the stream is
+     * split at the builder boundaries balancing the number of elements,
+     * and then at node boundaries.
+     *
+     * @param builders the builders to concatenate
+     * @return a stream of the elements of every builder
+     * @throws IllegalStateException if a builder has already transitioned
+     *         to the built state, in which case the preceding builders
+     *         remain in built state
+     */
+    public static DoubleStream concat(final ConcurrentDoubleStreamBuilder... builders) {
+        Spliterator.OfDouble[] parts = new Spliterator.OfDouble[builders.length];
+        for (int i = 0; i < builders.length; i++)
+            parts[i] = builders[i].buildSpliterator();
+        return StreamSupport.doubleStream(
+                new ConcatSpliterator.OfDouble(parts, CHARACTERISTICS), false);
+    }
+
+    /**
+     * Seals the elements added so far, and returns a stream of them,
+     * in order. The builder does not transition to the built state:
+     * later elements are included in the stream returned by the next
+     * call to this method or {@link #build()}. Rotation must be enabled.
+     *
+     * <p>Elements being added concurrently are included in either
+     * stream, but not both. Adding threads are never blocked, but this
+     * method waits until the threads that claimed a slot before
+     * the cut finish initializing it.
+     *
+     * <p>This method must not be called concurrently with itself, or
+     * with the methods transitioning the builder to the built state.
+     *
+     * @return a stream of the elements added since the last rotation
+     * @throws IllegalStateException if rotation is disabled, or
+     *         the builder has already transitioned to the built state
+     * @see BuilderOptions#withRotation(boolean)
+     */
+    public DoubleStream rotate() {
+        return StreamSupport.doubleStream(rotateSpliterator(), false);
+    }
+
+    /**
+     * Transitions the builder from the built state back to its initial
+     * state. Elements added afterwards are stored in the nodes allocated
+     * by previous additions, before allocating new ones.
+     *
+     * <p>This method must not be called concurrently with any other
+     * method, and the streams (and views) previously built from this
+     * builder must no longer be used.
+     *
+     * @throws IllegalStateException if the builder is not in built state
+     */
+    @Override
+    public void reset() {
+        checkBuilt();
+        // Published to adding threads by the transition in super.reset()
+        if (statistics != null)
+            statistics = new ThreadCells<>(DoubleSummaryStatistics::new);
+        super.reset();
+    }
+
+    /**
+     * Returns the summary statistics of the elements of this builder,
+     * combining the statistics updated by each adding thread. Unlike
+     * {@code build().summaryStatistics()}, the elements are not
+     * traversed. The builder must be in built state, and running
+     * statistics must be enabled.
+     *
+     * @return the summary statistics of the elements
+     * @throws IllegalStateException if running statistics are disabled,
+     *         or the builder is not in built state
+     * @see BuilderOptions#withStatistics(boolean)
+     */
+    public DoubleSummaryStatistics summaryStatistics() {
+        if (statistics == null)
+            throw new IllegalStateException("Builder statistics are disabled");
+        checkBuilt();
+        DoubleSummaryStatistics result = new DoubleSummaryStatistics();
+        statistics.forEach(result::combine);
+        return result;
+    }
+
+    /**
+     * Returns a snapshot of the metrics recorded by this builder.
+     *
+     * @return the metrics snapshot
+     * @throws IllegalStateException if metrics are disabled
+     * @see BuilderOptions#withMetrics(boolean)
+     */
+    public BuilderMetrics metrics() {
+        return metricsSnapshot();
+    }
+
+    /**
+     * Transitions the builder to the built state, and returns an array
+     * containing its elements, in order. This is equivalent to
+     * {@code build().toArray()}, but the elements are directly copied
+     * into an array of the exact size.
+     *
+     * @return an array containing the elements of this builder
+     * @throws IllegalStateException if the builder has already transitioned
+     *         to the built state
+     * @throws IllegalArgumentException if the number of elements exceeds
+     *         the maximum array length
+     */
+    public double[] toArray() {
+        double[] array = new double[buildArraySize()];
+        copyItems(array, 0);
+        return array;
+    }
+
+    /**
+     * Transitions the builder to the built state, and copies its elements,
+     * in order, into the given array starting at index {@code offset}.
+     *
+     * @param dst the destination array
+     * @param offset the index of the first element in {@code dst}
+     * @return the number of copied elements
+     * @throws IllegalStateException if the builder has already transitioned
+     *         to the built state
+     * @throws IndexOutOfBoundsException if the elements don't fit in
+     *         {@code dst}, in which case the builder is still transitioned
+     *         to the built state
+     */
+    public int copyInto(final double[] dst, final int offset) {
+        int size = buildArraySize();
+        Objects.checkFromIndexSize(offset, size, dst.length);
+        copyItems(dst, offset);
+        return size;
+    }
+
+    /**
+     * Transitions the builder to the built state, and returns
+     * a read-only random access view of its elements.
+     *
+     * @return a sequence of the elements of this builder
+     * @throws IllegalStateException if the builder has already transitioned
+     *         to the built state
+     */
+    public Sequence buildSequence() {
+        checkAndSetBuilt();
+        return new Sequence();
+    }
+
+    /**
+     * Transitions the builder to the built state, and returns
+     * a spliterator over its elements.
+     *
+     * @return a spliterator over the elements of this builder
+     * @throws IllegalStateException if the builder has already transitioned
+     *         to the built state
+     */
+    Spliterator.OfDouble buildSpliterator() {
         checkAndSetBuilt();
-        return StreamSupport.doubleStream(new BuilderSpliterator(), false);
+        return new BuilderSpliterator();
+    }
+
+    /**
+     * Seals the elements added so far, and returns a spliterator
+     * over them.
+     *
+     * @return a spliterator over the elements added since the last rotation
+     * @throws IllegalStateException if rotation is disabled, or
+     *         the builder has already transitioned to the built state
+     */
+    Spliterator.OfDouble rotateSpliterator() {
+        return new BuilderSpliterator(cut());
+    }
+
+    /**
+     * A read-only view of the elements of a built builder, supporting
+     * random access and slicing without copying. Streams over
+     * the sequence may be created any number of times.
+     */
+    public final class Sequence extends AbstractSequence<Spliterator.OfDouble> {
+
+        private Sequence() {}
+
+        @Override
+        protected Spliterator.OfDouble newSpliterator(final Node<double[]> node, final int index,
+                                                      final Node<double[]> last, final int fence) {
+            return new BuilderSpliterator(node, index, last, fence);
+        }
+
+        /**
+         * Returns the element at the given index.
+         *
+         * @param index the element index
+         * @return the element at the given index
+         * @throws IndexOutOfBoundsException if the index is out of range
+         */
+        public double get(final long index) {
+            Node<double[]> node = nodeOf(index);
+            return node.items[indexIn(node, index)];
+        }
+
+        /**
+         * Returns an iterator over the elements of this sequence.
+         *
+         * @return an iterator over the elements
+         */
+        public PrimitiveIterator.OfDouble iterator() {
+            return Spliterators.iterator(spliterator());
+        }
+
+        /**
+         * Performs the given action for each element of this sequence,
+         * in order.
+         *
+         * @param action the action to perform
+         */
+        public void forEach(final DoubleConsumer action) {
+            spliterator().forEachRemaining(action);
+        }
+
+        /**
+         * Returns a sequential {@code DoubleStream} of the elements of this sequence.
+         *
+         * @return a stream of the elements
+         */
+        public DoubleStream stream() {
+            return StreamSupport.doubleStream(spliterator(), false);
+        }
+
+        /**
+         * Returns a sequential {@code DoubleStream} of the elements of this sequence
+         * from index {@code from} (inclusive) to {@code to} (exclusive).
+         * Unlike {@code stream().skip(from).limit(to - from)}, the skipped
+         * elements are not traversed.
+         *
+         * @param from the index of the first element
+         * @param to the index after the last element
+         * @return a stream of the elements in the given range
+         * @throws IndexOutOfBoundsException if the range is out of bounds
+         */
+        public DoubleStream stream(final long from, final long to) {
+            return StreamSupport.doubleStream(spliterator(from, to), false);
+        }
     }
 
     private final class BuilderSpliterator extends AbstractSpliterator<Spliterator.OfDouble>
             implements Spliterator.OfDouble {
 
+        private BuilderSpliterator() {}
+
+        private BuilderSpliterator(final Segment<double[]> segment) {
+            super(segment);
+        }
+
+        private BuilderSpliterator(final Node<double[]> node, final int index,
+                                   final Node<double[]> last, final int fence) {
+            super(node, index, last, fence);
+        }
+
+        @Override
+        protected BuilderSpliterator newSpliterator(final Node<double[]> node, final int index,
+                                                    final Node<double[]> last, final int fence) {
+            return new BuilderSpliterator(node, index, last, fence);
+        }
+
         @Override
         public boolean tryAdvance(final DoubleConsumer action) {
             Objects.requireNonNull(action);
@@ -88,5 +580,18 @@ public final class ConcurrentDoubleStreamBuilder
             }
             return advance;
         }
+
+        @Override
+        public void forEachRemaining(final DoubleConsumer action) {
+            Objects.requireNonNull(action);
+            do {
+                double[] items = node.items;
+                int from = index;
+                int to = end();
+                index = to;
+                for (int i = from; i < to; i++)
+                    action.accept(items[i]);
+            } while (advanceNode());
+        }
     }
 }
@@ -0,0 +1,189 @@
+package me.hugmanrique.riviere;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * A lock-free set of {@code int} values supporting concurrent
+ * additions, used to drop duplicate elements in distinct mode.
+ *
+ * <p>Values are stored unboxed in an open-addressing table with
+ * linear probing, which is replaced by a table twice as large once
+ * it is three quarters full. Values are never removed.
+ */
+final class ConcurrentIntHashSet {
+
+    // A slot of a Table is either EMPTY, holds a value, or is MOVED.
+    // Since values are never removed, the slots preceding a value in
+    // its probe sequence hold other values forever: a value is either
+    // found at, or added to, the first slot of its probe sequence
+    // not holding another value.
+    //
+    // When a Table is full enough, a single thread installs the next
+    // Table and migrates the values to it, CASing every EMPTY slot
+    // to MOVED. A thread finding a MOVED slot in the probe sequence
+    // of a value knows the value was never added to the Table, and
+    // adds it to the next one, without waiting for the migration.
+    // Once a migration completes, the root advances past the migrated
+    // tables.
+    //
+    // The sentinel values themselves are recorded in separate bits.
+
+    private static final int EMPTY = 0;
+    private static final int MOVED = Integer.MIN_VALUE;
+
+    private static final int EMPTY_ADDED = 1;
+    private static final int MOVED_ADDED = 1 << 1;
+
+    private static final int MIN_CAPACITY = 16;
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    // 2^32 divided by the golden ratio, spreads consecutive values
+    private static final int MULTIPLIER = 0x9E3779B9;
+
+    private static final class Table {
+        private final int[] slots;
+        private final int shift;
+        private final int threshold;
+        @SuppressWarnings("unused") // Accessed through SIZE
+        private volatile int size;
+        private volatile Table next;
+        private volatile boolean migrated;
+
+        private Table(final int capacity) {
+            this.slots = new int[capacity];
+            this.shift = Integer.SIZE - Integer.numberOfTrailingZeros(capacity);
+            this.threshold = capacity - (capacity >>> 2);
+        }
+
+        private int indexOf(final int value) {
+            // Fibonacci hashing, the high bits are the best mixed
+            return (value * MULTIPLIER) >>> shift;
+        }
+    }
+
+    private final int initialCapacity;
+    private volatile Table table;
+    private volatile int sentinels;
+
+    /**
+     * Constructs an empty set.
+     *
+     * @param expectedSize the number of values the set can hold
+     *                     before growing
+     */
+    ConcurrentIntHashSet(final int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity - (capacity >>> 2) < expectedSize && capacity < MAX_CAPACITY)
+            capacity <<= 1;
+        this.initialCapacity = capacity;
+        this.table = new Table(capacity);
+    }
+
+    /**
+     * Adds the given value to this set, unless it is already present.
+     *
+     * @param value the value to add
+     * @return {@code true} if the value was not already present
+     * @throws IllegalStateException if the set can't grow to hold
+     *         the value
+     */
+    boolean add(final int value) {
+        if (value == EMPTY)
+            return addSentinel(EMPTY_ADDED);
+        if (value == MOVED)
+            return addSentinel(MOVED_ADDED);
+        return add(table, value);
+    }
+
+    /**
+     * Removes all the values from this set. Must not be called
+     * concurrently with {@link #add(int)}.
+     */
+    void clear() {
+        table = new Table(initialCapacity);
+        sentinels = 0;
+    }
+
+    private boolean addSentinel(final int bit) {
+        int current;
+        do {
+            current = sentinels;
+            if ((current & bit) != 0)
+                return false;
+        } while (!SENTINELS.compareAndSet(this, current, current | bit));
+        return true;
+    }
+
+    private boolean add(Table current, final int value) {
+        while (true) {
+            int[] slots = current.slots;
+            int mask = slots.length - 1;
+            int index = current.indexOf(value);
+            for (int probes = 0; probes < slots.length; probes++) {
+                int slot = (int) SLOT.getAcquire(slots, index);
+                if (slot == EMPTY) {
+                    slot = (int) SLOT.compareAndExchange(slots, index, EMPTY, value);
+                    if (slot == EMPTY) {
+                        if ((int) SIZE.getAndAdd(current, 1) + 1 >= current.threshold)
+                            grow(current);
+                        return true;
+                    }
+                }
+                if (slot == value)
+                    return false;
+                if (slot == MOVED)
+                    break;
+                index = (index + 1) & mask;
+            }
+            // The value was never added to this table
+            if (current.next == null)
+                grow(current);
+            current = current.next;
+            if (current == null)
+                throw new IllegalStateException("Distinct set exceeds max capacity");
+        }
+    }
+
+    /**
+     * Installs the next table of the given table and migrates
+     * its values, unless another thread already did.
+     *
+     * @param full the table to grow
+     */
+    private void grow(final Table full) {
+        int[] slots = full.slots;
+        if (full.next != null || slots.length == MAX_CAPACITY)
+            return;
+        Table next = new Table(slots.length << 1);
+        if (!NEXT.compareAndSet(full, null, next))
+            return;
+        for (int i = 0; i < slots.length; i++) {
+            int slot = (int) SLOT.compareAndExchange(slots, i, EMPTY, MOVED);
+            if (slot != EMPTY)
+                add(next, slot);
+        }
+        full.migrated = true;
+        Table root;
+        while ((root = table).migrated)
+            TABLE.compareAndSet(this, root, root.next);
+    }
+
+    // VarHandle mechanics
+    private static final VarHandle TABLE;
+    private static final VarHandle SENTINELS;
+    private static final VarHandle SIZE;
+    private static final VarHandle NEXT;
+    private static final VarHandle SLOT = MethodHandles.arrayElementVarHandle(int[].class);
+    static {
+        try {
+            MethodHandles.Lookup l = MethodHandles.lookup();
+            TABLE = l.findVarHandle(ConcurrentIntHashSet.class, "table", Table.class);
+            SENTINELS = l.findVarHandle(ConcurrentIntHashSet.class, "sentinels", int.class);
+            SIZE = l.findVarHandle(Table.class, "size", int.class);
+            NEXT = l.findVarHandle(Table.class, "next", Table.class);
+        } catch (final ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+}
@@ -1,9 +1,14 @@
 package me.hugmanrique.riviere;
 
+import java.util.Arrays;
+import java.util.IntSummaryStatistics;
 import java.util.Objects;
+import java.util.PrimitiveIterator;
 import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 import java.util.function.IntConsumer;
-import java.util.function.IntSupplier;
 import java.util.stream.IntStream;
 import java.util.stream.StreamSupport;
 
@@ -15,34 +20,43 @@ import java.util.stream.StreamSupport;
  * actions subsequent to building the stream in another thread.
  */
 public final class ConcurrentIntStreamBuilder
-        extends AbstractConcurrentStreamBuilder<int[], IntSupplier> implements IntStream.Builder {
+        extends AbstractConcurrentStreamBuilder<int[]> implements IntStream.Builder {
 
-    private static final class IntNode extends Node<int[], IntSupplier> {
+    private static final class IntNode extends Node<int[]> {
 
         private IntNode(final int capacity) {
             super(capacity);
         }
 
-        private IntNode(final int capacity, final int firstItem) {
-            super(capacity, 1);
-            this.items[0] = firstItem;
-        }
-
         @Override
         protected int[] newArray(final int length) {
             return new int[length];
         }
 
         @Override
-        protected void setPlain(final int index, final IntSupplier supplier) {
-            this.items[index] = supplier.getAsInt();
+        protected long itemBytes() {
+            return (long) items.length * Integer.BYTES;
         }
     }
 
+    /**
+     * The running statistics of each adding thread, or {@code null}
+     * if disabled. Replaced when the builder is reset.
+     */
+    private ThreadCells<IntSummaryStatistics> statistics;
+
+    /**
+     * The elements added so far, or {@code null} if distinct mode
+     * is disabled.
+     */
+    private final ConcurrentIntHashSet distinct;
+
     /**
      * Constructs a concurrent {@link IntStream} builder.
      */
-    public ConcurrentIntStreamBuilder() {}
+    public ConcurrentIntStreamBuilder() {
+        this(BuilderOptions.defaults());
+    }
 
     /**
      * Constructs a concurrent {@link IntStream} builder with
@@ -51,7 +65,21 @@ public final class ConcurrentIntStreamBuilder
      * @param initialCapacity the capacity of the head node
      */
     public ConcurrentIntStreamBuilder(final int initialCapacity) {
-        super(initialCapacity);
+        this(BuilderOptions.defaults().withInitialCapacity(initialCapacity));
+    }
+
+    /**
+     * Constructs a concurrent {@link IntStream} builder with
+     * the given options.
+     *
+     * @param options the builder options
+     */
+    public ConcurrentIntStreamBuilder(final BuilderOptions options) {
+        super(options);
+        this.statistics = options.statistics()
+                ? new ThreadCells<>(IntSummaryStatistics::new) : null;
+        this.distinct = options.distinct()
+                ? new ConcurrentIntHashSet(options.initialCapacity()) : null;
     }
 
     @Override
@@ -59,25 +87,539 @@ public final class ConcurrentIntStreamBuilder
         return new IntNode(capacity);
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * <p>If distinct mode is enabled, the element is dropped if it
+     * was already added.
+     *
+     * @throws IllegalStateException if the builder has already transitioned
+     *         to the built state, or the number of elements is limited
+     *         and the builder is full
+     * @see BuilderOptions#withDistinct(boolean)
+     */
     @Override
-    protected IntNode createNextNode(final int capacity, final IntSupplier valueSupplier) {
-        return new IntNode(capacity, valueSupplier.getAsInt());
+    public void accept(final int value) {
+        checkNotBuilt();
+        acquire(1);
+        if (!isDuplicate(value))
+            enqueue(value);
+    }
+
+    /**
+     * Adds an element to the stream being built, unless the number of
+     * elements is limited and the builder is full.
+     *
+     * @param value the element to add
+     * @return {@code true} if the element was added, or dropped
+     *         as a duplicate in distinct mode
+     * @throws IllegalStateException if the builder has already transitioned
+     *         to the built state
+     * @see BuilderOptions#withElementLimit(int)
+     */
+    public boolean tryAccept(final int value) {
+        checkNotBuilt();
+        if (!tryAcquire())
+            return false;
+        if (!isDuplicate(value))
+            enqueue(value);
+        return true;
+    }
+
+    /**
+     * Adds an element to the stream being built, waiting up to
+     * the given time for the builder to make room for it if the number
+     * of elements is limited and the builder is full.
+     *
+     * @param value the element to add
+     * @param timeout the maximum time to wait
+     * @param unit the time unit of {@code timeout}
+     * @return {@code true} if the element was added, or dropped
+     *         as a duplicate in distinct mode
+     * @throws InterruptedException if interrupted while waiting
+     * @throws IllegalStateException if the builder has already transitioned
+     *         to the built state
+     * @see BuilderOptions#withElementLimit(int)
+     */
+    public boolean tryAccept(final int value, final long timeout, final TimeUnit unit)
+            throws InterruptedException {
+        checkNotBuilt();
+        if (!tryAcquire(timeout, unit))
+            return false;
+        if (!isDuplicate(value))
+            enqueue(value);
+        return true;
+    }
+
+    /**
+     * Returns whether the given element was already added, in which
+     * case it must be dropped, and releases its permit. Otherwise,
+     * records the element if distinct mode is enabled.
+     */
+    private boolean isDuplicate(final int value) {
+        if (distinct == null || distinct.add(value))
+            return false;
+        release(1);
+        checkNotBuilt();
+        return true;
+    }
+
+    /**
+     * Enqueues the given element, for which a permit has been acquired.
+     * The permit is released if the element can't be enqueued.
+     */
+    private void enqueue(final int value) {
+        Writer writer = beginWrite();
+        boolean enqueued = false;
+        try {
+            Node<int[]> node;
+            int index;
+            Chunk<int[]> chunk = localChunk();
+            if (chunk != null) {
+                index = claim(chunk);
+                node = chunk.node;
+            } else {
+                do {
+                    node = lastNode();
+                } while ((index = claim(node)) < 0);
+            }
+            node.items[index] = value;
+            if (statistics != null)
+                statistics.get().accept(value);
+            publish(node, index);
+            enqueued = true;
+        } finally {
+            endWrite(writer);
+            if (!enqueued)
+                release(1);
+        }
+    }
+
+    /**
+     * Adds all the elements of the given array to the stream being built.
+     *
+     * @param values the elements to add
+     * @throws IllegalStateException if the builder has already transitioned
+     *         to the built state
+     * @see #acceptAll(int[], int, int)
+     */
+    public void acceptAll(final int[] values) {
+        acceptAll(values, 0, values.length);
+    }
+
+    /**
+     * Adds {@code length} elements of the given array to the stream
+     * being built, starting at index {@code offset}.
+     *
+     * <p>The elements are added in order, claiming as many free slots as
+     * possible with a single atomic operation. Elements added concurrently
+     * by other threads may be interleaved with the given range.
+     *
+     * <p>If distinct mode is enabled, the elements that were already
+     * added (including earlier elements of the range) are dropped.
+     *
+     * @param values the array containing the elements to add
+     * @param offset the index of the first element to add
+     * @param length the number of elements to add
+     * @throws IndexOutOfBoundsException if the range is out of bounds
+     * @throws IllegalStateException if the builder has already transitioned
+     *         to the built state, or the number of elements is limited
+     *         and the builder can't hold all the elements
+     */
+    public void acceptAll(final int[] values, final int offset, final int length) {
+        Objects.checkFromIndexSize(offset, length, values.length);
+        if (distinct != null) {
+            acceptDistinct(values, offset, length);
+            return;
+        }
+        enqueueAll(values, offset, length);
+    }
+
+    private void acceptDistinct(final int[] values, final int offset, final int length) {
+        checkNotBuilt();
+        acquire(length);
+        int[] firsts = new int[length];
+        int count = 0;
+        for (int i = offset; i < offset + length; i++) {
+            if (distinct.add(values[i]))
+                firsts[count++] = values[i];
+        }
+        release(length - count);
+        enqueueAcquired(firsts, 0, count);
     }
 
     @Override
-    public void accept(final int value) {
-        enqueue(() -> value);
+    protected void itemsStored(final Object src, final int offset, final int length) {
+        if (statistics != null) {
+            int[] values = (int[]) src;
+            IntSummaryStatistics local = statistics.get();
+            for (int i = offset; i < offset + length; i++)
+                local.accept(values[i]);
+        }
+    }
+
+    /**
+     * Performs the given action on the next element added to this
+     * builder, if it is ready. The builder must be in streaming mode.
+     *
+     * <p>Elements are consumed in the same order as they appear in
+     * the built stream, while other threads keep adding elements.
+     * This method (and {@link #take}, {@link #drain}) must only be
+     * called by a single thread at a time. Consumed elements are
+     * not removed, and are still included in the built stream.
+     *
+     * @param action the action to perform
+     * @return {@code false} if the next element is not ready, or all
+     *         the elements have been consumed
+     * @throws IllegalStateException if the builder is not in streaming mode
+     * @see BuilderOptions#withStreaming(boolean)
+     */
+    public boolean poll(final IntConsumer action) {
+        Objects.requireNonNull(action);
+        int index = pollIndex();
+        if (index < 0)
+            return false;
+        action.accept(readNode().items[index]);
+        return true;
+    }
+
+    /**
+     * Performs the given action on the next element added to this
+     * builder, waiting until it is ready if necessary. The builder
+     * must be in streaming mode.
+     *
+     * @param action the action to perform
+     * @return {@code false} if the builder transitioned to the built
+     *         state, and all its elements have been consumed
+     * @throws InterruptedException if interrupted while waiting
+     * @throws IllegalStateException if the builder is not in streaming mode
+     * @see #poll
+     */
+    public boolean take(final IntConsumer action) throws InterruptedException {
+        Objects.requireNonNull(action);
+        int index = takeIndex();
+        if (index < 0)
+            return false;
+        action.accept(readNode().items[index]);
+        return true;
+    }
+
+    /**
+     * Performs the given action on each element added to this builder
+     * that is ready, in order, until reaching an element that is not.
+     * The builder must be in streaming mode.
+     *
+     * @param action the action to perform
+     * @return the number of consumed elements
+     * @throws IllegalStateException if the builder is not in streaming mode
+     * @see #poll
+     */
+    public int drain(final IntConsumer action) {
+        Objects.requireNonNull(action);
+        int count = 0;
+        int index;
+        while ((index = pollIndex()) >= 0) {
+            action.accept(readNode().items[index]);
+            count++;
+        }
+        return count;
     }
 
     @Override
     public IntStream build() {
+        return StreamSupport.intStream(buildSpliterator(), false);
+    }
+
+    /**
+     * Transitions the builder to the built state, and returns a stream
+     * of its elements in ascending order. This is equivalent to
+     * {@code build().sorted()}, but the elements are directly copied
+     * into an array of the exact size, which is sorted in parallel on
+     * the {@link ForkJoinPool#commonPool() common pool}. The stream is
+     * {@link Spliterator#SORTED SORTED}, so later {@link IntStream#sorted()}
+     * calls do nothing.
+     *
+     * @return a sorted stream of the elements of this builder
+     * @throws IllegalStateException if the builder has already transitioned
+     *         to the built state
+     * @throws IllegalArgumentException if the number of elements exceeds
+     *         the maximum array length
+     * @see Arrays#parallelSort(int[])
+     */
+    public IntStream buildSorted() {
+        int[] array = toArray();
+        Arrays.parallelSort(array);
+        return StreamSupport.intStream(
+                Spliterators.spliterator(array, CHARACTERISTICS | Spliterator.SORTED), false);
+    }
+
+    /**
+     * Transitions the given builders to the built state, and returns
+     * a stream of their elements, in order: the elements of each builder
+     * follow the elements of the preceding one. No element is copied.
+     *
+     * <p>Unlike {@link IntStream#concat(IntStream, IntStream)}, the stream is
+     * split at the builder boundaries balancing the number of elements,
+     * and then at node boundaries.
+     *
+     * @param builders the builders to concatenate
+     * @return a stream of the elements of every builder
+     * @throws IllegalStateException if a builder has already transitioned
+     *         to the built state, in which case the preceding builders
+     *         remain in built state
+     */
+    public static IntStream concat(final ConcurrentIntStreamBuilder... builders) {
+        Spliterator.OfInt[] parts = new Spliterator.OfInt[builders.length];
+        for (int i = 0; i < builders.length; i++)
+            parts[i] = builders[i].buildSpliterator();
+        return StreamSupport.intStream(
+                new ConcatSpliterator.OfInt(parts, CHARACTERISTICS), false);
+    }
+
+    /**
+     * Seals the elements added so far, and returns a stream of them,
+     * in order. The builder does not transition to the built state:
+     * later elements are included in the stream returned by the next
+     * call to this method or {@link #build()}. Rotation must be enabled.
+     *
+     * <p>Elements being added concurrently are included in either
+     * stream, but not both. Adding threads are never blocked, but this
+     * method waits until the threads that claimed a slot before
+     * the cut finish initializing it.
+     *
+     * <p>This method must not be called concurrently with itself, or
+     * with the methods transitioning the builder to the built state.
+     *
+     * @return a stream of the elements added since the last rotation
+     * @throws IllegalStateException if rotation is disabled, or
+     *         the builder has already transitioned to the built state
+     * @see BuilderOptions#withRotation(boolean)
+     */
+    public IntStream rotate() {
+        return StreamSupport.intStream(rotateSpliterator(), false);
+    }
+
+    /**
+     * Transitions the builder from the built state back to its initial
+     * state. Elements added afterwards are stored in the nodes allocated
+     * by previous additions, before allocating new ones.
+     *
+     * <p>This method must not be called concurrently with any other
+     * method, and the streams (and views) previously built from this
+     * builder must no longer be used.
+     *
+     * @throws IllegalStateException if the builder is not in built state
+     */
+    @Override
+    public void reset() {
+        checkBuilt();
+        // Published to adding threads by the transition in super.reset()
+        if (distinct != null)
+            distinct.clear();
+        if (statistics != null)
+            statistics = new ThreadCells<>(IntSummaryStatistics::new);
+        super.reset();
+    }
+
+    /**
+     * Returns the summary statistics of the elements of this builder,
+     * combining the statistics updated by each adding thread. Unlike
+     * {@code build().summaryStatistics()}, the elements are not
+     * traversed. The builder must be in built state, and running
+     * statistics must be enabled.
+     *
+     * @return the summary statistics of the elements
+     * @throws IllegalStateException if running statistics are disabled,
+     *         or the builder is not in built state
+     * @see BuilderOptions#withStatistics(boolean)
+     */
+    public IntSummaryStatistics summaryStatistics() {
+        if (statistics == null)
+            throw new IllegalStateException("Builder statistics are disabled");
+        checkBuilt();
+        IntSummaryStatistics result = new IntSummaryStatistics();
+        statistics.forEach(result::combine);
+        return result;
+    }
+
+    /**
+     * Returns a snapshot of the metrics recorded by this builder.
+     *
+     * @return the metrics snapshot
+     * @throws IllegalStateException if metrics are disabled
+     * @see BuilderOptions#withMetrics(boolean)
+     */
+    public BuilderMetrics metrics() {
+        return metricsSnapshot();
+    }
+
+    /**
+     * Transitions the builder to the built state, and returns an array
+     * containing its elements, in order. This is equivalent to
+     * {@code build().toArray()}, but the elements are directly copied
+     * into an array of the exact size.
+     *
+     * @return an array containing the elements of this builder
+     * @throws IllegalStateException if the builder has already transitioned
+     *         to the built state
+     * @throws IllegalArgumentException if the number of elements exceeds
+     *         the maximum array length
+     */
+    public int[] toArray() {
+        int[] array = new int[buildArraySize()];
+        copyItems(array, 0);
+        return array;
+    }
+
+    /**
+     * Transitions the builder to the built state, and copies its elements,
+     * in order, into the given array starting at index {@code offset}.
+     *
+     * @param dst the destination array
+     * @param offset the index of the first element in {@code dst}
+     * @return the number of copied elements
+     * @throws IllegalStateException if the builder has already transitioned
+     *         to the built state
+     * @throws IndexOutOfBoundsException if the elements don't fit in
+     *         {@code dst}, in which case the builder is still transitioned
+     *         to the built state
+     */
+    public int copyInto(final int[] dst, final int offset) {
+        int size = buildArraySize();
+        Objects.checkFromIndexSize(offset, size, dst.length);
+        copyItems(dst, offset);
+        return size;
+    }
+
+    /**
+     * Transitions the builder to the built state, and returns
+     * a read-only random access view of its elements.
+     *
+     * @return a sequence of the elements of this builder
+     * @throws IllegalStateException if the builder has already transitioned
+     *         to the built state
+     */
+    public Sequence buildSequence() {
         checkAndSetBuilt();
-        return StreamSupport.intStream(new BuilderSpliterator(), false);
+        return new Sequence();
+    }
+
+    /**
+     * Transitions the builder to the built state, and returns
+     * a spliterator over its elements.
+     *
+     * @return a spliterator over the elements of this builder
+     * @throws IllegalStateException if the builder has already transitioned
+     *         to the built state
+     */
+    Spliterator.OfInt buildSpliterator() {
+        checkAndSetBuilt();
+        return new BuilderSpliterator();
+    }
+
+    /**
+     * Seals the elements added so far, and returns a spliterator
+     * over them.
+     *
+     * @return a spliterator over the elements added since the last rotation
+     * @throws IllegalStateException if rotation is disabled, or
+     *         the builder has already transitioned to the built state
+     */
+    Spliterator.OfInt rotateSpliterator() {
+        return new BuilderSpliterator(cut());
+    }
+
+    /**
+     * A read-only view of the elements of a built builder, supporting
+     * random access and slicing without copying. Streams over
+     * the sequence may be created any number of times.
+     */
+    public final class Sequence extends AbstractSequence<Spliterator.OfInt> {
+
+        private Sequence() {}
+
+        @Override
+        protected Spliterator.OfInt newSpliterator(final Node<int[]> node, final int index,
+                                                   final Node<int[]> last, final int fence) {
+            return new BuilderSpliterator(node, index, last, fence);
+        }
+
+        /**
+         * Returns the element at the given index.
+         *
+         * @param index the element index
+         * @return the element at the given index
+         * @throws IndexOutOfBoundsException if the index is out of range
+         */
+        public int get(final long index) {
+            Node<int[]> node = nodeOf(index);
+            return node.items[indexIn(node, index)];
+        }
+
+        /**
+         * Returns an iterator over the elements of this sequence.
+         *
+         * @return an iterator over the elements
+         */
+        public PrimitiveIterator.OfInt iterator() {
+            return Spliterators.iterator(spliterator());
+        }
+
+        /**
+         * Performs the given action for each element of this sequence,
+         * in order.
+         *
+         * @param action the action to perform
+         */
+        public void forEach(final IntConsumer action) {
+            spliterator().forEachRemaining(action);
+        }
+
+        /**
+         * Returns a sequential {@code IntStream} of the elements of this sequence.
+         *
+         * @return a stream of the elements
+         */
+        public IntStream stream() {
+            return StreamSupport.intStream(spliterator(), false);
+        }
+
+        /**
+         * Returns a sequential {@code IntStream} of the elements of this sequence
+         * from index {@code from} (inclusive) to {@code to} (exclusive).
+         * Unlike {@code stream().skip(from).limit(to - from)}, the skipped
+         * elements are not traversed.
+         *
+         * @param from the index of the first element
+         * @param to the index after the last element
+         * @return a stream of the elements in the given range
+         * @throws IndexOutOfBoundsException if the range is out of bounds
+         */
+        public IntStream stream(final long from, final long to) {
+            return StreamSupport.intStream(spliterator(from, to), false);
+        }
     }
 
     private final class BuilderSpliterator extends AbstractSpliterator<Spliterator.OfInt>
             implements Spliterator.OfInt {
 
+        private BuilderSpliterator() {}
+
+        private BuilderSpliterator(final Segment<int[]> segment) {
+            super(segment);
+        }
+
+        private BuilderSpliterator(final Node<int[]> node, final int index,
+                                   final Node<int[]> last, final int fence) {
+            super(node, index, last, fence);
+        }
+
+        @Override
+        protected BuilderSpliterator newSpliterator(final Node<int[]> node, final int index,
+                                                    final Node<int[]> last, final int fence) {
+            return new BuilderSpliterator(node, index, last, fence);
+        }
+
         @Override
         public boolean tryAdvance(final IntConsumer action) {
             Objects.requireNonNull(action);
@@ -87,5 +629,18 @@ public final class ConcurrentIntStreamBuilder
             }
             return advance;
         }
+
+        @Override
+        public void forEachRemaining(final IntConsumer action) {
+            Objects.requireNonNull(action);
+            do {
+                int[] items = node.items;
+                int from = index;
+                int to = end();
+                index = to;
+                for (int i = from; i < to; i++)
+                    action.accept(items[i]);
+            } while (advanceNode());
+        }
     }
 }
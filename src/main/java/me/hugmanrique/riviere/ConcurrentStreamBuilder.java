@@ -1,9 +1,18 @@
 package me.hugmanrique.riviere;
 
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Objects;
+import java.util.RandomAccess;
 import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
-import java.util.function.Supplier;
+import java.util.function.IntFunction;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
@@ -18,20 +27,15 @@ import java.util.stream.StreamSupport;
  *
  * @param <T> the type of the stream elements
  */
-public final class ConcurrentStreamBuilder<T> extends AbstractConcurrentStreamBuilder<T[], Supplier<T>>
+public final class ConcurrentStreamBuilder<T> extends AbstractConcurrentStreamBuilder<T[]>
         implements Stream.Builder<T> {
 
-    private final class TNode extends Node<T[], Supplier<T>> {
+    private final class TNode extends Node<T[]> {
 
         private TNode(final int capacity) {
             super(capacity);
         }
 
-        private TNode(final int capacity, final T firstItem) {
-            super(capacity, 1);
-            this.items[0] = firstItem;
-        }
-
         @SuppressWarnings("unchecked")
         @Override
         protected T[] newArray(final int length) {
@@ -39,8 +43,14 @@ public final class ConcurrentStreamBuilder<T> extends AbstractConcurrentStreamBu
         }
 
         @Override
-        protected void setPlain(final int index, final Supplier<T> supplier) {
-            this.items[index] = supplier.get();
+        protected long itemBytes() {
+            // Assumes compressed references
+            return (long) items.length * Integer.BYTES;
+        }
+
+        @Override
+        protected void clearItems(final int length) {
+            Arrays.fill(items, 0, length, null);
         }
     }
 
@@ -59,30 +69,599 @@ public final class ConcurrentStreamBuilder<T> extends AbstractConcurrentStreamBu
         super(initialCapacity);
     }
 
+    /**
+     * Constructs a concurrent {@link Stream} builder with
+     * the given options.
+     *
+     * @param options the builder options
+     * @throws IllegalArgumentException if running statistics or distinct
+     *         mode are enabled
+     */
+    public ConcurrentStreamBuilder(final BuilderOptions options) {
+        super(options.requireNoStatistics().requireNotDistinct());
+    }
+
     @Override
     protected TNode createEmptyNode(final int capacity) {
         return new TNode(capacity);
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IllegalStateException if the builder has already transitioned
+     *         to the built state, or the number of elements is limited
+     *         and the builder is full
+     */
     @Override
-    protected TNode createNextNode(final int capacity, final Supplier<T> valueSupplier) {
-        return new TNode(capacity, valueSupplier.get());
+    public void accept(final T value) {
+        checkNotBuilt();
+        acquire(1);
+        enqueue(value);
     }
 
-    @Override
-    public void accept(final T value) {
-        enqueue(() -> value);
+    /**
+     * Adds an element to the stream being built, unless the number of
+     * elements is limited and the builder is full.
+     *
+     * @param value the element to add
+     * @return {@code true} if the element was added
+     * @throws IllegalStateException if the builder has already transitioned
+     *         to the built state
+     * @see BuilderOptions#withElementLimit(int)
+     */
+    public boolean tryAccept(final T value) {
+        checkNotBuilt();
+        if (!tryAcquire())
+            return false;
+        enqueue(value);
+        return true;
+    }
+
+    /**
+     * Adds an element to the stream being built, waiting up to
+     * the given time for the builder to make room for it if the number
+     * of elements is limited and the builder is full.
+     *
+     * @param value the element to add
+     * @param timeout the maximum time to wait
+     * @param unit the time unit of {@code timeout}
+     * @return {@code true} if the element was added
+     * @throws InterruptedException if interrupted while waiting
+     * @throws IllegalStateException if the builder has already transitioned
+     *         to the built state
+     * @see BuilderOptions#withElementLimit(int)
+     */
+    public boolean tryAccept(final T value, final long timeout, final TimeUnit unit)
+            throws InterruptedException {
+        checkNotBuilt();
+        if (!tryAcquire(timeout, unit))
+            return false;
+        enqueue(value);
+        return true;
+    }
+
+    /**
+     * Enqueues the given element, for which a permit has been acquired.
+     * The permit is released if the element can't be enqueued.
+     */
+    private void enqueue(final T value) {
+        Writer writer = beginWrite();
+        boolean enqueued = false;
+        try {
+            Node<T[]> node;
+            int index;
+            Chunk<T[]> chunk = localChunk();
+            if (chunk != null) {
+                index = claim(chunk);
+                node = chunk.node;
+            } else {
+                do {
+                    node = lastNode();
+                } while ((index = claim(node)) < 0);
+            }
+            node.items[index] = value;
+            publish(node, index);
+            enqueued = true;
+        } finally {
+            endWrite(writer);
+            if (!enqueued)
+                release(1);
+        }
+    }
+
+    /**
+     * Adds all the elements of the given array to the stream being built.
+     *
+     * @param values the elements to add
+     * @throws IllegalStateException if the builder has already transitioned
+     *         to the built state
+     * @see #acceptAll(Object[], int, int)
+     */
+    public void acceptAll(final T[] values) {
+        acceptAll(values, 0, values.length);
+    }
+
+    /**
+     * Adds {@code length} elements of the given array to the stream
+     * being built, starting at index {@code offset}.
+     *
+     * <p>The elements are added in order, claiming as many free slots as
+     * possible with a single atomic operation. Elements added concurrently
+     * by other threads may be interleaved with the given range.
+     *
+     * @param values the array containing the elements to add
+     * @param offset the index of the first element to add
+     * @param length the number of elements to add
+     * @throws IndexOutOfBoundsException if the range is out of bounds
+     * @throws IllegalStateException if the builder has already transitioned
+     *         to the built state, or the number of elements is limited
+     *         and the builder can't hold all the elements
+     */
+    public void acceptAll(final T[] values, final int offset, final int length) {
+        Objects.checkFromIndexSize(offset, length, values.length);
+        enqueueAll(values, offset, length);
+    }
+
+    /**
+     * Performs the given action on the next element added to this
+     * builder, if it is ready. The builder must be in streaming mode.
+     *
+     * <p>Elements are consumed in the same order as they appear in
+     * the built stream, while other threads keep adding elements.
+     * This method (and {@link #take}, {@link #drain}) must only be
+     * called by a single thread at a time. Consumed elements are
+     * not removed, and are still included in the built stream.
+     *
+     * @param action the action to perform
+     * @return {@code false} if the next element is not ready, or all
+     *         the elements have been consumed
+     * @throws IllegalStateException if the builder is not in streaming mode
+     * @see BuilderOptions#withStreaming(boolean)
+     */
+    public boolean poll(final Consumer<? super T> action) {
+        Objects.requireNonNull(action);
+        int index = pollIndex();
+        if (index < 0)
+            return false;
+        action.accept(readNode().items[index]);
+        return true;
+    }
+
+    /**
+     * Performs the given action on the next element added to this
+     * builder, waiting until it is ready if necessary. The builder
+     * must be in streaming mode.
+     *
+     * @param action the action to perform
+     * @return {@code false} if the builder transitioned to the built
+     *         state, and all its elements have been consumed
+     * @throws InterruptedException if interrupted while waiting
+     * @throws IllegalStateException if the builder is not in streaming mode
+     * @see #poll
+     */
+    public boolean take(final Consumer<? super T> action) throws InterruptedException {
+        Objects.requireNonNull(action);
+        int index = takeIndex();
+        if (index < 0)
+            return false;
+        action.accept(readNode().items[index]);
+        return true;
+    }
+
+    /**
+     * Performs the given action on each element added to this builder
+     * that is ready, in order, until reaching an element that is not.
+     * The builder must be in streaming mode.
+     *
+     * @param action the action to perform
+     * @return the number of consumed elements
+     * @throws IllegalStateException if the builder is not in streaming mode
+     * @see #poll
+     */
+    public int drain(final Consumer<? super T> action) {
+        Objects.requireNonNull(action);
+        int count = 0;
+        int index;
+        while ((index = pollIndex()) >= 0) {
+            action.accept(readNode().items[index]);
+            count++;
+        }
+        return count;
     }
 
     @Override
     public Stream<T> build() {
+        return StreamSupport.stream(buildSpliterator(), false);
+    }
+
+    /**
+     * Transitions the builder to the built state, and returns a stream
+     * of its elements sorted according to their natural order. This is
+     * equivalent to {@code build().sorted()}, but the elements are
+     * directly copied into an array of the exact size, which is sorted
+     * in parallel on the {@link ForkJoinPool#commonPool() common pool}.
+     * The stream is {@link Spliterator#SORTED SORTED}, so later
+     * {@link Stream#sorted()} calls do nothing.
+     *
+     * @return a sorted stream of the elements of this builder
+     * @throws IllegalStateException if the builder has already transitioned
+     *         to the built state
+     * @throws IllegalArgumentException if the number of elements exceeds
+     *         the maximum array length
+     * @throws ClassCastException if the elements are not {@link Comparable}
+     * @throws NullPointerException if an element is {@code null}
+     * @see Arrays#parallelSort(Comparable[])
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public Stream<T> buildSorted() {
+        Object[] array = toArray();
+        Arrays.parallelSort(array, (Comparator) Comparator.naturalOrder());
+        return StreamSupport.stream(
+                Spliterators.spliterator(array, CHARACTERISTICS | Spliterator.SORTED), false);
+    }
+
+    /**
+     * Transitions the builder to the built state, and returns a stream
+     * of its elements sorted according to the given comparator.
+     * This is equivalent to {@code build().sorted(comparator)}, but
+     * the elements are directly copied into an array of the exact size,
+     * which is sorted in parallel on the
+     * {@link ForkJoinPool#commonPool() common pool}. The stream is
+     * {@link Spliterator#SORTED SORTED}, and its spliterator reports
+     * the given comparator.
+     *
+     * @param comparator the comparator to sort the elements with
+     * @return a sorted stream of the elements of this builder
+     * @throws IllegalStateException if the builder has already transitioned
+     *         to the built state
+     * @throws IllegalArgumentException if the number of elements exceeds
+     *         the maximum array length
+     * @see Arrays#parallelSort(Object[], Comparator)
+     */
+    @SuppressWarnings("unchecked")
+    public Stream<T> buildSorted(final Comparator<? super T> comparator) {
+        Objects.requireNonNull(comparator);
+        T[] array = (T[]) toArray();
+        Arrays.parallelSort(array, comparator);
+        return StreamSupport.stream(new SortedSpliterator<>(
+                Spliterators.spliterator(array, CHARACTERISTICS), comparator), false);
+    }
+
+    /**
+     * Transitions the given builders to the built state, and returns
+     * a stream of their elements, in order: the elements of each builder
+     * follow the elements of the preceding one. No element is copied.
+     *
+     * <p>Unlike {@link Stream#concat(Stream, Stream)}, the stream is
+     * split at the builder boundaries balancing the number of elements,
+     * and then at node boundaries.
+     *
+     * @param builders the builders to concatenate
+     * @param <T> the type of the stream elements
+     * @return a stream of the elements of every builder
+     * @throws IllegalStateException if a builder has already transitioned
+     *         to the built state, in which case the preceding builders
+     *         remain in built state
+     */
+    @SafeVarargs
+    public static <T> Stream<T> concat(final ConcurrentStreamBuilder<T>... builders) {
+        @SuppressWarnings("unchecked")
+        Spliterator<T>[] parts = (Spliterator<T>[]) new Spliterator<?>[builders.length];
+        for (int i = 0; i < builders.length; i++)
+            parts[i] = builders[i].buildSpliterator();
+        return StreamSupport.stream(
+                new ConcatSpliterator.OfRef<>(parts, CHARACTERISTICS), false);
+    }
+
+    /**
+     * Seals the elements added so far, and returns a stream of them,
+     * in order. The builder does not transition to the built state:
+     * later elements are included in the stream returned by the next
+     * call to this method or {@link #build()}. Rotation must be enabled.
+     *
+     * <p>Elements being added concurrently are included in either
+     * stream, but not both. Adding threads are never blocked, but this
+     * method waits until the threads that claimed a slot before
+     * the cut finish initializing it.
+     *
+     * <p>This method must not be called concurrently with itself, or
+     * with the methods transitioning the builder to the built state.
+     *
+     * @return a stream of the elements added since the last rotation
+     * @throws IllegalStateException if rotation is disabled, or
+     *         the builder has already transitioned to the built state
+     * @see BuilderOptions#withRotation(boolean)
+     */
+    public Stream<T> rotate() {
+        return StreamSupport.stream(rotateSpliterator(), false);
+    }
+
+    /**
+     * Transitions the builder from the built state back to its initial
+     * state. Elements added afterwards are stored in the nodes allocated
+     * by previous additions, before allocating new ones. References to
+     * the previous elements are cleared.
+     *
+     * <p>This method must not be called concurrently with any other
+     * method, and the streams (and views) previously built from this
+     * builder must no longer be used.
+     *
+     * @throws IllegalStateException if the builder is not in built state
+     */
+    @Override
+    public void reset() {
+        super.reset();
+    }
+
+    /**
+     * Returns a snapshot of the metrics recorded by this builder.
+     *
+     * @return the metrics snapshot
+     * @throws IllegalStateException if metrics are disabled
+     * @see BuilderOptions#withMetrics(boolean)
+     */
+    public BuilderMetrics metrics() {
+        return metricsSnapshot();
+    }
+
+    /**
+     * Transitions the builder to the built state, and returns an array
+     * containing its elements, in order. This is equivalent to
+     * {@code build().toArray()}, but the elements are directly copied
+     * into an array of the exact size.
+     *
+     * @return an array containing the elements of this builder
+     * @throws IllegalStateException if the builder has already transitioned
+     *         to the built state
+     * @throws IllegalArgumentException if the number of elements exceeds
+     *         the maximum array length
+     */
+    public Object[] toArray() {
+        Object[] array = new Object[buildArraySize()];
+        copyItems(array, 0);
+        return array;
+    }
+
+    /**
+     * Transitions the builder to the built state, and returns an array
+     * containing its elements, in order, using the provided
+     * {@code generator} function to allocate the returned array.
+     *
+     * @param generator a function which produces a new array of
+     *                  the desired type and the provided length
+     * @param <A> the component type of the resulting array
+     * @return an array containing the elements of this builder
+     * @throws IllegalStateException if the builder has already transitioned
+     *         to the built state
+     * @throws IllegalArgumentException if the number of elements exceeds
+     *         the maximum array length
+     * @throws ArrayStoreException if the runtime type of the returned array
+     *         is not a supertype of the runtime type of every element
+     * @see Stream#toArray(IntFunction)
+     */
+    public <A> A[] toArray(final IntFunction<A[]> generator) {
+        int size = buildArraySize();
+        A[] array = generator.apply(size);
+        if (array.length != size)
+            throw new IllegalStateException("Generated array of length " + array.length
+                    + " instead of " + size);
+        copyItems(array, 0);
+        return array;
+    }
+
+    /**
+     * Transitions the builder to the built state, and copies its elements,
+     * in order, into the given array starting at index {@code offset}.
+     *
+     * @param dst the destination array
+     * @param offset the index of the first element in {@code dst}
+     * @return the number of copied elements
+     * @throws IllegalStateException if the builder has already transitioned
+     *         to the built state
+     * @throws IndexOutOfBoundsException if the elements don't fit in
+     *         {@code dst}, in which case the builder is still transitioned
+     *         to the built state
+     * @throws ArrayStoreException if the runtime type of {@code dst}
+     *         is not a supertype of the runtime type of every element
+     */
+    public int copyInto(final Object[] dst, final int offset) {
+        int size = buildArraySize();
+        Objects.checkFromIndexSize(offset, size, dst.length);
+        copyItems(dst, offset);
+        return size;
+    }
+
+    /**
+     * Transitions the builder to the built state, and returns
+     * a read-only random access view of its elements.
+     *
+     * @return a sequence of the elements of this builder
+     * @throws IllegalStateException if the builder has already transitioned
+     *         to the built state
+     */
+    public Sequence buildSequence() {
+        checkAndSetBuilt();
+        return new Sequence();
+    }
+
+    /**
+     * Transitions the builder to the built state, and returns
+     * an unmodifiable list of its elements, in order. The list
+     * is backed by the builder, so no elements are copied.
+     *
+     * @return a list of the elements of this builder
+     * @throws IllegalStateException if the builder has already transitioned
+     *         to the built state
+     * @throws IllegalArgumentException if the number of elements exceeds
+     *         {@link Integer#MAX_VALUE}
+     * @see Sequence#asList()
+     */
+    public List<T> buildList() {
+        return buildSequence().asList();
+    }
+
+    /**
+     * Transitions the builder to the built state, and returns
+     * a spliterator over its elements.
+     *
+     * @return a spliterator over the elements of this builder
+     * @throws IllegalStateException if the builder has already transitioned
+     *         to the built state
+     */
+    Spliterator<T> buildSpliterator() {
         checkAndSetBuilt();
-        return StreamSupport.stream(new BuilderSpliterator(), false);
+        return new BuilderSpliterator();
+    }
+
+    /**
+     * Seals the elements added so far, and returns a spliterator
+     * over them.
+     *
+     * @return a spliterator over the elements added since the last rotation
+     * @throws IllegalStateException if rotation is disabled, or
+     *         the builder has already transitioned to the built state
+     */
+    Spliterator<T> rotateSpliterator() {
+        return new BuilderSpliterator(cut());
+    }
+
+    /**
+     * A read-only view of the elements of a built builder, supporting
+     * random access and slicing without copying. Streams over
+     * the sequence may be created any number of times.
+     */
+    public final class Sequence extends AbstractSequence<Spliterator<T>> {
+
+        private Sequence() {}
+
+        @Override
+        protected Spliterator<T> newSpliterator(final Node<T[]> node, final int index,
+                                                final Node<T[]> last, final int fence) {
+            return new BuilderSpliterator(node, index, last, fence);
+        }
+
+        /**
+         * Returns the element at the given index.
+         *
+         * @param index the element index
+         * @return the element at the given index
+         * @throws IndexOutOfBoundsException if the index is out of range
+         */
+        public T get(final long index) {
+            Node<T[]> node = nodeOf(index);
+            return node.items[indexIn(node, index)];
+        }
+
+        /**
+         * Returns an iterator over the elements of this sequence.
+         *
+         * @return an iterator over the elements
+         */
+        public Iterator<T> iterator() {
+            return Spliterators.iterator(spliterator());
+        }
+
+        /**
+         * Performs the given action for each element of this sequence,
+         * in order.
+         *
+         * @param action the action to perform
+         */
+        public void forEach(final Consumer<? super T> action) {
+            spliterator().forEachRemaining(action);
+        }
+
+        /**
+         * Returns an unmodifiable {@link RandomAccess} list backed
+         * by this sequence.
+         *
+         * @return a list view of this sequence
+         * @throws IllegalArgumentException if the number of elements
+         *         exceeds {@link Integer#MAX_VALUE}
+         */
+        public List<T> asList() {
+            long size = size();
+            if (size > Integer.MAX_VALUE)
+                throw new IllegalArgumentException("Sequence size exceeds max list size");
+            return new SequenceList(this, (int) size);
+        }
+
+        /**
+         * Returns a sequential {@code Stream} of the elements of this sequence.
+         *
+         * @return a stream of the elements
+         */
+        public Stream<T> stream() {
+            return StreamSupport.stream(spliterator(), false);
+        }
+
+        /**
+         * Returns a sequential {@code Stream} of the elements of this sequence
+         * from index {@code from} (inclusive) to {@code to} (exclusive).
+         * Unlike {@code stream().skip(from).limit(to - from)}, the skipped
+         * elements are not traversed.
+         *
+         * @param from the index of the first element
+         * @param to the index after the last element
+         * @return a stream of the elements in the given range
+         * @throws IndexOutOfBoundsException if the range is out of bounds
+         */
+        public Stream<T> stream(final long from, final long to) {
+            return StreamSupport.stream(spliterator(from, to), false);
+        }
+    }
+
+    private final class SequenceList extends AbstractList<T> implements RandomAccess {
+        private final Sequence sequence;
+        private final int size;
+
+        private SequenceList(final Sequence sequence, final int size) {
+            this.sequence = sequence;
+            this.size = size;
+        }
+
+        @Override
+        public T get(final int index) {
+            return sequence.get(Objects.checkIndex(index, size));
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public void forEach(final Consumer<? super T> action) {
+            sequence.forEach(action);
+        }
+
+        @Override
+        public Spliterator<T> spliterator() {
+            return sequence.spliterator();
+        }
     }
 
     private final class BuilderSpliterator extends AbstractSpliterator<Spliterator<T>>
             implements Spliterator<T> {
 
+        private BuilderSpliterator() {}
+
+        private BuilderSpliterator(final Segment<T[]> segment) {
+            super(segment);
+        }
+
+        private BuilderSpliterator(final Node<T[]> node, final int index,
+                                   final Node<T[]> last, final int fence) {
+            super(node, index, last, fence);
+        }
+
+        @Override
+        protected BuilderSpliterator newSpliterator(final Node<T[]> node, final int index,
+                                                    final Node<T[]> last, final int fence) {
+            return new BuilderSpliterator(node, index, last, fence);
+        }
+
         @Override
         public boolean tryAdvance(final Consumer<? super T> action) {
             Objects.requireNonNull(action);
@@ -92,5 +671,64 @@ public final class ConcurrentStreamBuilder<T> extends AbstractConcurrentStreamBu
             }
             return advance;
         }
+
+        @Override
+        public void forEachRemaining(final Consumer<? super T> action) {
+            Objects.requireNonNull(action);
+            do {
+                T[] items = node.items;
+                int from = index;
+                int to = end();
+                index = to;
+                for (int i = from; i < to; i++)
+                    action.accept(items[i]);
+            } while (advanceNode());
+        }
+    }
+
+    /**
+     * A spliterator over elements sorted by the given comparator.
+     */
+    private static final class SortedSpliterator<T> implements Spliterator<T> {
+
+        private final Spliterator<T> spliterator;
+        private final Comparator<? super T> comparator;
+
+        private SortedSpliterator(final Spliterator<T> spliterator,
+                                  final Comparator<? super T> comparator) {
+            this.spliterator = spliterator;
+            this.comparator = comparator;
+        }
+
+        @Override
+        public boolean tryAdvance(final Consumer<? super T> action) {
+            return spliterator.tryAdvance(action);
+        }
+
+        @Override
+        public void forEachRemaining(final Consumer<? super T> action) {
+            spliterator.forEachRemaining(action);
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            Spliterator<T> prefix = spliterator.trySplit();
+            return prefix != null ? new SortedSpliterator<>(prefix, comparator) : null;
+        }
+
+        @Override
+        public long estimateSize() {
+            return spliterator.estimateSize();
+        }
+
+        @Override
+        public int characteristics() {
+            return spliterator.characteristics() | Spliterator.SORTED;
+        }
+
+        @Override
+        public Comparator<? super T> getComparator() {
+            return comparator;
+        }
     }
 }
@@ -0,0 +1,33 @@
+package me.hugmanrique.riviere;
+
+/**
+ * How threads adding elements to a full node append the next node.
+ *
+ * @see BuilderOptions#withContentionStrategy(ContentionStrategy)
+ */
+public enum ContentionStrategy {
+
+    /**
+     * Every thread that finds the last node full allocates a node and
+     * attempts to append it. All the nodes but one are discarded.
+     * This is the default: no thread ever waits, but large nodes are
+     * allocated and discarded under contention.
+     */
+    COMPETE,
+
+    /**
+     * A single thread is elected to allocate and append the next node,
+     * while the other threads spin until it is appended. No node is
+     * discarded. Best suited to at most as many adding threads as
+     * available processors.
+     */
+    SPIN,
+
+    /**
+     * Like {@link #SPIN}, but threads waiting for the next node to be
+     * appended spin briefly and then park for increasing periods of
+     * time. Best suited to more adding threads than available
+     * processors.
+     */
+    BACKOFF
+}
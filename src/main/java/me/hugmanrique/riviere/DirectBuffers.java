@@ -0,0 +1,66 @@
+package me.hugmanrique.riviere;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Utility methods to allocate and release direct buffers.
+ */
+final class DirectBuffers {
+
+    /**
+     * A method handle releasing the memory of a direct buffer,
+     * or {@code null} if not supported by the runtime.
+     */
+    private static final MethodHandle INVOKE_CLEANER = findInvokeCleaner();
+
+    private DirectBuffers() {
+        throw new AssertionError();
+    }
+
+    private static MethodHandle findInvokeCleaner() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            MethodHandle invokeCleaner = MethodHandles.lookup().findVirtual(unsafeClass,
+                    "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class));
+            return invokeCleaner.bindTo(field.get(null));
+        } catch (final ReflectiveOperationException | RuntimeException e) {
+            // Memory is released once the buffer is garbage collected
+            return null;
+        }
+    }
+
+    /**
+     * Allocates a direct buffer in native byte order.
+     *
+     * @param capacity the buffer capacity, in bytes
+     * @return the buffer
+     */
+    static ByteBuffer allocate(final int capacity) {
+        return ByteBuffer.allocateDirect(capacity).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Releases the memory of the given direct buffer, if supported by
+     * the runtime. The buffer must not be accessed afterwards.
+     *
+     * @param buffer the buffer, which must not be a slice or a duplicate
+     */
+    static void free(final ByteBuffer buffer) {
+        if (INVOKE_CLEANER == null)
+            return;
+        try {
+            INVOKE_CLEANER.invokeExact(buffer);
+        } catch (final RuntimeException | Error e) {
+            throw e;
+        } catch (final Throwable t) {
+            throw new AssertionError(t);
+        }
+    }
+}
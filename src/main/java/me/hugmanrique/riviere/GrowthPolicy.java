@@ -0,0 +1,112 @@
+package me.hugmanrique.riviere;
+
+/**
+ * The capacities of the nodes allocated by a concurrent builder.
+ *
+ * <p>Node capacities double from the capacity of the head node,
+ * up to a maximum capacity. Policies differ in these two values:
+ * <ul>
+ *     <li>{@link #geometric()} starts with the initial capacity given
+ *     in the {@link BuilderOptions}, and grows up to 2<sup>30</sup>
+ *     elements. Small builders only allocate small nodes, and large
+ *     builders need few nodes.</li>
+ *     <li>{@link #geometric(int)} caps the node capacity, e.g. to avoid
+ *     humongous allocations in garbage collectors that allocate large
+ *     arrays in dedicated regions.</li>
+ *     <li>{@link #fixed(int)} allocates nodes of the same capacity.</li>
+ *     <li>{@link #hinted(long)} allocates a single node holding
+ *     the expected number of elements, followed by doubling nodes
+ *     if the hint is exceeded.</li>
+ * </ul>
+ *
+ * <p>Instances are immutable.
+ *
+ * @see BuilderOptions#withGrowthPolicy(GrowthPolicy)
+ */
+public final class GrowthPolicy {
+
+    private static final GrowthPolicy GEOMETRIC = new GrowthPolicy(
+            0, AbstractConcurrentStreamBuilder.MAX_NODE_CAPACITY);
+
+    /**
+     * The capacity of the head node, or {@code 0} to use the initial
+     * capacity of the builder options.
+     */
+    private final int headCapacity;
+    private final int maxCapacity;
+
+    private GrowthPolicy(final int headCapacity, final int maxCapacity) {
+        this.headCapacity = headCapacity;
+        this.maxCapacity = maxCapacity;
+    }
+
+    /**
+     * Returns the default policy, doubling node capacities from
+     * the initial capacity.
+     *
+     * @return the geometric policy
+     */
+    public static GrowthPolicy geometric() {
+        return GEOMETRIC;
+    }
+
+    /**
+     * Returns a policy doubling node capacities from the initial
+     * capacity, up to the given maximum capacity.
+     *
+     * @param maxCapacity the maximum capacity of a node
+     * @return the capped geometric policy
+     * @throws IllegalArgumentException if {@code maxCapacity} is not positive
+     */
+    public static GrowthPolicy geometric(final int maxCapacity) {
+        if (maxCapacity <= 0)
+            throw new IllegalArgumentException("Got non-positive capacity " + maxCapacity);
+        return new GrowthPolicy(0, Math.min(maxCapacity, GEOMETRIC.maxCapacity));
+    }
+
+    /**
+     * Returns a policy allocating nodes of the given capacity.
+     * The initial capacity of the builder options is ignored.
+     *
+     * @param capacity the capacity of every node
+     * @return the fixed policy
+     * @throws IllegalArgumentException if {@code capacity} is not positive
+     */
+    public static GrowthPolicy fixed(final int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("Got non-positive capacity " + capacity);
+        int nodeCapacity = Math.min(capacity, GEOMETRIC.maxCapacity);
+        return new GrowthPolicy(nodeCapacity, nodeCapacity);
+    }
+
+    /**
+     * Returns a policy allocating a head node that holds the given
+     * expected number of elements (up to 2<sup>30</sup>). Further nodes
+     * double its capacity. The initial capacity of the builder options
+     * is ignored.
+     *
+     * @param expectedSize the expected number of elements
+     * @return the hinted policy
+     * @throws IllegalArgumentException if {@code expectedSize} is not positive
+     */
+    public static GrowthPolicy hinted(final long expectedSize) {
+        if (expectedSize <= 0)
+            throw new IllegalArgumentException("Got non-positive expected size " + expectedSize);
+        int headCapacity = (int) Math.min(expectedSize, GEOMETRIC.maxCapacity);
+        return new GrowthPolicy(headCapacity, GEOMETRIC.maxCapacity);
+    }
+
+    /**
+     * Returns the capacity of the head node.
+     *
+     * @param initialCapacity the initial capacity of the builder options
+     * @return the capacity of the head node
+     */
+    int headCapacity(final int initialCapacity) {
+        return headCapacity > 0 ? headCapacity : initialCapacity;
+    }
+
+    int maxCapacity() {
+        return maxCapacity;
+    }
+}
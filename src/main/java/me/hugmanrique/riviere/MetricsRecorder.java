@@ -0,0 +1,142 @@
+package me.hugmanrique.riviere;
+
+import java.util.concurrent.atomic.LongAdder;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Records the metrics of a concurrent builder, and emits them as
+ * JFR events.
+ *
+ * <p>Counters are striped, so recording doesn't introduce contention
+ * between adding threads.
+ */
+final class MetricsRecorder {
+
+    private final String builderName;
+
+    private final LongAdder enqueues = new LongAdder();
+    private final LongAdder enqueueNanos = new LongAdder();
+    private final LongAdder failedAppends = new LongAdder();
+    private final LongAdder overshoot = new LongAdder();
+    private final LongAdder tailAdvances = new LongAdder();
+    private final LongAdder allocatedNodes = new LongAdder();
+    private final LongAdder allocatedBytes = new LongAdder();
+
+    /**
+     * Constructs a recorder for the given builder.
+     *
+     * @param builderName the name of the builder class, reported in events
+     */
+    MetricsRecorder(final String builderName) {
+        this.builderName = builderName;
+    }
+
+    void enqueued(final long nanos) {
+        enqueues.increment();
+        enqueueNanos.add(nanos);
+    }
+
+    void failedAppend() {
+        failedAppends.increment();
+    }
+
+    void overshoot(final int slots) {
+        overshoot.add(slots);
+    }
+
+    void tailAdvanced() {
+        tailAdvances.increment();
+    }
+
+    void nodeAllocated(final int capacity, final long bytes) {
+        allocatedNodes.increment();
+        allocatedBytes.add(bytes);
+        NodeAllocationEvent event = new NodeAllocationEvent();
+        if (event.isEnabled()) {
+            event.builder = builderName;
+            event.capacity = capacity;
+            event.bytes = bytes;
+            event.commit();
+        }
+    }
+
+    BuilderMetrics snapshot() {
+        return new BuilderMetrics(enqueues.sum(), enqueueNanos.sum(), failedAppends.sum(),
+                overshoot.sum(), tailAdvances.sum(), allocatedNodes.sum(),
+                allocatedBytes.sum());
+    }
+
+    /**
+     * Emits a snapshot of the metrics, when the builder transitions
+     * to the built state or is rotated.
+     */
+    void commit() {
+        MetricsEvent event = new MetricsEvent();
+        if (event.isEnabled()) {
+            BuilderMetrics metrics = snapshot();
+            event.builder = builderName;
+            event.enqueues = metrics.getEnqueues();
+            event.enqueueTime = metrics.getEnqueueNanos();
+            event.failedAppends = metrics.getFailedAppends();
+            event.overshoot = metrics.getOvershoot();
+            event.tailAdvances = metrics.getTailAdvances();
+            event.allocatedNodes = metrics.getAllocatedNodes();
+            event.allocatedBytes = metrics.getAllocatedBytes();
+            event.commit();
+        }
+    }
+
+    @Name("me.hugmanrique.riviere.NodeAllocation")
+    @Label("Node Allocation")
+    @Category("Riviere")
+    @Description("A node was allocated by a concurrent builder")
+    static final class NodeAllocationEvent extends Event {
+        @Label("Builder")
+        String builder;
+
+        @Label("Capacity")
+        int capacity;
+
+        @Label("Size")
+        @DataAmount
+        long bytes;
+    }
+
+    @Name("me.hugmanrique.riviere.BuilderMetrics")
+    @Label("Builder Metrics")
+    @Category("Riviere")
+    @Description("The metrics of a concurrent builder, when built or rotated")
+    static final class MetricsEvent extends Event {
+        @Label("Builder")
+        String builder;
+
+        @Label("Enqueues")
+        long enqueues;
+
+        @Label("Enqueue Time")
+        @Timespan
+        long enqueueTime;
+
+        @Label("Failed Appends")
+        long failedAppends;
+
+        @Label("Overshoot")
+        long overshoot;
+
+        @Label("Tail Advances")
+        long tailAdvances;
+
+        @Label("Allocated Nodes")
+        long allocatedNodes;
+
+        @Label("Allocated Size")
+        @DataAmount
+        long allocatedBytes;
+    }
+}
@@ -0,0 +1,237 @@
+package me.hugmanrique.riviere;
+
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.function.LongConsumer;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A {@link LongStream.Builder} supporting full concurrency of additions,
+ * whose elements are stored off-heap in direct buffers.
+ *
+ * <p>The memory of the builder is released when it is closed. Streams
+ * built from the builder must not be traversed after (or concurrently
+ * with) closing it, and the builder must not be closed while elements
+ * are being added.
+ *
+ * <p>If {@link SpillOptions} are given, only the first nodes are kept
+ * in memory. Further nodes map regions of a temporary file, which is
+ * deleted when the builder is closed.
+ *
+ * <p>Memory consistency effects: actions in a thread prior to placing
+ * an item into a {@link OffHeapConcurrentLongStreamBuilder} <i>happen-before</i>
+ * actions subsequent to building the stream in another thread.
+ */
+public final class OffHeapConcurrentLongStreamBuilder extends AbstractOffHeapStreamBuilder
+        implements LongStream.Builder {
+
+    private static final int SHIFT = 3; // log2(Long.BYTES)
+
+    private static final class LongNode extends BufferNode {
+
+        private LongNode(final ByteBuffer buffer, final int capacity, final boolean mapped) {
+            super(buffer, capacity, mapped);
+        }
+
+        @Override
+        protected void putItems(final Object src, final int srcIndex,
+                                final int index, final int length) {
+            items.asLongBuffer().position(index).put((long[]) src, srcIndex, length);
+        }
+
+        @Override
+        protected void getItems(final int index, final Object dst,
+                                final int dstIndex, final int length) {
+            items.asLongBuffer().position(index).get((long[]) dst, dstIndex, length);
+        }
+
+        @Override
+        protected void moveItems(final int from, final int to, final int length) {
+            for (int i = 0; i < length; i++)
+                items.putLong((to + i) << SHIFT, items.getLong((from + i) << SHIFT));
+        }
+    }
+
+    /**
+     * Constructs an off-heap concurrent {@link LongStream} builder.
+     */
+    public OffHeapConcurrentLongStreamBuilder() {
+        this(BuilderOptions.defaults());
+    }
+
+    /**
+     * Constructs an off-heap concurrent {@link LongStream} builder with
+     * the given options.
+     *
+     * @param options the builder options
+     * @throws IllegalArgumentException if streaming mode, rotation,
+     *         an element limit, preallocation, statistics or distinct mode
+     *         are enabled
+     */
+    public OffHeapConcurrentLongStreamBuilder(final BuilderOptions options) {
+        super(options, null, SHIFT);
+    }
+
+    /**
+     * Constructs an off-heap concurrent {@link LongStream} builder with
+     * the given options, which spills nodes to a temporary file.
+     *
+     * @param options the builder options
+     * @param spillOptions the spill options
+     * @throws IllegalArgumentException if streaming mode, rotation,
+     *         an element limit, preallocation, statistics or distinct mode
+     *         are enabled
+     * @throws java.io.UncheckedIOException if an I/O error occurs
+     *         while creating the spill file
+     */
+    public OffHeapConcurrentLongStreamBuilder(final BuilderOptions options,
+                                              final SpillOptions spillOptions) {
+        super(options, Objects.requireNonNull(spillOptions), SHIFT);
+    }
+
+    @Override
+    protected LongNode newNode(final int capacity, final boolean mapped) {
+        return new LongNode(allocate(capacity << SHIFT, mapped), capacity, mapped);
+    }
+
+    @Override
+    public void accept(final long value) {
+        Writer writer = beginWrite();
+        try {
+            Node<ByteBuffer> node;
+            int index;
+            Chunk<ByteBuffer> chunk = localChunk();
+            if (chunk != null) {
+                index = claim(chunk);
+                node = chunk.node;
+            } else {
+                do {
+                    node = lastNode();
+                } while ((index = claim(node)) < 0);
+            }
+            node.items.putLong(index << SHIFT, value);
+        } finally {
+            endWrite(writer);
+        }
+    }
+
+    /**
+     * Adds all the elements of the given array to the stream being built.
+     *
+     * @param values the elements to add
+     * @throws IllegalStateException if the builder has already transitioned
+     *         to the built state
+     * @see #acceptAll(long[], int, int)
+     */
+    public void acceptAll(final long[] values) {
+        acceptAll(values, 0, values.length);
+    }
+
+    /**
+     * Adds {@code length} elements of the given array to the stream
+     * being built, starting at index {@code offset}.
+     *
+     * @param values the array containing the elements to add
+     * @param offset the index of the first element to add
+     * @param length the number of elements to add
+     * @throws IndexOutOfBoundsException if the range is out of bounds
+     * @throws IllegalStateException if the builder has already transitioned
+     *         to the built state
+     * @see ConcurrentLongStreamBuilder#acceptAll(long[], int, int)
+     */
+    public void acceptAll(final long[] values, final int offset, final int length) {
+        Objects.checkFromIndexSize(offset, length, values.length);
+        enqueueAll(values, offset, length);
+    }
+
+    @Override
+    public LongStream build() {
+        return StreamSupport.longStream(buildSpliterator(), false);
+    }
+
+    /**
+     * Transitions the builder to the built state, and returns an array
+     * containing its elements, in order.
+     *
+     * @return an array containing the elements of this builder
+     * @throws IllegalStateException if the builder has already transitioned
+     *         to the built state
+     * @throws IllegalArgumentException if the number of elements exceeds
+     *         the maximum array length
+     */
+    public long[] toArray() {
+        long[] array = new long[buildArraySize()];
+        copyItems(array, 0);
+        return array;
+    }
+
+    /**
+     * Returns a snapshot of the metrics recorded by this builder.
+     *
+     * @return the metrics snapshot
+     * @throws IllegalStateException if metrics are disabled
+     * @see BuilderOptions#withMetrics(boolean)
+     */
+    public BuilderMetrics metrics() {
+        return metricsSnapshot();
+    }
+
+    /**
+     * Transitions the builder to the built state, and returns
+     * a spliterator over its elements.
+     *
+     * @return a spliterator over the elements of this builder
+     * @throws IllegalStateException if the builder has already transitioned
+     *         to the built state
+     */
+    Spliterator.OfLong buildSpliterator() {
+        checkAndSetBuilt();
+        return new BuilderSpliterator();
+    }
+
+    private final class BuilderSpliterator extends AbstractSpliterator<Spliterator.OfLong>
+            implements Spliterator.OfLong {
+
+        private BuilderSpliterator() {}
+
+        private BuilderSpliterator(final Node<ByteBuffer> node, final int index,
+                                   final Node<ByteBuffer> last, final int fence) {
+            super(node, index, last, fence);
+        }
+
+        @Override
+        protected BuilderSpliterator newSpliterator(final Node<ByteBuffer> node,
+                                                    final int index,
+                                                    final Node<ByteBuffer> last,
+                                                    final int fence) {
+            return new BuilderSpliterator(node, index, last, fence);
+        }
+
+        @Override
+        public boolean tryAdvance(final LongConsumer action) {
+            Objects.requireNonNull(action);
+            ensureOpen();
+            boolean advance = canAdvance();
+            if (advance) {
+                action.accept(node.items.getLong(index++ << SHIFT));
+            }
+            return advance;
+        }
+
+        @Override
+        public void forEachRemaining(final LongConsumer action) {
+            Objects.requireNonNull(action);
+            do {
+                ensureOpen();
+                ByteBuffer items = node.items;
+                int from = index;
+                int to = end();
+                index = to;
+                for (int i = from; i < to; i++)
+                    action.accept(items.getLong(i << SHIFT));
+            } while (advanceNode());
+        }
+    }
+}
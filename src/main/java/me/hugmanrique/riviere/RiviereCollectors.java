@@ -0,0 +1,236 @@
+package me.hugmanrique.riviere;
+
+import java.util.Objects;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collector;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ * {@link Collector} implementations accumulating elements into
+ * concurrent stream builders, and returning the built streams.
+ *
+ * <p>Every collector is {@link Collector.Characteristics#CONCURRENT
+ * CONCURRENT}. If the collected stream is parallel and unordered, or
+ * the collector is {@link Collector.Characteristics#UNORDERED UNORDERED},
+ * all the worker threads add elements to a single shared builder,
+ * which is built once without merging.
+ *
+ * <p>Otherwise, the order of the elements must be preserved, so each
+ * split of a parallel stream is accumulated into its own builder.
+ * The builders are merged by linking their nodes, without copying
+ * any element.
+ *
+ * <pre>{@code
+ * Stream<String> names = users.parallelStream()
+ *         .unordered()
+ *         .map(User::getName)
+ *         .collect(RiviereCollectors.toStream());
+ * }</pre>
+ */
+public final class RiviereCollectors {
+
+    private static final Collector.Characteristics[] ORDERED = {
+        Collector.Characteristics.CONCURRENT
+    };
+    private static final Collector.Characteristics[] UNORDERED = {
+        Collector.Characteristics.CONCURRENT, Collector.Characteristics.UNORDERED
+    };
+
+    /**
+     * Returns a collector accumulating the input elements into
+     * a {@link ConcurrentStreamBuilder}, which is built by the finisher.
+     *
+     * @param <T> the type of the input elements
+     * @return a collector returning a stream of the input elements,
+     *         in encounter order
+     */
+    public static <T> Collector<T, ?, Stream<T>> toStream() {
+        return Collector.of(
+                ConcurrentStreamBuilder<T>::new,
+                ConcurrentStreamBuilder::accept,
+                (left, right) -> {
+                    left.link(right);
+                    return left;
+                },
+                ConcurrentStreamBuilder::build,
+                ORDERED);
+    }
+
+    /**
+     * Returns a collector accumulating the results of applying
+     * the given function to the input elements into
+     * a {@link ConcurrentIntStreamBuilder}, which is built by the finisher.
+     *
+     * @param mapper the function extracting the stream elements
+     * @param <T> the type of the input elements
+     * @return a collector returning a stream of the mapped elements,
+     *         in encounter order
+     */
+    public static <T> Collector<T, ?, IntStream> toIntStream(
+            final ToIntFunction<? super T> mapper) {
+        Objects.requireNonNull(mapper);
+        return Collector.of(
+                ConcurrentIntStreamBuilder::new,
+                (builder, element) -> builder.accept(mapper.applyAsInt(element)),
+                (left, right) -> {
+                    left.link(right);
+                    return left;
+                },
+                ConcurrentIntStreamBuilder::build,
+                ORDERED);
+    }
+
+    /**
+     * Returns a collector accumulating the results of applying
+     * the given function to the input elements into
+     * a {@link ConcurrentLongStreamBuilder}, which is built by the finisher.
+     *
+     * @param mapper the function extracting the stream elements
+     * @param <T> the type of the input elements
+     * @return a collector returning a stream of the mapped elements,
+     *         in encounter order
+     */
+    public static <T> Collector<T, ?, LongStream> toLongStream(
+            final ToLongFunction<? super T> mapper) {
+        Objects.requireNonNull(mapper);
+        return Collector.of(
+                ConcurrentLongStreamBuilder::new,
+                (builder, element) -> builder.accept(mapper.applyAsLong(element)),
+                (left, right) -> {
+                    left.link(right);
+                    return left;
+                },
+                ConcurrentLongStreamBuilder::build,
+                ORDERED);
+    }
+
+    /**
+     * Returns a collector accumulating the results of applying
+     * the given function to the input elements into
+     * a {@link ConcurrentDoubleStreamBuilder}, which is built by
+     * the finisher.
+     *
+     * @param mapper the function extracting the stream elements
+     * @param <T> the type of the input elements
+     * @return a collector returning a stream of the mapped elements,
+     *         in encounter order
+     */
+    public static <T> Collector<T, ?, DoubleStream> toDoubleStream(
+            final ToDoubleFunction<? super T> mapper) {
+        Objects.requireNonNull(mapper);
+        return Collector.of(
+                ConcurrentDoubleStreamBuilder::new,
+                (builder, element) -> builder.accept(mapper.applyAsDouble(element)),
+                (left, right) -> {
+                    left.link(right);
+                    return left;
+                },
+                ConcurrentDoubleStreamBuilder::build,
+                ORDERED);
+    }
+
+    /**
+     * Returns an unordered collector accumulating the input elements
+     * into an {@link UnorderedConcurrentStreamBuilder}, which is built
+     * by the finisher.
+     *
+     * @param <T> the type of the input elements
+     * @return a collector returning an unordered stream of the input
+     *         elements
+     */
+    public static <T> Collector<T, ?, Stream<T>> toUnorderedStream() {
+        return Collector.of(
+                UnorderedConcurrentStreamBuilder<T>::new,
+                UnorderedConcurrentStreamBuilder::accept,
+                (left, right) -> {
+                    left.link(right);
+                    return left;
+                },
+                UnorderedConcurrentStreamBuilder::build,
+                UNORDERED);
+    }
+
+    /**
+     * Returns an unordered collector accumulating the results of
+     * applying the given function to the input elements into
+     * an {@link UnorderedConcurrentIntStreamBuilder}, which is built
+     * by the finisher.
+     *
+     * @param mapper the function extracting the stream elements
+     * @param <T> the type of the input elements
+     * @return a collector returning an unordered stream of the mapped
+     *         elements
+     */
+    public static <T> Collector<T, ?, IntStream> toUnorderedIntStream(
+            final ToIntFunction<? super T> mapper) {
+        Objects.requireNonNull(mapper);
+        return Collector.of(
+                UnorderedConcurrentIntStreamBuilder::new,
+                (builder, element) -> builder.accept(mapper.applyAsInt(element)),
+                (left, right) -> {
+                    left.link(right);
+                    return left;
+                },
+                UnorderedConcurrentIntStreamBuilder::build,
+                UNORDERED);
+    }
+
+    /**
+     * Returns an unordered collector accumulating the results of
+     * applying the given function to the input elements into
+     * an {@link UnorderedConcurrentLongStreamBuilder}, which is built
+     * by the finisher.
+     *
+     * @param mapper the function extracting the stream elements
+     * @param <T> the type of the input elements
+     * @return a collector returning an unordered stream of the mapped
+     *         elements
+     */
+    public static <T> Collector<T, ?, LongStream> toUnorderedLongStream(
+            final ToLongFunction<? super T> mapper) {
+        Objects.requireNonNull(mapper);
+        return Collector.of(
+                UnorderedConcurrentLongStreamBuilder::new,
+                (builder, element) -> builder.accept(mapper.applyAsLong(element)),
+                (left, right) -> {
+                    left.link(right);
+                    return left;
+                },
+                UnorderedConcurrentLongStreamBuilder::build,
+                UNORDERED);
+    }
+
+    /**
+     * Returns an unordered collector accumulating the results of
+     * applying the given function to the input elements into
+     * an {@link UnorderedConcurrentDoubleStreamBuilder}, which is built
+     * by the finisher.
+     *
+     * @param mapper the function extracting the stream elements
+     * @param <T> the type of the input elements
+     * @return a collector returning an unordered stream of the mapped
+     *         elements
+     */
+    public static <T> Collector<T, ?, DoubleStream> toUnorderedDoubleStream(
+            final ToDoubleFunction<? super T> mapper) {
+        Objects.requireNonNull(mapper);
+        return Collector.of(
+                UnorderedConcurrentDoubleStreamBuilder::new,
+                (builder, element) -> builder.accept(mapper.applyAsDouble(element)),
+                (left, right) -> {
+                    left.link(right);
+                    return left;
+                },
+                UnorderedConcurrentDoubleStreamBuilder::build,
+                UNORDERED);
+    }
+
+    private RiviereCollectors() {
+        throw new AssertionError();
+    }
+}
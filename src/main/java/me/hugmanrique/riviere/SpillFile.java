@@ -0,0 +1,99 @@
+package me.hugmanrique.riviere;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A temporary file whose regions are mapped by off-heap builder nodes.
+ *
+ * <p>Regions are never reused: released regions are only subtracted
+ * from the disk usage. Since spilled nodes are created by the thread
+ * elected to append them, regions are only released when the builder
+ * is closed.
+ */
+final class SpillFile {
+
+    private final FileChannel channel;
+    private final long diskLimit;
+
+    /**
+     * The total size of the mapped regions.
+     */
+    private final AtomicLong end = new AtomicLong();
+
+    /**
+     * The total size of the mapped regions that haven't been released.
+     */
+    private final AtomicLong usage = new AtomicLong();
+
+    /**
+     * Creates a spill file with the given options.
+     *
+     * @param options the spill options
+     * @throws UncheckedIOException if an I/O error occurs
+     */
+    SpillFile(final SpillOptions options) {
+        try {
+            Path path = Files.createTempFile(options.directory(), "riviere-", ".spill");
+            this.channel = FileChannel.open(path, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.diskLimit = options.diskLimit();
+    }
+
+    /**
+     * Maps a new region of the file in native byte order.
+     *
+     * @param size the region size, in bytes
+     * @return the mapped buffer
+     * @throws IllegalStateException if mapping the region would exceed
+     *         the disk limit
+     * @throws UncheckedIOException if an I/O error occurs
+     */
+    ByteBuffer map(final int size) {
+        if (usage.addAndGet(size) > diskLimit) {
+            usage.addAndGet(-size);
+            throw new IllegalStateException("Spill file disk limit of " + diskLimit
+                    + " bytes exceeded");
+        }
+        long position = end.getAndAdd(size);
+        try {
+            return channel.map(FileChannel.MapMode.READ_WRITE, position, size)
+                    .order(ByteOrder.nativeOrder());
+        } catch (final IOException e) {
+            usage.addAndGet(-size);
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Subtracts an unmapped region from the disk usage.
+     *
+     * @param size the region size, in bytes
+     */
+    void release(final int size) {
+        usage.addAndGet(-size);
+    }
+
+    /**
+     * Closes and deletes the file. All regions must have been unmapped.
+     *
+     * @throws UncheckedIOException if an I/O error occurs
+     */
+    void close() {
+        try {
+            channel.close();
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package me.hugmanrique.riviere;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Objects;
+
+/**
+ * Configuration of the spill file of an off-heap builder.
+ *
+ * <p>An off-heap builder constructed with spill options keeps its first
+ * nodes in memory. Further nodes are memory-mapped regions of a temporary
+ * file, which is deleted when the builder is closed.
+ *
+ * <p>Instances are immutable; every {@code with} method returns
+ * a copy with the given option replaced.
+ *
+ * <pre>{@code
+ * try (var builder = new OffHeapConcurrentLongStreamBuilder(
+ *         BuilderOptions.defaults(),
+ *         SpillOptions.defaults()
+ *                 .withMemoryNodes(20)
+ *                 .withDiskLimit(1L << 36))) {
+ *     // ...
+ * }
+ * }</pre>
+ */
+public final class SpillOptions {
+
+    private static final SpillOptions DEFAULTS = new SpillOptions(
+            Paths.get(System.getProperty("java.io.tmpdir")), 16, Long.MAX_VALUE);
+
+    private final Path directory;
+    private final int memoryNodes;
+    private final long diskLimit;
+
+    private SpillOptions(final Path directory, final int memoryNodes, final long diskLimit) {
+        this.directory = directory;
+        this.memoryNodes = memoryNodes;
+        this.diskLimit = diskLimit;
+    }
+
+    /**
+     * Returns the default options, which create the spill file in
+     * the default temporary-file directory.
+     *
+     * @return the default options
+     */
+    public static SpillOptions defaults() {
+        return DEFAULTS;
+    }
+
+    /**
+     * Returns a copy of these options with the given directory,
+     * where the spill file is created.
+     *
+     * @param directory the spill file directory
+     * @return the new options
+     */
+    public SpillOptions withDirectory(final Path directory) {
+        return new SpillOptions(Objects.requireNonNull(directory), memoryNodes, diskLimit);
+    }
+
+    /**
+     * Returns a copy of these options with the given number of nodes
+     * (including the head node) kept in memory. It defaults to 16.
+     *
+     * @param memoryNodes the number of nodes kept in memory
+     * @return the new options
+     * @throws IllegalArgumentException if {@code memoryNodes} is not positive
+     */
+    public SpillOptions withMemoryNodes(final int memoryNodes) {
+        if (memoryNodes <= 0)
+            throw new IllegalArgumentException("Got non-positive memory node count " + memoryNodes);
+        return new SpillOptions(directory, memoryNodes, diskLimit);
+    }
+
+    /**
+     * Returns a copy of these options with the given maximum size of
+     * the file regions mapped by the builder nodes. Adding an element
+     * that requires mapping a region past the limit throws
+     * an {@link IllegalStateException}. It is unlimited by default.
+     *
+     * @param diskLimit the maximum spill file usage, in bytes
+     * @return the new options
+     * @throws IllegalArgumentException if {@code diskLimit} is not positive
+     */
+    public SpillOptions withDiskLimit(final long diskLimit) {
+        if (diskLimit <= 0)
+            throw new IllegalArgumentException("Got non-positive disk limit " + diskLimit);
+        return new SpillOptions(directory, memoryNodes, diskLimit);
+    }
+
+    Path directory() {
+        return directory;
+    }
+
+    int memoryNodes() {
+        return memoryNodes;
+    }
+
+    long diskLimit() {
+        return diskLimit;
+    }
+}
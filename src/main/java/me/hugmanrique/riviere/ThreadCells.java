@@ -0,0 +1,101 @@
+package me.hugmanrique.riviere;
+
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * A set of values, each owned by a single thread.
+ *
+ * <p>The owner thread may update its cell without synchronization.
+ * Other threads can enumerate all cells, but the visibility of
+ * the owners' updates must be ensured by other means.
+ *
+ * <p>The cells of terminated threads are only removed by
+ * {@link #forEachReclaiming(Consumer)}, so that their last updates
+ * can still be read until then.
+ *
+ * @param <T> the type of the cells
+ */
+final class ThreadCells<T> {
+
+    private static final class Cell<T> {
+        private final Thread owner;
+        private final T value;
+
+        private Cell(final Thread owner, final T value) {
+            this.owner = owner;
+            this.value = value;
+        }
+    }
+
+    private final Queue<Cell<T>> cells = new ConcurrentLinkedQueue<>();
+    private final ThreadLocal<T> local;
+
+    /**
+     * Constructs an empty set of cells.
+     *
+     * @param factory the function creating the cell of a thread,
+     *                called at most once by each thread
+     */
+    ThreadCells(final Supplier<? extends T> factory) {
+        this.local = ThreadLocal.withInitial(() -> {
+            T value = factory.get();
+            cells.add(new Cell<>(Thread.currentThread(), value));
+            return value;
+        });
+    }
+
+    /**
+     * Returns the cell of the current thread, creating it
+     * if necessary.
+     *
+     * @return the cell of the current thread
+     */
+    T get() {
+        return local.get();
+    }
+
+    /**
+     * Performs the given action on the cells created so far.
+     *
+     * @param action the action to perform
+     */
+    void forEach(final Consumer<? super T> action) {
+        for (Cell<T> cell : cells)
+            action.accept(cell.value);
+    }
+
+    /**
+     * Performs the given action on the cells created so far, and then
+     * removes the cells of the threads that have terminated. All the
+     * updates of a terminated thread to its cell are visible to
+     * the action.
+     *
+     * <p>This method must not be called concurrently with itself.
+     *
+     * @param action the action to perform
+     */
+    void forEachReclaiming(final Consumer<? super T> action) {
+        for (Iterator<Cell<T>> it = cells.iterator(); it.hasNext(); ) {
+            Cell<T> cell = it.next();
+            // The termination of the owner happens-before isAlive returns false
+            boolean terminated = !cell.owner.isAlive();
+            action.accept(cell.value);
+            if (terminated)
+                it.remove();
+        }
+    }
+
+    /**
+     * Returns the number of cells, including the cells of terminated
+     * threads that haven't been removed yet.
+     *
+     * @return the number of cells
+     */
+    int size() {
+        return cells.size();
+    }
+}
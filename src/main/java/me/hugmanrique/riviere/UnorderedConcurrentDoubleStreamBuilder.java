@@ -0,0 +1,231 @@
+package me.hugmanrique.riviere;
+
+import java.util.DoubleSummaryStatistics;
+import java.util.Spliterator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.DoubleStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A {@link DoubleStream.Builder} supporting full concurrency of additions,
+ * whose built stream has no encounter order.
+ *
+ * <p>Elements are added to one of several independent
+ * {@link ConcurrentDoubleStreamBuilder} lanes, picked by hashing the current thread.
+ * Since threads adding elements to different lanes don't contend
+ * with each other, this builder scales with the number of adding
+ * threads better than {@link ConcurrentDoubleStreamBuilder}. When built, the lanes
+ * are concatenated without copying, and parallel traversals split
+ * the elements by lane.
+ *
+ * <p>Elements added by the same thread are traversed in the order
+ * they were added, but the built stream is not {@code ORDERED}.
+ *
+ * <p>Memory consistency effects: actions in a thread prior to placing
+ * an item into a {@link UnorderedConcurrentDoubleStreamBuilder} <i>happen-before</i>
+ * actions subsequent to building the stream in another thread.
+ */
+public final class UnorderedConcurrentDoubleStreamBuilder
+        extends AbstractUnorderedStreamBuilder<ConcurrentDoubleStreamBuilder>
+        implements DoubleStream.Builder {
+
+    /**
+     * Constructs an unordered concurrent {@link DoubleStream} builder
+     * with one lane per available processor.
+     */
+    public UnorderedConcurrentDoubleStreamBuilder() {
+        this(BuilderOptions.defaults());
+    }
+
+    /**
+     * Constructs an unordered concurrent {@link DoubleStream} builder
+     * with one lane per available processor, each with the given options.
+     *
+     * @param options the options of every lane
+     */
+    public UnorderedConcurrentDoubleStreamBuilder(final BuilderOptions options) {
+        this(options, defaultLaneCount());
+    }
+
+    /**
+     * Constructs an unordered concurrent {@link DoubleStream} builder
+     * with the given number of lanes (rounded up to a power of two),
+     * each with the given options.
+     *
+     * @param options the options of every lane
+     * @param laneCount the number of lanes
+     * @throws IllegalArgumentException if {@code laneCount} is not positive
+     *         or greater than {@code 65536}
+     *         or if streaming mode or distinct mode are enabled
+     */
+    public UnorderedConcurrentDoubleStreamBuilder(final BuilderOptions options,
+                                                  final int laneCount) {
+        super(laneCount, ConcurrentDoubleStreamBuilder[]::new,
+                () -> new ConcurrentDoubleStreamBuilder(options.requireNotStreaming()));
+    }
+
+    @Override
+    public void accept(final double value) {
+        lane().accept(value);
+    }
+
+    /**
+     * Adds an element to the stream being built, unless the number of
+     * elements is limited and the lane of the current thread is full.
+     *
+     * @param value the element to add
+     * @return {@code true} if the element was added
+     * @throws IllegalStateException if the builder has already transitioned
+     *         to the built state
+     * @see ConcurrentDoubleStreamBuilder#tryAccept(double)
+     */
+    public boolean tryAccept(final double value) {
+        return lane().tryAccept(value);
+    }
+
+    /**
+     * Adds an element to the stream being built, waiting up to
+     * the given time for the lane of the current thread to make room
+     * for it if the number of elements is limited and the lane is full.
+     *
+     * @param value the element to add
+     * @param timeout the maximum time to wait
+     * @param unit the time unit of {@code timeout}
+     * @return {@code true} if the element was added
+     * @throws InterruptedException if interrupted while waiting
+     * @throws IllegalStateException if the builder has already transitioned
+     *         to the built state
+     * @see ConcurrentDoubleStreamBuilder#tryAccept(double, long, TimeUnit)
+     */
+    public boolean tryAccept(final double value, final long timeout, final TimeUnit unit)
+            throws InterruptedException {
+        return lane().tryAccept(value, timeout, unit);
+    }
+
+    /**
+     * Adds all the elements of the given array to the stream being built.
+     *
+     * @param values the elements to add
+     * @throws IllegalStateException if the builder has already transitioned
+     *         to the built state
+     */
+    public void acceptAll(final double[] values) {
+        lane().acceptAll(values);
+    }
+
+    /**
+     * Adds {@code length} elements of the given array to the stream
+     * being built, starting at index {@code offset}.
+     *
+     * @param values the array containing the elements to add
+     * @param offset the index of the first element to add
+     * @param length the number of elements to add
+     * @throws IndexOutOfBoundsException if the range is out of bounds
+     * @throws IllegalStateException if the builder has already transitioned
+     *         to the built state
+     * @see ConcurrentDoubleStreamBuilder#acceptAll(double[], int, int)
+     */
+    public void acceptAll(final double[] values, final int offset, final int length) {
+        lane().acceptAll(values, offset, length);
+    }
+
+    @Override
+    public DoubleStream build() {
+        Spliterator.OfDouble[] parts = new Spliterator.OfDouble[lanes.length];
+        // The first lane acts as a guard against concurrent builds
+        for (int i = 0; i < lanes.length; i++)
+            parts[i] = lanes[i].buildSpliterator();
+        return StreamSupport.doubleStream(
+                new ConcatSpliterator.OfDouble(parts, CHARACTERISTICS), false);
+    }
+
+    /**
+     * Seals the elements added so far to every lane, and returns
+     * a stream of them. The builder does not transition to the built
+     * state: later elements are included in the stream returned by
+     * the next call to this method or {@link #build()}. Rotation must
+     * be enabled in the lane options.
+     *
+     * <p>This method must not be called concurrently with itself, or
+     * with {@link #build()}.
+     *
+     * @return a stream of the elements added since the last rotation
+     * @throws IllegalStateException if rotation is disabled, or
+     *         the builder has already transitioned to the built state
+     * @see ConcurrentDoubleStreamBuilder#rotate()
+     */
+    public DoubleStream rotate() {
+        Spliterator.OfDouble[] parts = new Spliterator.OfDouble[lanes.length];
+        for (int i = 0; i < lanes.length; i++)
+            parts[i] = lanes[i].rotateSpliterator();
+        return StreamSupport.doubleStream(
+                new ConcatSpliterator.OfDouble(parts, CHARACTERISTICS), false);
+    }
+
+    /**
+     * Transitions the given builder to the built state, and appends
+     * the nodes of each of its lanes to a lane of this builder, without
+     * copying any element. The given builder must no longer be used.
+     *
+     * <p>This method must not be called concurrently with any other
+     * method of either builder, and neither may have running statistics
+     * enabled.
+     *
+     * @param other the builder whose elements to append
+     * @throws IllegalStateException if either builder is in built state
+     * @throws IllegalArgumentException if either builder limits its
+     *         number of elements
+     */
+    void link(final UnorderedConcurrentDoubleStreamBuilder other) {
+        for (int i = 0; i < other.lanes.length; i++)
+            lanes[i % lanes.length].link(other.lanes[i]);
+    }
+
+    /**
+     * Transitions the builder from the built state back to its initial
+     * state, recycling the nodes of every lane.
+     *
+     * <p>This method must not be called concurrently with any other
+     * method, and the streams previously built from this builder must
+     * no longer be used.
+     *
+     * @throws IllegalStateException if the builder is not in built state
+     * @see ConcurrentDoubleStreamBuilder#reset()
+     */
+    public void reset() {
+        for (ConcurrentDoubleStreamBuilder lane : lanes)
+            lane.reset();
+    }
+
+    /**
+     * Returns the summary statistics of the elements of this builder,
+     * combining the running statistics of every lane. The builder must
+     * be in built state, and running statistics must be enabled in
+     * the lane options.
+     *
+     * @return the summary statistics of the elements
+     * @throws IllegalStateException if running statistics are disabled,
+     *         or the builder is not in built state
+     * @see ConcurrentDoubleStreamBuilder#summaryStatistics()
+     */
+    public DoubleSummaryStatistics summaryStatistics() {
+        DoubleSummaryStatistics result = new DoubleSummaryStatistics();
+        for (ConcurrentDoubleStreamBuilder lane : lanes)
+            result.combine(lane.summaryStatistics());
+        return result;
+    }
+
+    /**
+     * Returns the sum of the metrics recorded by every lane.
+     *
+     * @return the metrics snapshot
+     * @throws IllegalStateException if metrics are disabled
+     * @see BuilderOptions#withMetrics(boolean)
+     */
+    public BuilderMetrics metrics() {
+        BuilderMetrics metrics = lanes[0].metrics();
+        for (int i = 1; i < lanes.length; i++)
+            metrics = metrics.plus(lanes[i].metrics());
+        return metrics;
+    }
+}
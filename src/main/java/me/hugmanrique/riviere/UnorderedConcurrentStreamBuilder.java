@@ -0,0 +1,219 @@
+package me.hugmanrique.riviere;
+
+import java.util.Spliterator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A {@link Stream.Builder} supporting full concurrency of additions,
+ * whose built stream has no encounter order.
+ * Like {@link ConcurrentStreamBuilder}, this class permits
+ * the use of {@code null} elements.
+ *
+ * <p>Elements are added to one of several independent
+ * {@link ConcurrentStreamBuilder} lanes, picked by hashing the current thread.
+ * Since threads adding elements to different lanes don't contend
+ * with each other, this builder scales with the number of adding
+ * threads better than {@link ConcurrentStreamBuilder}. When built, the lanes
+ * are concatenated without copying, and parallel traversals split
+ * the elements by lane.
+ *
+ * <p>Elements added by the same thread are traversed in the order
+ * they were added, but the built stream is not {@code ORDERED}.
+ *
+ * <p>Memory consistency effects: actions in a thread prior to placing
+ * an object into a {@link UnorderedConcurrentStreamBuilder} <i>happen-before</i>
+ * actions subsequent to building the stream in another thread.
+ *
+ * @param <T> the type of the stream elements
+ */
+public final class UnorderedConcurrentStreamBuilder<T>
+        extends AbstractUnorderedStreamBuilder<ConcurrentStreamBuilder<T>>
+        implements Stream.Builder<T> {
+
+    /**
+     * Constructs an unordered concurrent {@link Stream} builder
+     * with one lane per available processor.
+     */
+    public UnorderedConcurrentStreamBuilder() {
+        this(BuilderOptions.defaults());
+    }
+
+    /**
+     * Constructs an unordered concurrent {@link Stream} builder
+     * with one lane per available processor, each with the given options.
+     *
+     * @param options the options of every lane
+     */
+    public UnorderedConcurrentStreamBuilder(final BuilderOptions options) {
+        this(options, defaultLaneCount());
+    }
+
+    /**
+     * Constructs an unordered concurrent {@link Stream} builder
+     * with the given number of lanes (rounded up to a power of two),
+     * each with the given options.
+     *
+     * @param options the options of every lane
+     * @param laneCount the number of lanes
+     * @throws IllegalArgumentException if {@code laneCount} is not positive
+     *         or greater than {@code 65536}
+     *         or if streaming mode, running statistics or distinct mode
+     *         are enabled
+     */
+    @SuppressWarnings("unchecked")
+    public UnorderedConcurrentStreamBuilder(final BuilderOptions options, final int laneCount) {
+        super(laneCount, ConcurrentStreamBuilder[]::new,
+                () -> new ConcurrentStreamBuilder<>(options.requireNotStreaming()));
+    }
+
+    @Override
+    public void accept(final T value) {
+        lane().accept(value);
+    }
+
+    /**
+     * Adds an element to the stream being built, unless the number of
+     * elements is limited and the lane of the current thread is full.
+     *
+     * @param value the element to add
+     * @return {@code true} if the element was added
+     * @throws IllegalStateException if the builder has already transitioned
+     *         to the built state
+     * @see ConcurrentStreamBuilder#tryAccept(Object)
+     */
+    public boolean tryAccept(final T value) {
+        return lane().tryAccept(value);
+    }
+
+    /**
+     * Adds an element to the stream being built, waiting up to
+     * the given time for the lane of the current thread to make room
+     * for it if the number of elements is limited and the lane is full.
+     *
+     * @param value the element to add
+     * @param timeout the maximum time to wait
+     * @param unit the time unit of {@code timeout}
+     * @return {@code true} if the element was added
+     * @throws InterruptedException if interrupted while waiting
+     * @throws IllegalStateException if the builder has already transitioned
+     *         to the built state
+     * @see ConcurrentStreamBuilder#tryAccept(Object, long, TimeUnit)
+     */
+    public boolean tryAccept(final T value, final long timeout, final TimeUnit unit)
+            throws InterruptedException {
+        return lane().tryAccept(value, timeout, unit);
+    }
+
+    /**
+     * Adds all the elements of the given array to the stream being built.
+     *
+     * @param values the elements to add
+     * @throws IllegalStateException if the builder has already transitioned
+     *         to the built state
+     */
+    public void acceptAll(final T[] values) {
+        lane().acceptAll(values);
+    }
+
+    /**
+     * Adds {@code length} elements of the given array to the stream
+     * being built, starting at index {@code offset}.
+     *
+     * @param values the array containing the elements to add
+     * @param offset the index of the first element to add
+     * @param length the number of elements to add
+     * @throws IndexOutOfBoundsException if the range is out of bounds
+     * @throws IllegalStateException if the builder has already transitioned
+     *         to the built state
+     * @see ConcurrentStreamBuilder#acceptAll(Object[], int, int)
+     */
+    public void acceptAll(final T[] values, final int offset, final int length) {
+        lane().acceptAll(values, offset, length);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Stream<T> build() {
+        Spliterator<T>[] parts = (Spliterator<T>[]) new Spliterator<?>[lanes.length];
+        // The first lane acts as a guard against concurrent builds
+        for (int i = 0; i < lanes.length; i++)
+            parts[i] = lanes[i].buildSpliterator();
+        return StreamSupport.stream(
+                new ConcatSpliterator.OfRef<>(parts, CHARACTERISTICS), false);
+    }
+
+    /**
+     * Seals the elements added so far to every lane, and returns
+     * a stream of them. The builder does not transition to the built
+     * state: later elements are included in the stream returned by
+     * the next call to this method or {@link #build()}. Rotation must
+     * be enabled in the lane options.
+     *
+     * <p>This method must not be called concurrently with itself, or
+     * with {@link #build()}.
+     *
+     * @return a stream of the elements added since the last rotation
+     * @throws IllegalStateException if rotation is disabled, or
+     *         the builder has already transitioned to the built state
+     * @see ConcurrentStreamBuilder#rotate()
+     */
+    @SuppressWarnings("unchecked")
+    public Stream<T> rotate() {
+        Spliterator<T>[] parts = (Spliterator<T>[]) new Spliterator<?>[lanes.length];
+        for (int i = 0; i < lanes.length; i++)
+            parts[i] = lanes[i].rotateSpliterator();
+        return StreamSupport.stream(
+                new ConcatSpliterator.OfRef<>(parts, CHARACTERISTICS), false);
+    }
+
+    /**
+     * Transitions the given builder to the built state, and appends
+     * the nodes of each of its lanes to a lane of this builder, without
+     * copying any element. The given builder must no longer be used.
+     *
+     * <p>This method must not be called concurrently with any other
+     * method of either builder, and neither may have running statistics
+     * enabled.
+     *
+     * @param other the builder whose elements to append
+     * @throws IllegalStateException if either builder is in built state
+     * @throws IllegalArgumentException if either builder limits its
+     *         number of elements
+     */
+    void link(final UnorderedConcurrentStreamBuilder<T> other) {
+        for (int i = 0; i < other.lanes.length; i++)
+            lanes[i % lanes.length].link(other.lanes[i]);
+    }
+
+    /**
+     * Transitions the builder from the built state back to its initial
+     * state, recycling the nodes of every lane.
+     *
+     * <p>This method must not be called concurrently with any other
+     * method, and the streams previously built from this builder must
+     * no longer be used.
+     *
+     * @throws IllegalStateException if the builder is not in built state
+     * @see ConcurrentStreamBuilder#reset()
+     */
+    public void reset() {
+        for (ConcurrentStreamBuilder<T> lane : lanes)
+            lane.reset();
+    }
+
+    /**
+     * Returns the sum of the metrics recorded by every lane.
+     *
+     * @return the metrics snapshot
+     * @throws IllegalStateException if metrics are disabled
+     * @see BuilderOptions#withMetrics(boolean)
+     */
+    public BuilderMetrics metrics() {
+        BuilderMetrics metrics = lanes[0].metrics();
+        for (int i = 1; i < lanes.length; i++)
+            metrics = metrics.plus(lanes[i].metrics());
+        return metrics;
+    }
+}
@@ -2,10 +2,13 @@ package me.hugmanrique.riviere;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.util.ArrayDeque;
 import java.util.Arrays;
+import java.util.DoubleSummaryStatistics;
 import java.util.Queue;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.stream.Collectors;
@@ -70,4 +73,231 @@ public class ConcurrentDoubleStreamBuilderTests {
         double[] elements = builder.build().toArray();
         assertArrayEquals(expected, elements);
     }
+
+    @Test
+    void testParallelBuild() {
+        var builder = new ConcurrentDoubleStreamBuilder();
+        double[] expected = ThreadLocalRandom.current().doubles(10_000).toArray();
+        Arrays.stream(expected).forEach(builder);
+        double[] elements = builder.build().parallel().toArray();
+        assertArrayEquals(expected, elements);
+    }
+
+    @Test
+    void testSplits() {
+        var builder = new ConcurrentDoubleStreamBuilder(3);
+        ThreadLocalRandom.current().doubles(1000).forEach(builder);
+        assertEquals(1000, TestUtils.assertExactSplits(builder.build().spliterator()));
+    }
+
+    @Test
+    void testForEachRemaining() {
+        var builder = new ConcurrentDoubleStreamBuilder(3);
+        double[] values = ThreadLocalRandom.current().doubles(100).toArray();
+        Arrays.stream(values).forEach(builder);
+        var spliterator = builder.build().spliterator();
+        var prefix = spliterator.trySplit();
+        var traversed = DoubleStream.builder();
+        for (int i = 0; i < 5; i++)
+            assertTrue(prefix.tryAdvance(traversed));
+        prefix.forEachRemaining(traversed);
+        spliterator.forEachRemaining(traversed);
+        assertFalse(spliterator.tryAdvance(traversed));
+        assertArrayEquals(values, traversed.build().toArray());
+    }
+
+    @Test
+    void testAcceptsWithoutAllocation() {
+        // Both the warm up and measured runs fit in the head node
+        var builder = new ConcurrentDoubleStreamBuilder(1 << 15);
+        TestUtils.assertAllocationFree(() -> {
+            for (int i = 0; i < 10_000; i++)
+                builder.accept(i);
+        }, 10_000);
+    }
+
+    @Test
+    void testAcceptAll() {
+        var builder = new ConcurrentDoubleStreamBuilder(4);
+        double[] values = ThreadLocalRandom.current().doubles(100).toArray();
+        builder.accept(-1);
+        builder.acceptAll(values, 1, 2);
+        builder.acceptAll(values, 3, 50);
+        builder.accept(-2);
+        builder.acceptAll(values, 53, 0);
+        builder.acceptAll(values);
+        double[] expected = DoubleStream.concat(
+                DoubleStream.concat(DoubleStream.of(-1), Arrays.stream(values, 1, 53)),
+                DoubleStream.concat(DoubleStream.of(-2), Arrays.stream(values))).toArray();
+        assertArrayEquals(expected, builder.build().toArray());
+        assertThrows(IllegalStateException.class, () -> builder.acceptAll(values));
+        assertThrows(IndexOutOfBoundsException.class,
+                () -> new ConcurrentDoubleStreamBuilder().acceptAll(values, 90, 20));
+    }
+
+    @Test
+    void testToArray() {
+        var builder = new ConcurrentDoubleStreamBuilder(3);
+        double[] values = ThreadLocalRandom.current().doubles(100).toArray();
+        Arrays.stream(values).forEach(builder);
+        assertArrayEquals(values, builder.toArray());
+        assertThrows(IllegalStateException.class, builder::toArray);
+        assertArrayEquals(new double[0], new ConcurrentDoubleStreamBuilder().toArray());
+    }
+
+    @Test
+    void testCopyInto() {
+        var builder = new ConcurrentDoubleStreamBuilder(3);
+        double[] values = ThreadLocalRandom.current().doubles(100).toArray();
+        Arrays.stream(values).forEach(builder);
+        double[] dst = new double[102];
+        assertEquals(100, builder.copyInto(dst, 1));
+        assertArrayEquals(values, Arrays.copyOfRange(dst, 1, 101));
+        assertEquals(0, dst[101]);
+        assertThrows(IllegalStateException.class, () -> builder.copyInto(dst, 0));
+
+        var smallBuilder = new ConcurrentDoubleStreamBuilder();
+        Arrays.stream(values, 0, 10).forEach(smallBuilder);
+        assertThrows(IndexOutOfBoundsException.class, () -> smallBuilder.copyInto(dst, 95));
+    }
+
+    @Test
+    void testSequence() {
+        var builder = new ConcurrentDoubleStreamBuilder(3);
+        double[] values = ThreadLocalRandom.current().doubles(1000).toArray();
+        builder.acceptAll(values, 0, 500);
+        Arrays.stream(values, 500, 1000).forEach(builder);
+        var sequence = builder.buildSequence();
+        assertEquals(1000, sequence.size());
+        for (int i = 0; i < 1000; i++)
+            assertEquals(values[i], sequence.get(i));
+        assertArrayEquals(Arrays.copyOfRange(values, 10, 600), sequence.stream(10, 600).toArray());
+        assertArrayEquals(values, sequence.stream().toArray());
+        assertThrows(IndexOutOfBoundsException.class, () -> sequence.get(1000));
+        assertThrows(IndexOutOfBoundsException.class, () -> sequence.stream(-1, 4));
+    }
+
+    @Test
+    void testSequenceIteration() {
+        var builder = new ConcurrentDoubleStreamBuilder(3);
+        double[] values = ThreadLocalRandom.current().doubles(100).toArray();
+        Arrays.stream(values).forEach(builder);
+        var sequence = builder.buildSequence();
+        for (int run = 0; run < 2; run++) {
+            var iterator = sequence.iterator();
+            for (int i = 0; i < 100; i++)
+                assertEquals(values[i], iterator.nextDouble());
+            assertFalse(iterator.hasNext());
+
+            var traversed = DoubleStream.builder();
+            sequence.forEach(traversed);
+            assertArrayEquals(values, traversed.build().toArray());
+        }
+    }
+
+    @Test
+    void testReset() {
+        var builder = new ConcurrentDoubleStreamBuilder(3);
+        double[] values = ThreadLocalRandom.current().doubles(100).toArray();
+        builder.acceptAll(values);
+        assertEquals(100, builder.build().count());
+        builder.reset();
+        Arrays.stream(values, 0, 50).forEach(builder);
+        assertArrayEquals(Arrays.copyOf(values, 50), builder.build().toArray());
+    }
+
+    @Test
+    void testBuildSorted() {
+        var builder = new ConcurrentDoubleStreamBuilder(3);
+        double[] values = { 2, Double.NaN, -0.0, 0.0, Double.NEGATIVE_INFINITY, -1 };
+        builder.acceptAll(values);
+        assertArrayEquals(Arrays.stream(values).sorted().toArray(),
+                builder.buildSorted().toArray());
+    }
+
+    @Test
+    void testStatistics() {
+        var builder = new ConcurrentDoubleStreamBuilder(
+                BuilderOptions.defaults().withInitialCapacity(3).withStatistics(true));
+        double[] values = ThreadLocalRandom.current().doubles(100).toArray();
+        builder.acceptAll(values, 0, 60);
+        Arrays.stream(values, 60, 100).forEach(builder);
+        assertThrows(IllegalStateException.class, builder::summaryStatistics);
+
+        DoubleSummaryStatistics expected = Arrays.stream(values).summaryStatistics();
+        assertEquals(100, builder.build().count());
+        DoubleSummaryStatistics statistics = builder.summaryStatistics();
+        assertEquals(expected.getCount(), statistics.getCount());
+        assertEquals(expected.getSum(), statistics.getSum(), 1e-9);
+        assertEquals(expected.getMin(), statistics.getMin());
+        assertEquals(expected.getMax(), statistics.getMax());
+
+        builder.reset();
+        builder.accept(-1);
+        builder.build();
+        assertEquals(1, builder.summaryStatistics().getCount());
+        assertEquals(-1, builder.summaryStatistics().getMax());
+    }
+
+    @Test
+    void testStatisticsDisabled() {
+        var builder = new ConcurrentDoubleStreamBuilder();
+        builder.build();
+        assertThrows(IllegalStateException.class, builder::summaryStatistics);
+    }
+
+    @Test
+    void testDistinctNotSupported() {
+        var options = BuilderOptions.defaults().withDistinct(true);
+        assertThrows(IllegalArgumentException.class,
+                () -> new ConcurrentDoubleStreamBuilder(options));
+    }
+
+    @Test
+    void testStreaming() {
+        var builder = new ConcurrentDoubleStreamBuilder(
+                BuilderOptions.defaults().withInitialCapacity(2).withStreaming(true));
+        var consumed = DoubleStream.builder();
+        assertFalse(builder.poll(consumed));
+        builder.accept(0);
+        assertTrue(builder.poll(consumed));
+        for (int i = 1; i < 50; i++)
+            builder.accept(i);
+        builder.acceptAll(DoubleStream.iterate(50, i -> i + 1).limit(50).toArray());
+        assertEquals(99, builder.drain(consumed));
+        assertFalse(builder.poll(consumed));
+        assertArrayEquals(builder.build().toArray(), consumed.build().toArray());
+    }
+
+    @Test
+    void testRotate() {
+        var builder = new ConcurrentDoubleStreamBuilder(
+                BuilderOptions.defaults().withInitialCapacity(2).withRotation(true));
+        for (int i = 0; i < 50; i++)
+            builder.accept(i);
+        assertEquals(50, builder.rotate().count());
+        builder.acceptAll(DoubleStream.iterate(50, i -> i + 1).limit(50).toArray());
+        assertArrayEquals(DoubleStream.iterate(50, i -> i + 1).limit(50).toArray(),
+                builder.rotate().toArray());
+        assertEquals(0, builder.build().count());
+    }
+
+    @Test
+    void testAcceptAllWithContention() throws InterruptedException {
+        var builder = new ConcurrentDoubleStreamBuilder(1);
+        double[] values = new double[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10 };
+        int runs = TestUtils.withContention(() -> builder.acceptAll(values));
+        assertEquals(runs * 55.0, builder.build().sum());
+    }
+
+    @Test
+    void testChunkedAcceptsWithContention() throws InterruptedException {
+        var builder = new ConcurrentDoubleStreamBuilder(
+                BuilderOptions.defaults().withChunkSize(64));
+        int expectedCount = TestUtils.withContention(() -> builder.add(1));
+        double[] elements = builder.build().toArray();
+        assertEquals(expectedCount, elements.length);
+        for (int i = 0; i < expectedCount; i++)
+            assertEquals(1, elements[i]);
+    }
 }
@@ -2,13 +2,34 @@ package me.hugmanrique.riviere;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Queue;
+import java.util.Spliterator;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 public class ConcurrentIntStreamBuilderTests {
 
@@ -67,4 +88,756 @@ public class ConcurrentIntStreamBuilderTests {
         int[] elements = builder.build().toArray();
         assertArrayEquals(IntStream.range(1, 100).toArray(), elements);
     }
+
+    @Test
+    void testParallelBuild() {
+        var builder = new ConcurrentIntStreamBuilder();
+        IntStream.range(0, 10_000).forEach(builder);
+        int[] elements = builder.build().parallel().toArray();
+        assertArrayEquals(IntStream.range(0, 10_000).toArray(), elements);
+    }
+
+    @Test
+    void testSplits() {
+        var builder = new ConcurrentIntStreamBuilder(3);
+        IntStream.range(0, 1000).forEach(builder);
+        assertEquals(1000, TestUtils.assertExactSplits(builder.build().spliterator()));
+    }
+
+    @Test
+    void testBalancedSplits() {
+        // Capped capacities: nodes are at most 64 elements long
+        var policies = List.of(GrowthPolicy.geometric(64), GrowthPolicy.fixed(16));
+        for (GrowthPolicy policy : policies) {
+            var builder = new ConcurrentIntStreamBuilder(
+                    BuilderOptions.defaults().withGrowthPolicy(policy));
+            IntStream.range(0, 100_000).forEach(builder);
+            Spliterator.OfInt spliterator = builder.build().spliterator();
+            Spliterator.OfInt prefix = spliterator.trySplit();
+            // Split at the node boundary closest to the middle
+            assertTrue(Math.abs(prefix.estimateSize() - 50_000) <= 32);
+            assertEquals(100_000, prefix.estimateSize() + spliterator.estimateSize());
+            assertTrue(splitDepth(spliterator) <= 20);
+        }
+    }
+
+    private static int splitDepth(final Spliterator<?> spliterator) {
+        Spliterator<?> prefix = spliterator.trySplit();
+        if (prefix == null)
+            return 0;
+        return 1 + Math.max(splitDepth(prefix), splitDepth(spliterator));
+    }
+
+    @Test
+    void testForEachRemaining() {
+        var builder = new ConcurrentIntStreamBuilder(3);
+        IntStream.range(0, 100).forEach(builder);
+        var spliterator = builder.build().spliterator();
+        var prefix = spliterator.trySplit();
+        var traversed = IntStream.builder();
+        for (int i = 0; i < 5; i++)
+            assertTrue(prefix.tryAdvance(traversed));
+        prefix.forEachRemaining(traversed);
+        spliterator.forEachRemaining(traversed);
+        assertFalse(spliterator.tryAdvance(traversed));
+        assertArrayEquals(IntStream.range(0, 100).toArray(), traversed.build().toArray());
+    }
+
+    @Test
+    void testAcceptsWithoutAllocation() {
+        // Both the warm up and measured runs fit in the head node
+        var builder = new ConcurrentIntStreamBuilder(1 << 15);
+        TestUtils.assertAllocationFree(() -> {
+            for (int i = 0; i < 10_000; i++)
+                builder.accept(i);
+        }, 10_000);
+    }
+
+    @Test
+    void testAcceptAll() {
+        var builder = new ConcurrentIntStreamBuilder(4);
+        int[] values = IntStream.range(0, 100).toArray();
+        builder.accept(-1);
+        builder.acceptAll(values, 1, 2);
+        builder.acceptAll(values, 3, 50);
+        builder.accept(-2);
+        builder.acceptAll(values, 53, 0);
+        builder.acceptAll(values);
+        int[] expected = IntStream.concat(
+                IntStream.concat(IntStream.of(-1), IntStream.range(1, 53)),
+                IntStream.concat(IntStream.of(-2), IntStream.range(0, 100))).toArray();
+        assertArrayEquals(expected, builder.build().toArray());
+        assertThrows(IllegalStateException.class, () -> builder.acceptAll(values));
+        assertThrows(IndexOutOfBoundsException.class,
+                () -> new ConcurrentIntStreamBuilder().acceptAll(values, 90, 20));
+    }
+
+    @Test
+    void testToArray() {
+        var builder = new ConcurrentIntStreamBuilder(3);
+        IntStream.range(0, 100).forEach(builder);
+        assertArrayEquals(IntStream.range(0, 100).toArray(), builder.toArray());
+        assertThrows(IllegalStateException.class, builder::toArray);
+        assertArrayEquals(new int[0], new ConcurrentIntStreamBuilder().toArray());
+    }
+
+    @Test
+    void testCopyInto() {
+        var builder = new ConcurrentIntStreamBuilder(3);
+        IntStream.range(0, 100).forEach(builder);
+        int[] dst = new int[102];
+        assertEquals(100, builder.copyInto(dst, 1));
+        assertArrayEquals(IntStream.range(0, 100).toArray(), Arrays.copyOfRange(dst, 1, 101));
+        assertEquals(0, dst[101]);
+        assertThrows(IllegalStateException.class, () -> builder.copyInto(dst, 0));
+
+        var smallBuilder = new ConcurrentIntStreamBuilder();
+        IntStream.range(0, 10).forEach(smallBuilder);
+        assertThrows(IndexOutOfBoundsException.class, () -> smallBuilder.copyInto(dst, 95));
+    }
+
+    @Test
+    void testSequence() {
+        var builder = new ConcurrentIntStreamBuilder(3);
+        IntStream.range(0, 100).forEach(builder);
+        var sequence = builder.buildSequence();
+        assertThrows(IllegalStateException.class, builder::build);
+        assertEquals(100, sequence.size());
+        for (int i = 0; i < 100; i++)
+            assertEquals(i, sequence.get(i));
+        assertArrayEquals(IntStream.range(10, 60).toArray(), sequence.stream(10, 60).toArray());
+        assertArrayEquals(IntStream.range(0, 100).toArray(), sequence.stream().toArray());
+        assertEquals(50, sequence.spliterator(10, 60).estimateSize());
+        assertEquals(0, sequence.stream(100, 100).count());
+        assertEquals(50, TestUtils.assertExactSplits(sequence.spliterator(10, 60)));
+
+        assertThrows(IndexOutOfBoundsException.class, () -> sequence.get(-1));
+        assertThrows(IndexOutOfBoundsException.class, () -> sequence.get(100));
+        assertThrows(IndexOutOfBoundsException.class, () -> sequence.stream(5, 4));
+        assertThrows(IndexOutOfBoundsException.class, () -> sequence.stream(0, 101));
+    }
+
+    @Test
+    void testSequenceIteration() {
+        var builder = new ConcurrentIntStreamBuilder(3);
+        IntStream.range(0, 100).forEach(builder);
+        var sequence = builder.buildSequence();
+        for (int run = 0; run < 2; run++) {
+            var iterator = sequence.iterator();
+            for (int i = 0; i < 100; i++)
+                assertEquals(i, iterator.nextInt());
+            assertFalse(iterator.hasNext());
+
+            var traversed = IntStream.builder();
+            sequence.forEach(traversed);
+            assertArrayEquals(sequence.stream().toArray(), traversed.build().toArray());
+        }
+    }
+
+    @Test
+    void testIrregularSequence() throws InterruptedException {
+        // Spilled nodes don't follow the default capacities
+        var builder = new ConcurrentIntStreamBuilder(3);
+        builder.acceptAll(IntStream.range(0, 1000).toArray());
+        IntStream.range(1000, 2000).forEach(builder);
+        var sequence = builder.buildSequence();
+        for (int i = 0; i < 2000; i++)
+            assertEquals(i, sequence.get(i));
+        assertArrayEquals(IntStream.range(2, 1500).toArray(), sequence.stream(2, 1500).toArray());
+
+        // Unfinished chunks leave compacted nodes partially filled
+        var chunkedBuilder = new ConcurrentIntStreamBuilder(
+                BuilderOptions.defaults().withInitialCapacity(8).withChunkSize(32));
+        var counter = new AtomicInteger();
+        int count = TestUtils.withContention(
+                () -> chunkedBuilder.accept(counter.getAndIncrement()), 4, 100);
+        var chunkedSequence = chunkedBuilder.buildSequence();
+        int[] elements = chunkedSequence.stream().toArray();
+        assertEquals(count, chunkedSequence.size());
+        assertEquals(count, elements.length);
+        for (int i = 0; i < count; i++)
+            assertEquals(elements[i], chunkedSequence.get(i));
+    }
+
+    @Test
+    void testGrowthPolicies() {
+        var policies = List.of(GrowthPolicy.geometric(), GrowthPolicy.geometric(20),
+                GrowthPolicy.fixed(7), GrowthPolicy.hinted(1000), GrowthPolicy.hinted(300));
+        for (GrowthPolicy policy : policies) {
+            var builder = new ConcurrentIntStreamBuilder(
+                    BuilderOptions.defaults().withInitialCapacity(3).withGrowthPolicy(policy));
+            IntStream.range(0, 500).forEach(builder);
+            builder.acceptAll(IntStream.range(500, 1000).toArray());
+            var sequence = builder.buildSequence();
+            assertEquals(1000, sequence.size());
+            for (int i = 0; i < 1000; i++)
+                assertEquals(i, sequence.get(i));
+            assertArrayEquals(IntStream.range(0, 1000).toArray(), sequence.stream().toArray());
+        }
+    }
+
+    @Test
+    void testReset() {
+        var builder = new ConcurrentIntStreamBuilder(3);
+        assertThrows(IllegalStateException.class, builder::reset);
+        IntStream.range(0, 100).forEach(builder);
+        assertArrayEquals(IntStream.range(0, 100).toArray(), builder.build().toArray());
+
+        builder.reset();
+        assertThrows(IllegalStateException.class, builder::reset);
+        IntStream.range(100, 150).forEach(builder);
+        builder.acceptAll(IntStream.range(150, 400).toArray());
+        assertArrayEquals(IntStream.range(100, 400).toArray(), builder.toArray());
+
+        builder.reset();
+        assertEquals(0, builder.build().count());
+    }
+
+    @Test
+    void testResetWithoutAllocation() {
+        var builder = new ConcurrentIntStreamBuilder(3);
+        // Only the built stream is allocated once nodes are recycled
+        TestUtils.assertAllocationFree(() -> {
+            for (int i = 0; i < 10_000; i++)
+                builder.accept(i);
+            builder.build();
+            builder.reset();
+        }, 10_000);
+    }
+
+    @Test
+    void testAcceptAllResetWithoutAllocation() {
+        var builder = new ConcurrentIntStreamBuilder(3);
+        int[] values = IntStream.range(0, 10_000).toArray();
+        // Bulk additions spill into the recycled nodes
+        TestUtils.assertAllocationFree(() -> {
+            for (int i = 0; i < 100; i++)
+                builder.acceptAll(values, i * 100, 100);
+            builder.build();
+            builder.reset();
+        }, 10_000);
+    }
+
+    @Test
+    void testChunkedResetWithContention() throws InterruptedException {
+        var builder = new ConcurrentIntStreamBuilder(
+                BuilderOptions.defaults().withInitialCapacity(8).withChunkSize(32));
+        for (int run = 0; run < 3; run++) {
+            int expectedCount = TestUtils.withContention(() -> builder.add(1));
+            assertEquals(expectedCount, builder.build().sum());
+            builder.reset();
+        }
+    }
+
+    @Test
+    void testChunkedBuiltStateChecks() throws Exception {
+        var builder = new ConcurrentIntStreamBuilder(
+                BuilderOptions.defaults().withChunkSize(4));
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            // Both threads keep unused slots in their chunks
+            executor.submit(() -> builder.accept(100)).get();
+            builder.accept(1);
+            builder.accept(2);
+            var sequence = builder.buildSequence();
+            assertArrayEquals(new int[] { 100, 1, 2 }, sequence.stream().toArray());
+
+            Future<?> late = executor.submit(() -> builder.accept(-7));
+            var exception = assertThrows(ExecutionException.class, late::get);
+            assertTrue(exception.getCause() instanceof IllegalStateException);
+            assertThrows(IllegalStateException.class, () -> builder.accept(3));
+            assertThrows(IllegalStateException.class, () -> builder.acceptAll(new int[] { 3 }));
+            assertArrayEquals(new int[] { 100, 1, 2 }, sequence.stream().toArray());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void testChunkedOrdering() {
+        var builder = new ConcurrentIntStreamBuilder(
+                BuilderOptions.defaults().withInitialCapacity(8).withChunkSize(4));
+        builder.accept(0);
+        builder.acceptAll(new int[] { 1, 2 });
+        builder.accept(3);
+        builder.acceptAll(IntStream.range(4, 100).toArray());
+        builder.accept(100);
+
+        // Elements added by the same thread remain in order
+        assertArrayEquals(IntStream.rangeClosed(0, 100).toArray(), builder.build().toArray());
+    }
+
+    @Test
+    void testStreaming() {
+        var builder = new ConcurrentIntStreamBuilder(
+                BuilderOptions.defaults().withInitialCapacity(2).withStreaming(true));
+        var consumed = IntStream.builder();
+        assertFalse(builder.poll(consumed));
+        builder.accept(0);
+        assertTrue(builder.poll(consumed));
+        assertFalse(builder.poll(consumed));
+        IntStream.range(1, 10).forEach(builder);
+        builder.acceptAll(IntStream.range(10, 100).toArray());
+        assertEquals(99, builder.drain(consumed));
+        assertFalse(builder.poll(consumed));
+        assertArrayEquals(IntStream.range(0, 100).toArray(), consumed.build().toArray());
+
+        // Consumed elements are still built
+        assertArrayEquals(IntStream.range(0, 100).toArray(), builder.toArray());
+        assertFalse(builder.poll(consumed));
+    }
+
+    @Test
+    void testStreamingTake() throws InterruptedException {
+        var builder = new ConcurrentIntStreamBuilder(
+                BuilderOptions.defaults().withInitialCapacity(1).withStreaming(true));
+        var sum = new AtomicLong();
+        var consumer = new Thread(() -> {
+            try {
+                while (builder.take(sum::addAndGet)) {
+                    // Consume until built
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        consumer.start();
+        int runs = TestUtils.withContention(() -> builder.accept(1));
+        builder.acceptAll(IntStream.rangeClosed(1, 10).toArray());
+        assertEquals(runs + 55L, builder.build().asLongStream().sum());
+        consumer.join();
+        assertEquals(runs + 55L, sum.get());
+    }
+
+    @Test
+    void testStreamingTakeInterrupted() {
+        var builder = new ConcurrentIntStreamBuilder(
+                BuilderOptions.defaults().withStreaming(true));
+        Thread.currentThread().interrupt();
+        assertThrows(InterruptedException.class, () -> builder.take(value -> {}));
+    }
+
+    @Test
+    void testNotStreaming() {
+        var builder = new ConcurrentIntStreamBuilder();
+        builder.accept(1);
+        assertThrows(IllegalStateException.class, () -> builder.poll(value -> {}));
+        assertThrows(IllegalStateException.class, () -> builder.drain(value -> {}));
+    }
+
+    @Test
+    void testRotate() {
+        var builder = new ConcurrentIntStreamBuilder(
+                BuilderOptions.defaults().withInitialCapacity(2).withRotation(true));
+        assertEquals(0, builder.rotate().count());
+        IntStream.range(0, 100).forEach(builder);
+        assertArrayEquals(IntStream.range(0, 100).toArray(), builder.rotate().toArray());
+        assertEquals(0, builder.rotate().count());
+
+        builder.accept(100);
+        builder.acceptAll(IntStream.range(101, 200).toArray());
+        var rotated = builder.rotate();
+        IntStream.range(200, 300).forEach(builder);
+        assertArrayEquals(IntStream.range(100, 200).toArray(), rotated.parallel().toArray());
+        assertArrayEquals(IntStream.range(200, 300).toArray(), builder.toArray());
+        assertThrows(IllegalStateException.class, builder::rotate);
+
+        assertThrows(IllegalStateException.class, () -> new ConcurrentIntStreamBuilder().rotate());
+    }
+
+    @Test
+    void testRotateWithThreadChurn() throws InterruptedException {
+        var builder = new ConcurrentIntStreamBuilder(
+                BuilderOptions.defaults().withInitialCapacity(1).withRotation(true));
+        long sum = 0;
+        for (int round = 0; round < 100; round++) {
+            var threads = new Thread[4];
+            for (int i = 0; i < threads.length; i++) {
+                threads[i] = new Thread(() -> IntStream.range(0, 100).forEach(builder));
+                threads[i].start();
+            }
+            sum += builder.rotate().asLongStream().sum();
+            for (Thread thread : threads)
+                thread.join();
+        }
+        sum += builder.build().asLongStream().sum();
+        assertEquals(100L * 4 * 4950, sum);
+    }
+
+    @Test
+    void testRotateWithContention() throws InterruptedException {
+        var builder = new ConcurrentIntStreamBuilder(
+                BuilderOptions.defaults().withInitialCapacity(1).withRotation(true));
+        var threadIndices = new AtomicInteger();
+        var threadCounts = ThreadLocal.withInitial(
+                () -> new int[] { threadIndices.getAndIncrement(), 0 });
+        var rotated = IntStream.builder();
+        var done = new AtomicBoolean();
+        var rotator = new Thread(() -> {
+            while (!done.get())
+                builder.rotate().forEach(rotated);
+        });
+        rotator.start();
+        int expectedCount = TestUtils.withContention(() -> {
+            int[] state = threadCounts.get();
+            builder.accept(state[0] * 1000 + state[1]++);
+        });
+        done.set(true);
+        rotator.join();
+        builder.build().forEach(rotated);
+        int[] elements = rotated.build().toArray();
+        assertEquals(expectedCount, elements.length);
+
+        // Elements added by the same thread remain in order
+        int[] nextCounts = new int[threadIndices.get()];
+        for (int element : elements)
+            assertEquals(nextCounts[element / 1000]++, element % 1000);
+    }
+
+    @Test
+    void testElementLimit() throws InterruptedException {
+        var builder = new ConcurrentIntStreamBuilder(BuilderOptions.defaults()
+                .withInitialCapacity(4).withElementLimit(10).withRotation(true));
+        IntStream.range(0, 8).forEach(builder);
+        assertThrows(IllegalStateException.class, () -> builder.acceptAll(new int[3]));
+        assertTrue(builder.tryAccept(8));
+        assertTrue(builder.tryAccept(9, 1, TimeUnit.MILLISECONDS));
+        assertFalse(builder.tryAccept(10));
+        assertFalse(builder.tryAccept(10, 1, TimeUnit.MILLISECONDS));
+        assertThrows(IllegalStateException.class, () -> builder.accept(10));
+        assertArrayEquals(IntStream.range(0, 10).toArray(), builder.rotate().toArray());
+
+        builder.acceptAll(IntStream.range(10, 20).toArray());
+        var rotator = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            builder.rotate();
+        });
+        rotator.start();
+        assertTrue(builder.tryAccept(20, 10, TimeUnit.SECONDS));
+        rotator.join();
+        assertArrayEquals(new int[] { 20 }, builder.build().toArray());
+
+        builder.reset();
+        builder.acceptAll(IntStream.range(0, 10).toArray());
+        assertEquals(45, builder.build().sum());
+    }
+
+    @Test
+    void testLink() {
+        var left = new ConcurrentIntStreamBuilder(4);
+        IntStream.range(0, 10).forEach(left);
+        // Leave holes in the nodes of the linked builder
+        var right = new ConcurrentIntStreamBuilder(
+                BuilderOptions.defaults().withInitialCapacity(4).withChunkSize(8));
+        IntStream.range(10, 100).forEach(right);
+        left.link(right);
+        IntStream.range(100, 200).forEach(left);
+        left.link(new ConcurrentIntStreamBuilder());
+
+        assertThrows(IllegalStateException.class, () -> right.accept(200));
+        assertThrows(IllegalStateException.class, () -> left.link(right));
+        var sequence = left.buildSequence();
+        assertArrayEquals(IntStream.range(0, 200).toArray(), sequence.stream().toArray());
+        assertEquals(200, TestUtils.assertExactSplits(sequence.stream().spliterator()));
+        for (int i = 0; i < 200; i++)
+            assertEquals(i, sequence.get(i));
+    }
+
+    @Test
+    void testElementLimitAfterBuild() {
+        var builder = new ConcurrentIntStreamBuilder(
+                BuilderOptions.defaults().withElementLimit(2));
+        builder.accept(0);
+        builder.accept(1);
+        builder.build();
+        // Fails without waiting for a permit
+        assertThrows(IllegalStateException.class,
+                () -> builder.tryAccept(2, 1, TimeUnit.MINUTES));
+        assertThrows(IllegalStateException.class, () -> builder.tryAccept(2));
+        assertThrows(IllegalStateException.class, () -> builder.accept(2));
+    }
+
+    @Test
+    void testElementLimitWithContention() throws InterruptedException {
+        var builder = new ConcurrentIntStreamBuilder(
+                BuilderOptions.defaults().withElementLimit(50).withRotation(true));
+        var accepted = new AtomicInteger();
+        var rotated = new AtomicLong();
+        var done = new AtomicBoolean();
+        var rotator = new Thread(() -> {
+            while (!done.get())
+                rotated.addAndGet(builder.rotate().count());
+        });
+        rotator.start();
+        TestUtils.withContention(() -> {
+            try {
+                if (builder.tryAccept(1, 10, TimeUnit.SECONDS))
+                    accepted.incrementAndGet();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        done.set(true);
+        rotator.join();
+        rotated.addAndGet(builder.build().count());
+        assertEquals(accepted.get(), rotated.get());
+        assertTrue(accepted.get() > 0);
+    }
+
+    @Test
+    void testMetrics() {
+        var builder = new ConcurrentIntStreamBuilder(
+                BuilderOptions.defaults().withInitialCapacity(4).withMetrics(true));
+        for (int i = 0; i < 10; i++)
+            builder.accept(i);
+        builder.acceptAll(new int[30]);
+
+        BuilderMetrics metrics = builder.metrics();
+        assertEquals(11, metrics.getEnqueues());
+        assertTrue(metrics.getEnqueueNanos() >= 0);
+        assertEquals(0, metrics.getFailedAppends());
+        // The 5th element overshoots the head node. The array fills
+        // the 2 free slots of the second node, and is then spilled
+        // into a node holding the 28 remaining elements.
+        assertEquals(1, metrics.getOvershoot());
+        assertEquals(3, metrics.getAllocatedNodes());
+        assertEquals((4 + 8 + 28) * Integer.BYTES, metrics.getAllocatedBytes());
+        assertEquals(40, builder.build().count());
+    }
+
+    @Test
+    void testMetricsWithContention() throws InterruptedException {
+        var builder = new ConcurrentIntStreamBuilder(
+                BuilderOptions.defaults().withInitialCapacity(1).withMetrics(true));
+        int runs = TestUtils.withContention(() -> builder.accept(1));
+        assertEquals(runs, builder.build().count());
+
+        BuilderMetrics metrics = builder.metrics();
+        assertEquals(runs, metrics.getEnqueues());
+        // Every appended node (but the head) follows an overshoot
+        long appended = metrics.getAllocatedNodes() - metrics.getFailedAppends() - 1;
+        assertTrue(appended > 0);
+        assertTrue(metrics.getOvershoot() >= appended);
+    }
+
+    @Test
+    void testMetricsEvents(@TempDir final Path directory) throws IOException {
+        List<RecordedEvent> events;
+        try (var recording = new Recording()) {
+            recording.enable("me.hugmanrique.riviere.NodeAllocation");
+            recording.enable("me.hugmanrique.riviere.BuilderMetrics");
+            recording.start();
+            var builder = new ConcurrentIntStreamBuilder(
+                    BuilderOptions.defaults().withInitialCapacity(4).withMetrics(true));
+            for (int i = 0; i < 10; i++)
+                builder.accept(i);
+            builder.build();
+            recording.stop();
+            Path file = directory.resolve("metrics.jfr");
+            recording.dump(file);
+            events = RecordingFile.readAllEvents(file);
+        }
+        var allocations = events.stream()
+                .filter(event -> event.getEventType().getName().endsWith("NodeAllocation"))
+                .collect(Collectors.toList());
+        assertEquals(2, allocations.size());
+        assertEquals(4 * Integer.BYTES, allocations.get(0).getLong("bytes"));
+        var snapshots = events.stream()
+                .filter(event -> event.getEventType().getName().endsWith("BuilderMetrics"))
+                .collect(Collectors.toList());
+        assertEquals(1, snapshots.size());
+        assertEquals(10, snapshots.get(0).getLong("enqueues"));
+        assertEquals(2, snapshots.get(0).getLong("allocatedNodes"));
+    }
+
+    @Test
+    void testMetricsDisabled() {
+        var builder = new ConcurrentIntStreamBuilder();
+        builder.accept(1);
+        assertThrows(IllegalStateException.class, builder::metrics);
+    }
+
+    @Test
+    void testContentionStrategies() throws InterruptedException {
+        for (ContentionStrategy strategy : ContentionStrategy.values()) {
+            var builder = new ConcurrentIntStreamBuilder(BuilderOptions.defaults()
+                    .withInitialCapacity(1)
+                    .withContentionStrategy(strategy)
+                    .withMetrics(true));
+            int runs = TestUtils.withContention(() -> builder.accept(1));
+            int[] values = IntStream.rangeClosed(1, 10).toArray();
+            runs += TestUtils.withContention(() -> builder.acceptAll(values)) * values.length;
+            assertEquals(runs, builder.build().count());
+            if (strategy != ContentionStrategy.COMPETE) {
+                // Only the elected thread allocates the next node
+                assertEquals(0, builder.metrics().getFailedAppends());
+            }
+        }
+    }
+
+    @Test
+    void testPreallocation() {
+        var builder = new ConcurrentIntStreamBuilder(BuilderOptions.defaults()
+                .withInitialCapacity(4)
+                .withPreallocation(0.5)
+                .withMetrics(true));
+        builder.accept(0);
+        builder.accept(1);
+        assertEquals(1, builder.metrics().getAllocatedNodes());
+        // The third element crosses the threshold of the head node
+        builder.accept(2);
+        assertEquals(2, builder.metrics().getAllocatedNodes());
+        for (int i = 3; i < 8; i++)
+            builder.accept(i);
+        // The prepared node is appended, and has 4 elements
+        assertEquals(2, builder.metrics().getAllocatedNodes());
+        builder.accept(8);
+        assertEquals(3, builder.metrics().getAllocatedNodes());
+        builder.acceptAll(new int[] { 9, 10, 11 });
+        assertArrayEquals(IntStream.range(0, 12).toArray(), builder.toArray());
+    }
+
+    @Test
+    void testPreallocationOnExecutor() {
+        Queue<Runnable> tasks = new ArrayDeque<>();
+        var builder = new ConcurrentIntStreamBuilder(BuilderOptions.defaults()
+                .withInitialCapacity(4)
+                .withPreallocation(0.25, tasks::add)
+                .withMetrics(true));
+        builder.accept(0);
+        assertTrue(tasks.isEmpty());
+        builder.accept(1);
+        assertEquals(1, tasks.size());
+        assertEquals(1, builder.metrics().getAllocatedNodes());
+        tasks.remove().run();
+        assertEquals(2, builder.metrics().getAllocatedNodes());
+
+        // The next node is allocated by a thread if the task is late
+        for (int i = 2; i < 14; i++)
+            builder.accept(i);
+        assertEquals(3, builder.metrics().getAllocatedNodes());
+        assertEquals(1, tasks.size());
+        tasks.remove().run();
+        assertEquals(3, builder.metrics().getAllocatedNodes());
+        builder.accept(14);
+        assertEquals(IntStream.range(0, 15).sum(), builder.build().sum());
+    }
+
+    @Test
+    void testPreallocationWithContention() throws InterruptedException {
+        var builder = new ConcurrentIntStreamBuilder(BuilderOptions.defaults()
+                .withInitialCapacity(1)
+                .withPreallocation(0.5, ForkJoinPool.commonPool()));
+        int runs = TestUtils.withContention(() -> builder.accept(1));
+        int[] values = IntStream.rangeClosed(1, 10).toArray();
+        runs += TestUtils.withContention(() -> builder.acceptAll(values)) * values.length;
+        assertEquals(runs, builder.build().count());
+    }
+
+    @Test
+    void testDistinct() {
+        var builder = new ConcurrentIntStreamBuilder(
+                BuilderOptions.defaults().withInitialCapacity(2).withDistinct(true));
+        int[] values = ThreadLocalRandom.current().ints(10_000, -2_000, 2_000).toArray();
+        builder.accept(0);
+        builder.accept(Integer.MIN_VALUE);
+        builder.accept(0);
+        builder.acceptAll(values, 0, 5_000);
+        Arrays.stream(values, 5_000, 10_000).forEach(builder);
+        builder.accept(Integer.MIN_VALUE);
+
+        int[] expected = IntStream.concat(IntStream.of(0, Integer.MIN_VALUE),
+                Arrays.stream(values)).distinct().toArray();
+        assertArrayEquals(expected, builder.build().toArray());
+
+        builder.reset();
+        builder.acceptAll(new int[] { 7, 0, 7 });
+        assertArrayEquals(new int[] { 7, 0 }, builder.build().toArray());
+    }
+
+    @Test
+    void testDistinctWithContention() throws InterruptedException {
+        var builder = new ConcurrentIntStreamBuilder(
+                BuilderOptions.defaults().withDistinct(true));
+        var counter = new AtomicInteger();
+        TestUtils.withContention(() -> builder.accept(counter.getAndIncrement() % 5_000), 8, 2_000);
+        assertArrayEquals(IntStream.range(0, 5_000).toArray(), builder.build().sorted().toArray());
+    }
+
+    @Test
+    void testDistinctWithElementLimit() {
+        var builder = new ConcurrentIntStreamBuilder(
+                BuilderOptions.defaults().withElementLimit(3).withDistinct(true));
+        builder.acceptAll(new int[] { 1, 2, 1 });
+        builder.accept(2);
+        assertTrue(builder.tryAccept(3));
+        assertFalse(builder.tryAccept(4));
+        assertArrayEquals(new int[] { 1, 2, 3 }, builder.build().toArray());
+        assertThrows(IllegalStateException.class, () -> builder.accept(1));
+    }
+
+    @Test
+    void testAcceptAllWithContention() throws InterruptedException {
+        var builder = new ConcurrentIntStreamBuilder(1);
+        int[] values = IntStream.rangeClosed(1, 10).toArray();
+        int runs = TestUtils.withContention(() -> builder.acceptAll(values));
+        assertEquals(runs * 55L, builder.build().asLongStream().sum());
+    }
+
+    @Test
+    void testChunkedAcceptsWithContention() throws InterruptedException {
+        var builder = new ConcurrentIntStreamBuilder(
+                BuilderOptions.defaults().withInitialCapacity(8).withChunkSize(32));
+        var threadIndices = new AtomicInteger();
+        var threadCounts = ThreadLocal.withInitial(
+                () -> new int[] { threadIndices.getAndIncrement(), 0 });
+        int expectedCount = TestUtils.withContention(() -> {
+            int[] state = threadCounts.get();
+            builder.add(state[0] * 1000 + state[1]++);
+        });
+        int[] elements = builder.build().toArray();
+        assertEquals(expectedCount, elements.length);
+
+        // Elements added by the same thread remain in order
+        int[] nextCounts = new int[threadIndices.get()];
+        for (int element : elements)
+            assertEquals(nextCounts[element / 1000]++, element % 1000);
+    }
+
+    @Test
+    void testInvalidOptions() {
+        assertThrows(IllegalArgumentException.class,
+                () -> BuilderOptions.defaults().withInitialCapacity(0));
+        assertThrows(IllegalArgumentException.class,
+                () -> BuilderOptions.defaults().withChunkSize(0));
+        assertThrows(IllegalArgumentException.class,
+                () -> BuilderOptions.defaults().withChunkSize(2).withStreaming(true));
+        assertThrows(IllegalArgumentException.class,
+                () -> BuilderOptions.defaults().withStreaming(true).withChunkSize(2));
+        assertThrows(IllegalArgumentException.class,
+                () -> BuilderOptions.defaults().withRotation(true).withChunkSize(2));
+        assertThrows(IllegalArgumentException.class,
+                () -> BuilderOptions.defaults().withRotation(true).withStreaming(true));
+        assertThrows(IllegalArgumentException.class,
+                () -> BuilderOptions.defaults().withRotation(true).withStatistics(true));
+        assertThrows(IllegalArgumentException.class,
+                () -> BuilderOptions.defaults().withStatistics(true).withRotation(true));
+        assertThrows(IllegalArgumentException.class,
+                () -> BuilderOptions.defaults().withElementLimit(-1));
+        assertThrows(NullPointerException.class,
+                () -> BuilderOptions.defaults().withContentionStrategy(null));
+        assertThrows(IllegalArgumentException.class,
+                () -> BuilderOptions.defaults().withPreallocation(-0.5));
+        assertThrows(IllegalArgumentException.class,
+                () -> BuilderOptions.defaults().withPreallocation(1.5));
+        assertThrows(IllegalArgumentException.class,
+                () -> BuilderOptions.defaults().withPreallocation(Double.NaN));
+        assertThrows(IllegalArgumentException.class, () -> GrowthPolicy.geometric(0));
+        assertThrows(IllegalArgumentException.class, () -> GrowthPolicy.fixed(0));
+        assertThrows(IllegalArgumentException.class, () -> GrowthPolicy.hinted(0));
+    }
 }
@@ -2,12 +2,21 @@ package me.hugmanrique.riviere;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.LongSummaryStatistics;
 import java.util.Queue;
+import java.util.Spliterator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
 import org.junit.jupiter.api.Test;
 
 public class ConcurrentLongStreamBuilderTests {
@@ -67,4 +76,301 @@ public class ConcurrentLongStreamBuilderTests {
         long[] elements = builder.build().toArray();
         assertArrayEquals(LongStream.range(1, 100).toArray(), elements);
     }
+
+    @Test
+    void testParallelBuild() {
+        var builder = new ConcurrentLongStreamBuilder();
+        LongStream.range(0, 10_000).forEach(builder);
+        long[] elements = builder.build().parallel().toArray();
+        assertArrayEquals(LongStream.range(0, 10_000).toArray(), elements);
+    }
+
+    @Test
+    void testSplits() {
+        var builder = new ConcurrentLongStreamBuilder(3);
+        LongStream.range(0, 1000).forEach(builder);
+        assertEquals(1000, TestUtils.assertExactSplits(builder.build().spliterator()));
+    }
+
+    @Test
+    void testBuildSorted() {
+        var builder = new ConcurrentLongStreamBuilder(5);
+        long[] values = ThreadLocalRandom.current().longs(10_000).toArray();
+        builder.acceptAll(values);
+        Spliterator.OfLong spliterator = builder.buildSorted().spliterator();
+        assertTrue(spliterator.hasCharacteristics(Spliterator.SORTED));
+        assertTrue(spliterator.hasCharacteristics(Spliterator.SIZED));
+        assertNull(spliterator.getComparator());
+
+        long[] sorted = StreamSupport.longStream(spliterator, true).toArray();
+        Arrays.sort(values);
+        assertArrayEquals(values, sorted);
+        assertThrows(IllegalStateException.class, builder::buildSorted);
+    }
+
+    @Test
+    void testConcat() {
+        var first = new ConcurrentLongStreamBuilder(3);
+        var second = new ConcurrentLongStreamBuilder();
+        var third = new ConcurrentLongStreamBuilder(7);
+        LongStream.range(0, 10).forEach(first);
+        LongStream.range(10, 1000).forEach(third);
+        assertArrayEquals(LongStream.range(0, 1000).toArray(),
+                ConcurrentLongStreamBuilder.concat(first, second, third).parallel().toArray());
+        assertThrows(IllegalStateException.class, first::build);
+        assertThrows(IllegalStateException.class,
+                () -> ConcurrentLongStreamBuilder.concat(new ConcurrentLongStreamBuilder(), first));
+        assertEquals(0, ConcurrentLongStreamBuilder.concat().count());
+    }
+
+    @Test
+    void testConcatSplits() {
+        var builders = new ConcurrentLongStreamBuilder[4];
+        for (int i = 0; i < builders.length; i++) {
+            builders[i] = new ConcurrentLongStreamBuilder(3);
+            // Builders of increasing sizes
+            LongStream.range(0, 10L << (3 * i)).forEach(builders[i]);
+        }
+        Spliterator.OfLong spliterator = ConcurrentLongStreamBuilder.concat(builders)
+                .spliterator();
+        assertTrue(spliterator.hasCharacteristics(Spliterator.ORDERED));
+        long size = spliterator.getExactSizeIfKnown();
+        // The first split hands off every builder but the largest one
+        Spliterator.OfLong prefix = spliterator.trySplit();
+        assertEquals(10 + 80 + 640, prefix.getExactSizeIfKnown());
+        assertEquals(size, TestUtils.assertExactSplits(prefix)
+                + TestUtils.assertExactSplits(spliterator));
+    }
+
+    @Test
+    void testForEachRemaining() {
+        var builder = new ConcurrentLongStreamBuilder(3);
+        LongStream.range(0, 100).forEach(builder);
+        var spliterator = builder.build().spliterator();
+        var prefix = spliterator.trySplit();
+        var traversed = LongStream.builder();
+        for (int i = 0; i < 5; i++)
+            assertTrue(prefix.tryAdvance(traversed));
+        prefix.forEachRemaining(traversed);
+        spliterator.forEachRemaining(traversed);
+        assertFalse(spliterator.tryAdvance(traversed));
+        assertArrayEquals(LongStream.range(0, 100).toArray(), traversed.build().toArray());
+    }
+
+    @Test
+    void testAcceptsWithoutAllocation() {
+        // Both the warm up and measured runs fit in the head node
+        var builder = new ConcurrentLongStreamBuilder(1 << 15);
+        TestUtils.assertAllocationFree(() -> {
+            for (int i = 0; i < 10_000; i++)
+                builder.accept(i);
+        }, 10_000);
+    }
+
+    @Test
+    void testAcceptAll() {
+        var builder = new ConcurrentLongStreamBuilder(4);
+        long[] values = LongStream.range(0, 100).toArray();
+        builder.accept(-1);
+        builder.acceptAll(values, 1, 2);
+        builder.acceptAll(values, 3, 50);
+        builder.accept(-2);
+        builder.acceptAll(values, 53, 0);
+        builder.acceptAll(values);
+        long[] expected = LongStream.concat(
+                LongStream.concat(LongStream.of(-1), LongStream.range(1, 53)),
+                LongStream.concat(LongStream.of(-2), LongStream.range(0, 100))).toArray();
+        assertArrayEquals(expected, builder.build().toArray());
+        assertThrows(IllegalStateException.class, () -> builder.acceptAll(values));
+        assertThrows(IndexOutOfBoundsException.class,
+                () -> new ConcurrentLongStreamBuilder().acceptAll(values, 90, 20));
+    }
+
+    @Test
+    void testToArray() {
+        var builder = new ConcurrentLongStreamBuilder(3);
+        LongStream.range(0, 100).forEach(builder);
+        assertArrayEquals(LongStream.range(0, 100).toArray(), builder.toArray());
+        assertThrows(IllegalStateException.class, builder::toArray);
+        assertArrayEquals(new long[0], new ConcurrentLongStreamBuilder().toArray());
+    }
+
+    @Test
+    void testCopyInto() {
+        var builder = new ConcurrentLongStreamBuilder(3);
+        LongStream.range(0, 100).forEach(builder);
+        long[] dst = new long[102];
+        assertEquals(100, builder.copyInto(dst, 1));
+        assertArrayEquals(LongStream.range(0, 100).toArray(), Arrays.copyOfRange(dst, 1, 101));
+        assertEquals(0, dst[101]);
+        assertThrows(IllegalStateException.class, () -> builder.copyInto(dst, 0));
+
+        var smallBuilder = new ConcurrentLongStreamBuilder();
+        LongStream.range(0, 10).forEach(smallBuilder);
+        assertThrows(IndexOutOfBoundsException.class, () -> smallBuilder.copyInto(dst, 95));
+    }
+
+    @Test
+    void testSequence() {
+        var builder = new ConcurrentLongStreamBuilder(3);
+        builder.acceptAll(LongStream.range(0, 500).toArray());
+        LongStream.range(500, 1000).forEach(builder);
+        var sequence = builder.buildSequence();
+        assertEquals(1000, sequence.size());
+        for (int i = 0; i < 1000; i++)
+            assertEquals(i, sequence.get(i));
+        assertArrayEquals(LongStream.range(10, 600).toArray(), sequence.stream(10, 600).toArray());
+        assertArrayEquals(LongStream.range(0, 1000).toArray(), sequence.stream().toArray());
+        assertThrows(IndexOutOfBoundsException.class, () -> sequence.get(1000));
+        assertThrows(IndexOutOfBoundsException.class, () -> sequence.stream(-1, 4));
+    }
+
+    @Test
+    void testSequenceIteration() {
+        var builder = new ConcurrentLongStreamBuilder(3);
+        LongStream.range(0, 100).forEach(builder);
+        var sequence = builder.buildSequence();
+        for (int run = 0; run < 2; run++) {
+            var iterator = sequence.iterator();
+            for (int i = 0; i < 100; i++)
+                assertEquals(i, iterator.nextLong());
+            assertFalse(iterator.hasNext());
+
+            var traversed = LongStream.builder();
+            sequence.forEach(traversed);
+            assertArrayEquals(sequence.stream().toArray(), traversed.build().toArray());
+        }
+    }
+
+    @Test
+    void testReset() {
+        var builder = new ConcurrentLongStreamBuilder(3);
+        LongStream.range(0, 100).forEach(builder);
+        assertEquals(100, builder.build().count());
+        builder.reset();
+        LongStream.range(100, 150).forEach(builder);
+        assertArrayEquals(LongStream.range(100, 150).toArray(), builder.build().toArray());
+    }
+
+    @Test
+    void testStreaming() {
+        var builder = new ConcurrentLongStreamBuilder(
+                BuilderOptions.defaults().withInitialCapacity(2).withStreaming(true));
+        var consumed = LongStream.builder();
+        assertFalse(builder.poll(consumed));
+        builder.accept(0);
+        assertTrue(builder.poll(consumed));
+        for (int i = 1; i < 50; i++)
+            builder.accept(i);
+        builder.acceptAll(LongStream.iterate(50, i -> i + 1).limit(50).toArray());
+        assertEquals(99, builder.drain(consumed));
+        assertFalse(builder.poll(consumed));
+        assertArrayEquals(builder.build().toArray(), consumed.build().toArray());
+    }
+
+    @Test
+    void testRotate() {
+        var builder = new ConcurrentLongStreamBuilder(
+                BuilderOptions.defaults().withInitialCapacity(2).withRotation(true));
+        for (int i = 0; i < 50; i++)
+            builder.accept(i);
+        assertEquals(50, builder.rotate().count());
+        builder.acceptAll(LongStream.iterate(50, i -> i + 1).limit(50).toArray());
+        assertArrayEquals(LongStream.iterate(50, i -> i + 1).limit(50).toArray(),
+                builder.rotate().toArray());
+        assertEquals(0, builder.build().count());
+    }
+
+    @Test
+    void testStatisticsWithContention() throws InterruptedException {
+        var builder = new ConcurrentLongStreamBuilder(
+                BuilderOptions.defaults().withStatistics(true));
+        var values = new AtomicLong();
+        int runs = TestUtils.withContention(() -> builder.accept(values.incrementAndGet()));
+        builder.build();
+        LongSummaryStatistics statistics = builder.summaryStatistics();
+        assertEquals(runs, statistics.getCount());
+        assertEquals(runs * (runs + 1L) / 2, statistics.getSum());
+        assertEquals(1, statistics.getMin());
+        assertEquals(runs, statistics.getMax());
+    }
+
+    @Test
+    void testStatisticsBuiltWhileAdding() throws InterruptedException {
+        for (int round = 0; round < 20; round++) {
+            var builder = new ConcurrentLongStreamBuilder(
+                    BuilderOptions.defaults().withStatistics(true));
+            var adders = new Thread[4];
+            for (int i = 0; i < adders.length; i++) {
+                adders[i] = new Thread(() -> {
+                    try {
+                        for (long value = 1; ; value++) {
+                            builder.accept(value);
+                            builder.acceptAll(new long[] { value, -value });
+                        }
+                    } catch (IllegalStateException e) {
+                        // Built
+                    }
+                });
+                adders[i].start();
+            }
+            Thread.sleep(5);
+            LongSummaryStatistics expected = builder.build().summaryStatistics();
+            LongSummaryStatistics statistics = builder.summaryStatistics();
+            assertEquals(expected.getCount(), statistics.getCount());
+            assertEquals(expected.getSum(), statistics.getSum());
+            assertEquals(expected.getMin(), statistics.getMin());
+            assertEquals(expected.getMax(), statistics.getMax());
+            for (Thread adder : adders)
+                adder.join();
+        }
+    }
+
+    @Test
+    void testDistinct() {
+        var builder = new ConcurrentLongStreamBuilder(BuilderOptions.defaults()
+                .withInitialCapacity(3).withDistinct(true).withStatistics(true));
+        long[] values = ThreadLocalRandom.current().longs(10_000, -2_000, 2_000).toArray();
+        builder.acceptAll(values);
+        builder.accept(Long.MIN_VALUE);
+        builder.accept(0);
+        builder.accept(Long.MIN_VALUE);
+
+        long[] expected = LongStream.concat(Arrays.stream(values),
+                LongStream.of(Long.MIN_VALUE, 0)).distinct().toArray();
+        assertArrayEquals(expected, builder.build().toArray());
+        assertEquals(expected.length, builder.summaryStatistics().getCount());
+    }
+
+    @Test
+    void testDistinctWithContention() throws InterruptedException {
+        var builder = new ConcurrentLongStreamBuilder(
+                BuilderOptions.defaults().withChunkSize(4).withDistinct(true));
+        var counter = new AtomicLong();
+        TestUtils.withContention(() -> {
+            long value = counter.getAndIncrement();
+            builder.acceptAll(new long[] { value % 3_000, (value + 1) % 3_000 });
+        }, 8, 1_000);
+        assertArrayEquals(LongStream.range(0, 3_000).toArray(),
+                builder.build().sorted().toArray());
+    }
+
+    @Test
+    void testAcceptAllWithContention() throws InterruptedException {
+        var builder = new ConcurrentLongStreamBuilder(1);
+        long[] values = LongStream.rangeClosed(1, 10).toArray();
+        int runs = TestUtils.withContention(() -> builder.acceptAll(values));
+        assertEquals(runs * 55L, builder.build().sum());
+    }
+
+    @Test
+    void testChunkedAcceptsWithContention() throws InterruptedException {
+        var builder = new ConcurrentLongStreamBuilder(
+                BuilderOptions.defaults().withChunkSize(64));
+        int expectedCount = TestUtils.withContention(() -> builder.add(1));
+        long[] elements = builder.build().toArray();
+        assertEquals(expectedCount, elements.length);
+        for (int i = 0; i < expectedCount; i++)
+            assertEquals(1, elements[i]);
+    }
 }
@@ -2,14 +2,23 @@ package me.hugmanrique.riviere;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Queue;
+import java.util.RandomAccess;
+import java.util.Spliterator;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import org.junit.jupiter.api.Test;
 
 public class ConcurrentStreamBuilderTests {
@@ -101,6 +110,286 @@ public class ConcurrentStreamBuilderTests {
         assertArrayEquals(expected, elements);
     }
 
+    @Test
+    void testParallelBuild() {
+        var builder = new ConcurrentStreamBuilder<Car>();
+        Car[] expected = IntStream.range(0, 10_000)
+                .mapToObj(value -> new Car(Integer.toString(value)))
+                .toArray(Car[]::new);
+        Arrays.stream(expected).forEach(builder);
+        Car[] elements = builder.build().parallel().toArray(Car[]::new);
+        assertArrayEquals(expected, elements);
+    }
+
+    @Test
+    void testSplits() {
+        var builder = new ConcurrentStreamBuilder<Car>(3);
+        for (int i = 0; i < 1000; i++)
+            builder.accept(i % 2 == 0 ? RED_CAR : null);
+        assertEquals(1000, TestUtils.assertExactSplits(builder.build().spliterator()));
+    }
+
+    @Test
+    void testConcat() {
+        var first = new ConcurrentStreamBuilder<String>();
+        var second = new ConcurrentStreamBuilder<String>();
+        first.accept("a");
+        first.accept(null);
+        second.accept("b");
+        assertEquals(Arrays.asList("a", null, "b"),
+                ConcurrentStreamBuilder.concat(first, second).collect(Collectors.toList()));
+    }
+
+    @Test
+    void testBuildSorted() {
+        var builder = new ConcurrentStreamBuilder<String>(3);
+        List<String> values = List.of("pear", "apple", "fig", "banana", "kiwi", "cherry", "date");
+        values.forEach(builder);
+        Spliterator<String> spliterator = builder.buildSorted().spliterator();
+        assertTrue(spliterator.hasCharacteristics(Spliterator.SORTED));
+        assertNull(spliterator.getComparator());
+        assertEquals(values.stream().sorted().collect(Collectors.toList()),
+                StreamSupport.stream(spliterator, false).collect(Collectors.toList()));
+
+        var nonComparable = new ConcurrentStreamBuilder<>();
+        nonComparable.accept(new Object());
+        nonComparable.accept(new Object());
+        assertThrows(ClassCastException.class, nonComparable::buildSorted);
+    }
+
+    @Test
+    void testBuildSortedWithComparator() {
+        var builder = new ConcurrentStreamBuilder<String>(2);
+        List<String> values = List.of("pear", "apple", "fig", "banana", "kiwi", "cherry", "date");
+        values.forEach(builder);
+        Comparator<String> comparator = Comparator.comparingInt(String::length)
+                .thenComparing(Comparator.reverseOrder());
+        Spliterator<String> spliterator = builder.buildSorted(comparator).spliterator();
+        assertTrue(spliterator.hasCharacteristics(Spliterator.SORTED));
+        assertEquals(comparator, spliterator.getComparator());
+
+        Spliterator<String> prefix = spliterator.trySplit();
+        assertEquals(comparator, prefix.getComparator());
+        List<String> sorted = new ArrayList<>();
+        prefix.forEachRemaining(sorted::add);
+        spliterator.forEachRemaining(sorted::add);
+        assertEquals(values.stream().sorted(comparator).collect(Collectors.toList()), sorted);
+    }
+
+    @Test
+    void testModesNotSupported() {
+        assertThrows(IllegalArgumentException.class, () -> new ConcurrentStreamBuilder<>(
+                BuilderOptions.defaults().withStatistics(true)));
+        assertThrows(IllegalArgumentException.class, () -> new ConcurrentStreamBuilder<>(
+                BuilderOptions.defaults().withDistinct(true)));
+    }
+
+    @Test
+    void testForEachRemaining() {
+        var builder = new ConcurrentStreamBuilder<Integer>(3);
+        IntStream.range(0, 100).boxed().forEach(builder);
+        var spliterator = builder.build().spliterator();
+        var prefix = spliterator.trySplit();
+        var traversed = Stream.<Integer>builder();
+        for (int i = 0; i < 5; i++)
+            assertTrue(prefix.tryAdvance(traversed));
+        prefix.forEachRemaining(traversed);
+        spliterator.forEachRemaining(traversed);
+        assertFalse(spliterator.tryAdvance(traversed));
+        assertArrayEquals(IntStream.range(0, 100).boxed().toArray(), traversed.build().toArray());
+    }
+
+    @Test
+    void testAcceptsWithoutAllocation() {
+        // Both the warm up and measured runs fit in the head node
+        var builder = new ConcurrentStreamBuilder<Car>(1 << 15);
+        TestUtils.assertAllocationFree(() -> {
+            for (int i = 0; i < 10_000; i++)
+                builder.accept(RED_CAR);
+        }, 10_000);
+    }
+
+    @Test
+    void testAcceptAll() {
+        var builder = new ConcurrentStreamBuilder<Car>(2);
+        Car[] values = new Car[] { RED_CAR, null, GREEN_CAR, BLUE_CAR, RED_CAR, GREEN_CAR };
+        builder.accept(BLUE_CAR);
+        builder.acceptAll(values, 1, 2);
+        builder.acceptAll(values);
+        Car[] expected = new Car[] {
+                BLUE_CAR, null, GREEN_CAR, RED_CAR, null, GREEN_CAR, BLUE_CAR, RED_CAR, GREEN_CAR
+        };
+        assertArrayEquals(expected, builder.build().toArray(Car[]::new));
+        assertThrows(IllegalStateException.class, () -> builder.acceptAll(values));
+        assertThrows(IndexOutOfBoundsException.class,
+                () -> new ConcurrentStreamBuilder<Car>().acceptAll(values, 4, 3));
+    }
+
+    @Test
+    void testToArray() {
+        var builder = new ConcurrentStreamBuilder<Integer>(3);
+        IntStream.range(0, 100).boxed().forEach(builder);
+        builder.accept(null);
+        Integer[] expected = Stream.concat(
+                IntStream.range(0, 100).boxed(), Stream.of((Integer) null)).toArray(Integer[]::new);
+        assertArrayEquals(expected, builder.toArray(Integer[]::new));
+        assertThrows(IllegalStateException.class, builder::toArray);
+
+        var objectBuilder = new ConcurrentStreamBuilder<Car>();
+        objectBuilder.accept(RED_CAR);
+        assertArrayEquals(new Object[] { RED_CAR }, objectBuilder.toArray());
+
+        var storeBuilder = new ConcurrentStreamBuilder<Object>();
+        storeBuilder.accept(RED_CAR);
+        assertThrows(ArrayStoreException.class, () -> storeBuilder.toArray(String[]::new));
+    }
+
+    @Test
+    void testCopyInto() {
+        var builder = new ConcurrentStreamBuilder<Integer>(3);
+        IntStream.range(0, 100).boxed().forEach(builder);
+        Integer[] dst = new Integer[102];
+        assertEquals(100, builder.copyInto(dst, 1));
+        assertArrayEquals(IntStream.range(0, 100).boxed().toArray(),
+                Arrays.copyOfRange(dst, 1, 101));
+        assertNull(dst[101]);
+        assertThrows(IllegalStateException.class, () -> builder.copyInto(dst, 0));
+
+        var smallBuilder = new ConcurrentStreamBuilder<Integer>();
+        IntStream.range(0, 10).boxed().forEach(smallBuilder);
+        assertThrows(IndexOutOfBoundsException.class, () -> smallBuilder.copyInto(dst, 95));
+    }
+
+    @Test
+    void testSequence() {
+        var builder = new ConcurrentStreamBuilder<Integer>(3);
+        builder.acceptAll(IntStream.range(0, 500).boxed().toArray(Integer[]::new));
+        IntStream.range(500, 1000).boxed().forEach(builder);
+        builder.accept(null);
+        var sequence = builder.buildSequence();
+        assertEquals(1001, sequence.size());
+        for (int i = 0; i < 1000; i++)
+            assertEquals(i, sequence.get(i));
+        assertNull(sequence.get(1000));
+        assertArrayEquals(IntStream.range(10, 600).boxed().toArray(),
+                sequence.stream(10, 600).toArray());
+        assertEquals(1001, sequence.stream().count());
+        assertThrows(IndexOutOfBoundsException.class, () -> sequence.get(1001));
+        assertThrows(IndexOutOfBoundsException.class, () -> sequence.stream(-1, 4));
+    }
+
+    @Test
+    void testBuildList() {
+        var builder = new ConcurrentStreamBuilder<Integer>(3);
+        IntStream.range(0, 100).boxed().forEach(builder);
+        builder.accept(null);
+        List<Integer> list = builder.buildList();
+        assertThrows(IllegalStateException.class, builder::buildList);
+
+        List<Integer> expected = new ArrayList<>();
+        IntStream.range(0, 100).forEach(expected::add);
+        expected.add(null);
+        assertEquals(expected, list);
+        assertEquals(expected.hashCode(), list.hashCode());
+        assertTrue(list instanceof RandomAccess);
+        assertEquals(101, list.size());
+        assertNull(list.get(100));
+        assertEquals(50, list.indexOf(50));
+        assertEquals(expected.subList(10, 20), list.subList(10, 20));
+        assertEquals(expected, list.stream().collect(Collectors.toList()));
+        assertEquals(expected, list.parallelStream().collect(Collectors.toList()));
+
+        var traversed = new ArrayList<Integer>();
+        list.forEach(traversed::add);
+        assertEquals(expected, traversed);
+
+        assertThrows(IndexOutOfBoundsException.class, () -> list.get(101));
+        assertThrows(UnsupportedOperationException.class, () -> list.add(1));
+        assertThrows(UnsupportedOperationException.class, () -> list.set(0, 1));
+        assertThrows(UnsupportedOperationException.class, () -> list.remove(0));
+    }
+
+    @Test
+    void testReset() {
+        var builder = new ConcurrentStreamBuilder<Car>(3);
+        for (int i = 0; i < 100; i++)
+            builder.accept(RED_CAR);
+        assertEquals(100, builder.build().count());
+
+        builder.reset();
+        builder.accept(null);
+        builder.accept(RED_CAR);
+        assertEquals(Arrays.asList(null, RED_CAR), builder.buildList());
+    }
+
+    @Test
+    void testStreaming() throws InterruptedException {
+        var builder = new ConcurrentStreamBuilder<String>(
+                BuilderOptions.defaults().withInitialCapacity(2).withStreaming(true));
+        var consumed = new ArrayList<String>();
+        assertFalse(builder.poll(consumed::add));
+        builder.accept("a");
+        builder.accept(null);
+        assertTrue(builder.take(consumed::add));
+        builder.acceptAll(new String[] { "b", "c", "d" });
+        assertEquals(4, builder.drain(consumed::add));
+        assertEquals(Arrays.asList("a", null, "b", "c", "d"), consumed);
+
+        builder.build();
+        assertFalse(builder.take(consumed::add));
+    }
+
+    @Test
+    void testRotate() {
+        var builder = new ConcurrentStreamBuilder<String>(
+                BuilderOptions.defaults().withInitialCapacity(2).withRotation(true));
+        builder.accept("a");
+        builder.accept(null);
+        builder.accept("b");
+        assertEquals(Arrays.asList("a", null, "b"), builder.rotate().collect(Collectors.toList()));
+        builder.acceptAll(new String[] { "c", "d" });
+        assertEquals(Arrays.asList("c", "d"), builder.rotate().collect(Collectors.toList()));
+        assertEquals(0, builder.build().count());
+    }
+
+    @Test
+    void testElementLimit() {
+        var builder = new ConcurrentStreamBuilder<String>(
+                BuilderOptions.defaults().withElementLimit(2));
+        builder.accept("a");
+        assertTrue(builder.tryAccept(null));
+        assertFalse(builder.tryAccept("b"));
+        assertThrows(IllegalStateException.class, () -> builder.accept("b"));
+        assertEquals(Arrays.asList("a", null), builder.build().collect(Collectors.toList()));
+    }
+
+    @Test
+    void testHintedGrowthPolicy() throws InterruptedException {
+        var builder = new ConcurrentStreamBuilder<Integer>(
+                BuilderOptions.defaults().withGrowthPolicy(GrowthPolicy.hinted(500)));
+        int runs = TestUtils.withContention(() -> builder.accept(1));
+        assertEquals(runs, builder.build().mapToInt(Integer::intValue).sum());
+    }
+
+    @Test
+    void testAcceptAllWithContention() throws InterruptedException {
+        var builder = new ConcurrentStreamBuilder<Car>(1);
+        Car[] values = new Car[] { RED_CAR, GREEN_CAR, BLUE_CAR };
+        int runs = TestUtils.withContention(() -> builder.acceptAll(values));
+        assertEquals(runs, builder.build().filter(car -> car == GREEN_CAR).count());
+    }
+
+    @Test
+    void testChunkedAcceptsWithContention() throws InterruptedException {
+        var builder = new ConcurrentStreamBuilder<Car>(
+                BuilderOptions.defaults().withChunkSize(64));
+        int expectedCount = TestUtils.withContention(() -> builder.add(RED_CAR));
+        Car[] elements = builder.build().toArray(Car[]::new);
+        assertEquals(expectedCount, elements.length);
+        for (int i = 0; i < expectedCount; i++)
+            assertEquals(RED_CAR, elements[i]);
+    }
+
     private static class Car {
         private final String color;
 
@@ -0,0 +1,97 @@
+package me.hugmanrique.riviere;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.DoubleStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class OffHeapConcurrentDoubleStreamBuilderTests {
+
+    @Test
+    void testAccepts() {
+        try (var builder = new OffHeapConcurrentDoubleStreamBuilder()) {
+            builder.accept(1);
+            assertEquals(builder, builder.add(2));
+        }
+    }
+
+    @Test
+    void testBuild() {
+        try (var builder = new OffHeapConcurrentDoubleStreamBuilder(
+                BuilderOptions.defaults().withInitialCapacity(3))) {
+            double[] values = ThreadLocalRandom.current().doubles(1000).toArray();
+            Arrays.stream(values, 0, 50).forEach(builder);
+            builder.acceptAll(values, 50, 950);
+
+            assertArrayEquals(values, builder.build().toArray());
+        }
+    }
+
+    @Test
+    void testEmptyBuild() {
+        try (var builder = new OffHeapConcurrentDoubleStreamBuilder()) {
+            assertEquals(0, builder.build().count());
+        }
+    }
+
+    @Test
+    void testBuiltStateChecks() {
+        try (var builder = new OffHeapConcurrentDoubleStreamBuilder()) {
+            builder.accept(2);
+            builder.build();
+            assertThrows(IllegalStateException.class, builder::build);
+            assertThrows(IllegalStateException.class, () -> builder.accept(2));
+        }
+    }
+
+    @Test
+    void testClose() {
+        var builder = new OffHeapConcurrentDoubleStreamBuilder();
+        DoubleStream.of(1, 2, 3).forEach(builder);
+        var spliterator = builder.build().spliterator();
+        builder.close();
+        builder.close();
+        assertThrows(IllegalStateException.class,
+                () -> spliterator.tryAdvance((double value) -> {}));
+        assertThrows(IllegalStateException.class, () -> builder.accept(1));
+    }
+
+    @Test
+    void testToArray() {
+        try (var builder = new OffHeapConcurrentDoubleStreamBuilder(
+                BuilderOptions.defaults().withInitialCapacity(3))) {
+            double[] values = ThreadLocalRandom.current().doubles(100).toArray();
+            builder.acceptAll(values);
+            assertArrayEquals(values, builder.toArray());
+        }
+    }
+
+    @Test
+    void testSpill(@TempDir final Path directory) {
+        try (var builder = new OffHeapConcurrentDoubleStreamBuilder(
+                BuilderOptions.defaults().withInitialCapacity(4),
+                SpillOptions.defaults().withDirectory(directory).withMemoryNodes(2))) {
+            double[] values = ThreadLocalRandom.current().doubles(10_000).toArray();
+            Arrays.stream(values).forEach(builder);
+            assertArrayEquals(values, builder.toArray());
+        }
+    }
+
+    @Test
+    void testAcceptsWithContention() throws InterruptedException {
+        try (var builder = new OffHeapConcurrentDoubleStreamBuilder(
+                BuilderOptions.defaults().withChunkSize(16))) {
+            int expectedCount = TestUtils.withContention(() -> builder.add(0.5));
+            double[] elements = builder.build().toArray();
+            assertEquals(expectedCount, elements.length);
+            for (double element : elements)
+                assertEquals(0.5, element);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package me.hugmanrique.riviere;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class OffHeapConcurrentIntStreamBuilderTests {
+
+    @Test
+    void testAccepts() {
+        try (var builder = new OffHeapConcurrentIntStreamBuilder()) {
+            builder.accept(1);
+            assertEquals(builder, builder.add(2));
+        }
+    }
+
+    @Test
+    void testBuild() {
+        try (var builder = new OffHeapConcurrentIntStreamBuilder(
+                BuilderOptions.defaults().withInitialCapacity(3))) {
+            IntStream.range(0, 50).forEach(builder);
+            builder.acceptAll(IntStream.range(50, 1000).toArray());
+            builder.acceptAll(new int[] { -1, 1000, -1 }, 1, 1);
+
+            assertArrayEquals(IntStream.rangeClosed(0, 1000).toArray(), builder.build().toArray());
+        }
+    }
+
+    @Test
+    void testEmptyBuild() {
+        try (var builder = new OffHeapConcurrentIntStreamBuilder()) {
+            assertEquals(0, builder.build().count());
+        }
+    }
+
+    @Test
+    void testBuiltStateChecks() {
+        try (var builder = new OffHeapConcurrentIntStreamBuilder()) {
+            builder.accept(2);
+            builder.build();
+            assertThrows(IllegalStateException.class, builder::build);
+            assertThrows(IllegalStateException.class, () -> builder.accept(2));
+        }
+    }
+
+    @Test
+    void testClose() {
+        var builder = new OffHeapConcurrentIntStreamBuilder();
+        IntStream.range(0, 100).forEach(builder);
+        var spliterator = builder.build().spliterator();
+        builder.close();
+        builder.close();
+        assertThrows(IllegalStateException.class, () -> spliterator.tryAdvance((int value) -> {}));
+        assertThrows(IllegalStateException.class,
+                () -> spliterator.forEachRemaining((int value) -> {}));
+
+        var unbuiltBuilder = new OffHeapConcurrentIntStreamBuilder();
+        unbuiltBuilder.close();
+        assertThrows(IllegalStateException.class, () -> unbuiltBuilder.accept(1));
+        assertThrows(IllegalStateException.class, unbuiltBuilder::build);
+    }
+
+    @Test
+    void testModesNotSupported() {
+        var options = BuilderOptions.defaults().withStreaming(true);
+        assertThrows(IllegalArgumentException.class,
+                () -> new OffHeapConcurrentIntStreamBuilder(options));
+        var rotationOptions = BuilderOptions.defaults().withRotation(true);
+        assertThrows(IllegalArgumentException.class,
+                () -> new OffHeapConcurrentIntStreamBuilder(rotationOptions));
+        var limitOptions = BuilderOptions.defaults().withElementLimit(10);
+        assertThrows(IllegalArgumentException.class,
+                () -> new OffHeapConcurrentIntStreamBuilder(limitOptions));
+        var preallocationOptions = BuilderOptions.defaults().withPreallocation(0.5);
+        assertThrows(IllegalArgumentException.class,
+                () -> new OffHeapConcurrentIntStreamBuilder(preallocationOptions));
+        var statisticsOptions = BuilderOptions.defaults().withStatistics(true);
+        assertThrows(IllegalArgumentException.class,
+                () -> new OffHeapConcurrentIntStreamBuilder(statisticsOptions));
+        var distinctOptions = BuilderOptions.defaults().withDistinct(true);
+        assertThrows(IllegalArgumentException.class,
+                () -> new OffHeapConcurrentIntStreamBuilder(distinctOptions));
+    }
+
+    @Test
+    void testToArray() {
+        try (var builder = new OffHeapConcurrentIntStreamBuilder(
+                BuilderOptions.defaults().withInitialCapacity(3))) {
+            IntStream.range(0, 100).forEach(builder);
+            assertArrayEquals(IntStream.range(0, 100).toArray(), builder.toArray());
+        }
+    }
+
+    @Test
+    void testSpill(@TempDir final Path directory) {
+        try (var builder = new OffHeapConcurrentIntStreamBuilder(
+                BuilderOptions.defaults().withInitialCapacity(4),
+                SpillOptions.defaults().withDirectory(directory).withMemoryNodes(2))) {
+            IntStream.range(0, 10_000).forEach(builder);
+            assertArrayEquals(IntStream.range(0, 10_000).toArray(), builder.build().toArray());
+        }
+    }
+
+    @Test
+    void testSplits() {
+        try (var builder = new OffHeapConcurrentIntStreamBuilder(
+                BuilderOptions.defaults().withInitialCapacity(3))) {
+            IntStream.range(0, 1000).forEach(builder);
+            assertEquals(1000, TestUtils.assertExactSplits(builder.build().spliterator()));
+        }
+    }
+
+    @Test
+    void testAcceptsWithContention() throws InterruptedException {
+        try (var builder = new OffHeapConcurrentIntStreamBuilder()) {
+            int expectedCount = TestUtils.withContention(() -> builder.add(1));
+            assertEquals(expectedCount, builder.build().sum());
+        }
+    }
+
+    @Test
+    void testChunkedAcceptAfterClose() {
+        var builder = new OffHeapConcurrentIntStreamBuilder(
+                BuilderOptions.defaults().withChunkSize(64));
+        builder.accept(1);
+        builder.close();
+        // The chunk of the thread has unused slots in a released buffer
+        assertThrows(IllegalStateException.class, () -> builder.accept(2));
+        assertThrows(IllegalStateException.class, () -> builder.acceptAll(new int[] { 2 }));
+    }
+
+    @Test
+    void testChunkedAcceptsWithContention() throws InterruptedException {
+        try (var builder = new OffHeapConcurrentIntStreamBuilder(
+                BuilderOptions.defaults().withInitialCapacity(8).withChunkSize(32))) {
+            var threadIndices = new AtomicInteger();
+            var threadCounts = ThreadLocal.withInitial(
+                    () -> new int[] { threadIndices.getAndIncrement(), 0 });
+            int expectedCount = TestUtils.withContention(() -> {
+                int[] state = threadCounts.get();
+                builder.add(state[0] * 1000 + state[1]++);
+            });
+            int[] elements = builder.build().toArray();
+            assertEquals(expectedCount, elements.length);
+
+            // Elements added by the same thread remain in order
+            int[] nextCounts = new int[threadIndices.get()];
+            for (int element : elements)
+                assertEquals(nextCounts[element / 1000]++, element % 1000);
+        }
+    }
+}
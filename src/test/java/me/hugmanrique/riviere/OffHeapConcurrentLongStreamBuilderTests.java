@@ -0,0 +1,196 @@
+package me.hugmanrique.riviere;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.LongStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class OffHeapConcurrentLongStreamBuilderTests {
+
+    @Test
+    void testAccepts() {
+        try (var builder = new OffHeapConcurrentLongStreamBuilder()) {
+            builder.accept(1);
+            assertEquals(builder, builder.add(2));
+        }
+    }
+
+    @Test
+    void testBuild() {
+        try (var builder = new OffHeapConcurrentLongStreamBuilder(
+                BuilderOptions.defaults().withInitialCapacity(3))) {
+            LongStream.range(0, 50).forEach(builder);
+            builder.acceptAll(LongStream.range(50, 1000).toArray());
+            builder.acceptAll(new long[] { -1, 1000, -1 }, 1, 1);
+
+            assertArrayEquals(LongStream.rangeClosed(0, 1000).toArray(), builder.build().toArray());
+        }
+    }
+
+    @Test
+    void testEmptyBuild() {
+        try (var builder = new OffHeapConcurrentLongStreamBuilder()) {
+            assertEquals(0, builder.build().count());
+        }
+    }
+
+    @Test
+    void testBuiltStateChecks() {
+        try (var builder = new OffHeapConcurrentLongStreamBuilder()) {
+            builder.accept(2);
+            builder.build();
+            assertThrows(IllegalStateException.class, builder::build);
+            assertThrows(IllegalStateException.class, () -> builder.accept(2));
+        }
+    }
+
+    @Test
+    void testClose() {
+        var builder = new OffHeapConcurrentLongStreamBuilder();
+        LongStream.range(0, 100).forEach(builder);
+        var spliterator = builder.build().spliterator();
+        builder.close();
+        builder.close();
+        assertThrows(IllegalStateException.class, () -> spliterator.tryAdvance((long value) -> {}));
+        assertThrows(IllegalStateException.class,
+                () -> spliterator.forEachRemaining((long value) -> {}));
+
+        var unbuiltBuilder = new OffHeapConcurrentLongStreamBuilder();
+        unbuiltBuilder.close();
+        assertThrows(IllegalStateException.class, () -> unbuiltBuilder.accept(1));
+        assertThrows(IllegalStateException.class, unbuiltBuilder::build);
+    }
+
+    @Test
+    void testToArray() {
+        try (var builder = new OffHeapConcurrentLongStreamBuilder(
+                BuilderOptions.defaults().withInitialCapacity(3))) {
+            LongStream.range(0, 100).forEach(builder);
+            assertArrayEquals(LongStream.range(0, 100).toArray(), builder.toArray());
+        }
+    }
+
+    @Test
+    void testSpill(@TempDir final Path directory) throws IOException {
+        var builder = new OffHeapConcurrentLongStreamBuilder(
+                BuilderOptions.defaults().withInitialCapacity(4),
+                SpillOptions.defaults().withDirectory(directory).withMemoryNodes(2));
+        LongStream.range(0, 5000).forEach(builder);
+        builder.acceptAll(LongStream.range(5000, 100_000).toArray());
+        assertArrayEquals(LongStream.range(0, 100_000).toArray(), builder.build().toArray());
+
+        builder.close();
+        try (var files = Files.list(directory)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void testChunkedSpillWithContention(@TempDir final Path directory)
+            throws InterruptedException {
+        try (var builder = new OffHeapConcurrentLongStreamBuilder(
+                BuilderOptions.defaults().withInitialCapacity(8).withChunkSize(32),
+                SpillOptions.defaults().withDirectory(directory).withMemoryNodes(1))) {
+            int expectedCount = TestUtils.withContention(() -> builder.add(1));
+            assertEquals(expectedCount, builder.build().sum());
+        }
+    }
+
+    @Test
+    void testSpillDiskLimit(@TempDir final Path directory) {
+        // The head node holds 4 elements, the mapped second node holds 8
+        try (var builder = new OffHeapConcurrentLongStreamBuilder(
+                BuilderOptions.defaults().withInitialCapacity(4),
+                SpillOptions.defaults().withDirectory(directory).withMemoryNodes(1)
+                        .withDiskLimit(8 * Long.BYTES))) {
+            LongStream.range(0, 12).forEach(builder);
+            assertThrows(IllegalStateException.class, () -> builder.accept(12));
+            assertArrayEquals(LongStream.range(0, 12).toArray(), builder.toArray());
+        }
+    }
+
+    @Test
+    void testExactSpillDiskLimitWithContention(@TempDir final Path directory)
+            throws InterruptedException {
+        int threadCount = 32;
+        int perThread = 20_000;
+        // The head node holds 4 elements, the mapped nodes hold the rest
+        long diskLimit = 0;
+        for (long capacity = 8, total = 4; total < threadCount * perThread; capacity <<= 1) {
+            diskLimit += capacity * Long.BYTES;
+            total += capacity;
+        }
+        for (int round = 0; round < 10; round++) {
+            try (var builder = new OffHeapConcurrentLongStreamBuilder(
+                    BuilderOptions.defaults().withInitialCapacity(4),
+                    SpillOptions.defaults().withDirectory(directory).withMemoryNodes(1)
+                            .withDiskLimit(diskLimit))) {
+                var failures = new AtomicInteger();
+                int expectedCount = TestUtils.withContention(() -> {
+                    try {
+                        builder.add(1);
+                    } catch (final IllegalStateException e) {
+                        failures.incrementAndGet();
+                    }
+                }, threadCount, perThread);
+                assertEquals(0, failures.get());
+                assertEquals(expectedCount, builder.build().sum());
+            }
+        }
+    }
+
+    @Test
+    void testInvalidSpillOptions() {
+        assertThrows(IllegalArgumentException.class,
+                () -> SpillOptions.defaults().withMemoryNodes(0));
+        assertThrows(IllegalArgumentException.class,
+                () -> SpillOptions.defaults().withDiskLimit(0));
+        assertThrows(NullPointerException.class,
+                () -> SpillOptions.defaults().withDirectory(null));
+    }
+
+    @Test
+    void testSplits() {
+        try (var builder = new OffHeapConcurrentLongStreamBuilder(
+                BuilderOptions.defaults().withInitialCapacity(3))) {
+            LongStream.range(0, 1000).forEach(builder);
+            assertEquals(1000, TestUtils.assertExactSplits(builder.build().spliterator()));
+        }
+    }
+
+    @Test
+    void testAcceptsWithContention() throws InterruptedException {
+        try (var builder = new OffHeapConcurrentLongStreamBuilder()) {
+            int expectedCount = TestUtils.withContention(() -> builder.add(1));
+            assertEquals(expectedCount, builder.build().sum());
+        }
+    }
+
+    @Test
+    void testChunkedAcceptsWithContention() throws InterruptedException {
+        try (var builder = new OffHeapConcurrentLongStreamBuilder(
+                BuilderOptions.defaults().withInitialCapacity(8).withChunkSize(32))) {
+            var threadIndices = new AtomicInteger();
+            var threadCounts = ThreadLocal.withInitial(
+                    () -> new int[] { threadIndices.getAndIncrement(), 0 });
+            int expectedCount = TestUtils.withContention(() -> {
+                int[] state = threadCounts.get();
+                builder.add(state[0] * 1000 + state[1]++);
+            });
+            long[] elements = builder.build().toArray();
+            assertEquals(expectedCount, elements.length);
+
+            // Elements added by the same thread remain in order
+            int[] nextCounts = new int[threadIndices.get()];
+            for (long element : elements)
+                assertEquals(nextCounts[(int) (element / 1000)]++, element % 1000);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package me.hugmanrique.riviere;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+public class RiviereCollectorsTests {
+
+    private static final int SIZE = 100_000;
+
+    @Test
+    void testToStream() {
+        List<Integer> sequential = IntStream.range(0, SIZE).boxed()
+                .collect(RiviereCollectors.toStream())
+                .collect(Collectors.toList());
+        assertEquals(IntStream.range(0, SIZE).boxed().collect(Collectors.toList()), sequential);
+
+        // Splits are accumulated into separate builders
+        List<Integer> parallel = IntStream.range(0, SIZE).boxed().parallel()
+                .collect(RiviereCollectors.toStream())
+                .collect(Collectors.toList());
+        assertEquals(sequential, parallel);
+    }
+
+    @Test
+    void testToStreamUnorderedSource() {
+        Set<Integer> source = new HashSet<>();
+        IntStream.range(0, SIZE).forEach(source::add);
+        // The shared builder is used, since the source is unordered
+        Set<Integer> collected = source.parallelStream()
+                .collect(RiviereCollectors.toStream())
+                .collect(Collectors.toSet());
+        assertEquals(source, collected);
+    }
+
+    @Test
+    void testToPrimitiveStreams() {
+        int[] expected = IntStream.range(0, SIZE).toArray();
+        assertArrayEquals(expected, IntStream.range(0, SIZE).boxed().parallel()
+                .collect(RiviereCollectors.toIntStream(Integer::intValue))
+                .toArray());
+        assertArrayEquals(IntStream.range(0, SIZE).asLongStream().toArray(),
+                IntStream.range(0, SIZE).boxed().parallel()
+                        .collect(RiviereCollectors.toLongStream(Integer::longValue))
+                        .toArray());
+        assertArrayEquals(IntStream.range(0, SIZE).asDoubleStream().toArray(),
+                IntStream.range(0, SIZE).boxed().parallel()
+                        .collect(RiviereCollectors.toDoubleStream(Integer::doubleValue))
+                        .toArray());
+    }
+
+    @Test
+    void testToUnorderedStreams() {
+        long expected = IntStream.range(0, SIZE).asLongStream().sum();
+        assertEquals(expected, IntStream.range(0, SIZE).boxed().parallel()
+                .collect(RiviereCollectors.toUnorderedStream())
+                .mapToLong(Integer::longValue)
+                .sum());
+        assertEquals(expected, IntStream.range(0, SIZE).boxed().parallel()
+                .collect(RiviereCollectors.toUnorderedIntStream(Integer::intValue))
+                .asLongStream()
+                .sum());
+        assertEquals(expected, IntStream.range(0, SIZE).boxed().parallel()
+                .collect(RiviereCollectors.toUnorderedLongStream(Integer::longValue))
+                .sum());
+        assertEquals(expected, (long) IntStream.range(0, SIZE).boxed().parallel()
+                .collect(RiviereCollectors.toUnorderedDoubleStream(Integer::doubleValue))
+                .sum());
+    }
+
+    @Test
+    void testCharacteristics() {
+        Set<Collector.Characteristics> ordered = RiviereCollectors.toStream().characteristics();
+        assertEquals(Set.of(Collector.Characteristics.CONCURRENT), ordered);
+        Set<Collector.Characteristics> unordered =
+                RiviereCollectors.toUnorderedIntStream(Integer::intValue).characteristics();
+        assertTrue(unordered.contains(Collector.Characteristics.CONCURRENT));
+        assertTrue(unordered.contains(Collector.Characteristics.UNORDERED));
+    }
+}
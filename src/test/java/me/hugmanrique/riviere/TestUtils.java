@@ -1,8 +1,10 @@
 package me.hugmanrique.riviere;
 
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Queue;
+import java.util.Spliterator;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
@@ -107,6 +109,55 @@ final class TestUtils {
         }
     }
 
+    /**
+     * Recursively splits the given {@link Spliterator} until no further
+     * splits are possible, asserting every split reports the exact
+     * number of elements it traverses.
+     *
+     * @param spliterator the {@code SIZED} and {@code SUBSIZED} spliterator
+     * @return the number of elements traversed
+     */
+    static long assertExactSplits(final Spliterator<?> spliterator) {
+        long expected = spliterator.getExactSizeIfKnown();
+        if (expected < 0)
+            throw new AssertionError("Spliterator is not SIZED");
+        Spliterator<?> prefix = spliterator.trySplit();
+        long traversed = 0;
+        if (prefix != null) {
+            traversed += assertExactSplits(prefix);
+            traversed += assertExactSplits(spliterator);
+        } else {
+            long[] count = new long[1];
+            spliterator.forEachRemaining(element -> count[0]++);
+            traversed = count[0];
+        }
+        if (traversed != expected)
+            throw new AssertionError("Expected " + expected + " elements, got " + traversed);
+        return traversed;
+    }
+
+    /**
+     * Asserts the given {@link Runnable} allocates less than one byte
+     * per operation on the current thread, once warmed up.
+     *
+     * <p>This relies on the HotSpot-specific
+     * {@link com.sun.management.ThreadMXBean} extension.
+     *
+     * @param runnable the task to measure
+     * @param operations the number of operations performed by the task
+     */
+    static void assertAllocationFree(final Runnable runnable, final int operations) {
+        var bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        runnable.run(); // warm up
+        long before = bean.getThreadAllocatedBytes(threadId);
+        runnable.run();
+        long allocated = bean.getThreadAllocatedBytes(threadId) - before;
+        if (allocated >= operations)
+            throw new AssertionError("Allocated " + allocated + " bytes in "
+                    + operations + " operations");
+    }
+
     private TestUtils() {
         throw new AssertionError();
     }
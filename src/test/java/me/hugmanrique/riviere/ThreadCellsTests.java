@@ -0,0 +1,64 @@
+package me.hugmanrique.riviere;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+public class ThreadCellsTests {
+
+    @Test
+    void testReclaimsTerminatedThreads() throws InterruptedException {
+        var cells = new ThreadCells<int[]>(() -> new int[1]);
+        cells.get()[0] = 1;
+        int total = 1;
+        int[] sum = new int[1];
+        for (int round = 0; round < 100; round++) {
+            for (int i = 0; i < 10; i++) {
+                var thread = new Thread(() -> cells.get()[0] = 1);
+                thread.start();
+                thread.join();
+                total++;
+            }
+            assertTrue(cells.size() <= 11);
+            // The last update of each terminated thread is visible once
+            cells.forEachReclaiming(cell -> {
+                sum[0] += cell[0];
+                cell[0] = 0;
+            });
+            assertEquals(1, cells.size());
+        }
+        assertEquals(total, sum[0]);
+    }
+
+    @Test
+    void testKeepsLiveThreads() throws InterruptedException {
+        var cells = new ThreadCells<>(Object::new);
+        var registered = new CountDownLatch(1);
+        var done = new CountDownLatch(1);
+        var thread = new Thread(() -> {
+            cells.get();
+            registered.countDown();
+            try {
+                done.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        thread.start();
+        registered.await();
+        var visited = new AtomicInteger();
+        cells.forEachReclaiming(cell -> visited.incrementAndGet());
+        assertEquals(1, visited.get());
+        assertEquals(1, cells.size());
+
+        done.countDown();
+        thread.join();
+        cells.forEach(cell -> visited.incrementAndGet());
+        assertEquals(2, visited.get());
+        cells.forEachReclaiming(cell -> visited.incrementAndGet());
+        assertEquals(0, cells.size());
+    }
+}
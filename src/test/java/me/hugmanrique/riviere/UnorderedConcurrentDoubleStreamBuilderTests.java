@@ -0,0 +1,73 @@
+package me.hugmanrique.riviere;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Spliterator;
+import java.util.stream.DoubleStream;
+import org.junit.jupiter.api.Test;
+
+public class UnorderedConcurrentDoubleStreamBuilderTests {
+
+    @Test
+    void testAccepts() {
+        var builder = new UnorderedConcurrentDoubleStreamBuilder();
+        builder.accept(1);
+        assertEquals(builder, builder.add(2));
+    }
+
+    @Test
+    void testBuild() {
+        var builder = new UnorderedConcurrentDoubleStreamBuilder();
+        builder.accept(1);
+        builder.accept(2);
+        builder.accept(0);
+        builder.acceptAll(new double[] { 1, 3 });
+
+        double[] elements = builder.build().sorted().toArray();
+        assertArrayEquals(new double[] { 0, 1, 1, 2, 3 }, elements);
+    }
+
+    @Test
+    void testEmptyBuild() {
+        var builder = new UnorderedConcurrentDoubleStreamBuilder();
+        DoubleStream stream = builder.build();
+        assertEquals(0, stream.count());
+    }
+
+    @Test
+    void testBuiltStateChecks() {
+        var builder = new UnorderedConcurrentDoubleStreamBuilder();
+        builder.accept(2);
+        builder.build();
+        assertThrows(IllegalStateException.class, builder::build);
+        assertThrows(IllegalStateException.class, () -> builder.accept(2));
+    }
+
+    @Test
+    void testAcceptsWithContention() throws InterruptedException {
+        var builder = new UnorderedConcurrentDoubleStreamBuilder(BuilderOptions.defaults(), 4);
+        int expectedCount = TestUtils.withContention(() -> builder.add(1));
+        double[] elements = builder.build().toArray();
+        assertEquals(expectedCount, elements.length);
+        for (int i = 0; i < expectedCount; i++)
+            assertEquals(1, elements[i]);
+    }
+
+    @Test
+    void testSplits() throws InterruptedException {
+        var builder = new UnorderedConcurrentDoubleStreamBuilder(BuilderOptions.defaults(), 8);
+        int expectedCount = TestUtils.withContention(() -> builder.add(1));
+        Spliterator.OfDouble spliterator = builder.build().spliterator();
+        assertFalse(spliterator.hasCharacteristics(Spliterator.ORDERED));
+        assertEquals(expectedCount, TestUtils.assertExactSplits(spliterator));
+    }
+
+    @Test
+    void testInvalidLaneCount() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new UnorderedConcurrentDoubleStreamBuilder(BuilderOptions.defaults(), 0));
+    }
+}
@@ -0,0 +1,147 @@
+package me.hugmanrique.riviere;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.IntSummaryStatistics;
+import java.util.Spliterator;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+public class UnorderedConcurrentIntStreamBuilderTests {
+
+    @Test
+    void testAccepts() {
+        var builder = new UnorderedConcurrentIntStreamBuilder();
+        builder.accept(1);
+        assertEquals(builder, builder.add(2));
+    }
+
+    @Test
+    void testBuild() {
+        var builder = new UnorderedConcurrentIntStreamBuilder();
+        builder.accept(1);
+        builder.accept(2);
+        builder.accept(0);
+        builder.acceptAll(new int[] { 1, 3 });
+
+        int[] elements = builder.build().sorted().toArray();
+        assertArrayEquals(new int[] { 0, 1, 1, 2, 3 }, elements);
+    }
+
+    @Test
+    void testEmptyBuild() {
+        var builder = new UnorderedConcurrentIntStreamBuilder();
+        IntStream stream = builder.build();
+        assertEquals(0, stream.count());
+    }
+
+    @Test
+    void testBuiltStateChecks() {
+        var builder = new UnorderedConcurrentIntStreamBuilder();
+        builder.accept(2);
+        builder.build();
+        assertThrows(IllegalStateException.class, builder::build);
+        assertThrows(IllegalStateException.class, () -> builder.accept(2));
+    }
+
+    @Test
+    void testReset() throws InterruptedException {
+        var builder = new UnorderedConcurrentIntStreamBuilder(BuilderOptions.defaults(), 4);
+        assertThrows(IllegalStateException.class, builder::reset);
+        for (int run = 0; run < 3; run++) {
+            int expectedCount = TestUtils.withContention(() -> builder.add(1));
+            assertEquals(expectedCount, builder.build().sum());
+            builder.reset();
+        }
+    }
+
+    @Test
+    void testRotate() throws InterruptedException {
+        var builder = new UnorderedConcurrentIntStreamBuilder(
+                BuilderOptions.defaults().withRotation(true), 4);
+        int runs = TestUtils.withContention(() -> builder.accept(1));
+        assertEquals(runs, builder.rotate().sum());
+        builder.accept(2);
+        assertEquals(2, builder.rotate().sum());
+        assertEquals(0, builder.build().count());
+    }
+
+    @Test
+    void testElementLimit() {
+        var builder = new UnorderedConcurrentIntStreamBuilder(
+                BuilderOptions.defaults().withElementLimit(2), 4);
+        assertTrue(builder.tryAccept(1));
+        assertTrue(builder.tryAccept(2));
+        assertFalse(builder.tryAccept(3));
+        assertEquals(3, builder.build().sum());
+    }
+
+    @Test
+    void testMetrics() throws InterruptedException {
+        var builder = new UnorderedConcurrentIntStreamBuilder(
+                BuilderOptions.defaults().withMetrics(true), 4);
+        int runs = TestUtils.withContention(() -> builder.add(1));
+        BuilderMetrics metrics = builder.metrics();
+        assertEquals(runs, metrics.getEnqueues());
+        // Each lane allocates its head node
+        assertTrue(metrics.getAllocatedNodes() >= 4);
+        assertEquals(runs, builder.build().count());
+    }
+
+    @Test
+    void testStatistics() throws InterruptedException {
+        var builder = new UnorderedConcurrentIntStreamBuilder(
+                BuilderOptions.defaults().withStatistics(true), 4);
+        int runs = TestUtils.withContention(() -> builder.add(2));
+        builder.acceptAll(new int[] { 1, 3 });
+        assertEquals(runs + 2, builder.build().count());
+        IntSummaryStatistics statistics = builder.summaryStatistics();
+        assertEquals(runs + 2, statistics.getCount());
+        assertEquals(2L * runs + 4, statistics.getSum());
+        assertEquals(1, statistics.getMin());
+        assertEquals(3, statistics.getMax());
+    }
+
+    @Test
+    void testAcceptsWithContention() throws InterruptedException {
+        var builder = new UnorderedConcurrentIntStreamBuilder(BuilderOptions.defaults(), 4);
+        int expectedCount = TestUtils.withContention(() -> builder.add(1));
+        int[] elements = builder.build().toArray();
+        assertEquals(expectedCount, elements.length);
+        for (int i = 0; i < expectedCount; i++)
+            assertEquals(1, elements[i]);
+    }
+
+    @Test
+    void testSplits() throws InterruptedException {
+        var builder = new UnorderedConcurrentIntStreamBuilder(BuilderOptions.defaults(), 8);
+        int expectedCount = TestUtils.withContention(() -> builder.add(1));
+        Spliterator.OfInt spliterator = builder.build().spliterator();
+        assertFalse(spliterator.hasCharacteristics(Spliterator.ORDERED));
+        assertEquals(expectedCount, TestUtils.assertExactSplits(spliterator));
+    }
+
+    @Test
+    void testInvalidLaneCount() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new UnorderedConcurrentIntStreamBuilder(BuilderOptions.defaults(), 0));
+    }
+
+    @Test
+    void testDistinctNotSupported() {
+        var options = BuilderOptions.defaults().withDistinct(true);
+        assertThrows(IllegalArgumentException.class,
+                () -> new UnorderedConcurrentIntStreamBuilder(options));
+    }
+
+    @Test
+    void testStreamingNotSupported() {
+        var options = BuilderOptions.defaults().withStreaming(true);
+        assertThrows(IllegalArgumentException.class,
+                () -> new UnorderedConcurrentIntStreamBuilder(options));
+    }
+}
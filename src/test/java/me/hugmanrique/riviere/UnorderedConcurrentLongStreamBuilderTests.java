@@ -0,0 +1,73 @@
+package me.hugmanrique.riviere;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Spliterator;
+import java.util.stream.LongStream;
+import org.junit.jupiter.api.Test;
+
+public class UnorderedConcurrentLongStreamBuilderTests {
+
+    @Test
+    void testAccepts() {
+        var builder = new UnorderedConcurrentLongStreamBuilder();
+        builder.accept(1);
+        assertEquals(builder, builder.add(2));
+    }
+
+    @Test
+    void testBuild() {
+        var builder = new UnorderedConcurrentLongStreamBuilder();
+        builder.accept(1);
+        builder.accept(2);
+        builder.accept(0);
+        builder.acceptAll(new long[] { 1, 3 });
+
+        long[] elements = builder.build().sorted().toArray();
+        assertArrayEquals(new long[] { 0, 1, 1, 2, 3 }, elements);
+    }
+
+    @Test
+    void testEmptyBuild() {
+        var builder = new UnorderedConcurrentLongStreamBuilder();
+        LongStream stream = builder.build();
+        assertEquals(0, stream.count());
+    }
+
+    @Test
+    void testBuiltStateChecks() {
+        var builder = new UnorderedConcurrentLongStreamBuilder();
+        builder.accept(2);
+        builder.build();
+        assertThrows(IllegalStateException.class, builder::build);
+        assertThrows(IllegalStateException.class, () -> builder.accept(2));
+    }
+
+    @Test
+    void testAcceptsWithContention() throws InterruptedException {
+        var builder = new UnorderedConcurrentLongStreamBuilder(BuilderOptions.defaults(), 4);
+        int expectedCount = TestUtils.withContention(() -> builder.add(1));
+        long[] elements = builder.build().toArray();
+        assertEquals(expectedCount, elements.length);
+        for (int i = 0; i < expectedCount; i++)
+            assertEquals(1, elements[i]);
+    }
+
+    @Test
+    void testSplits() throws InterruptedException {
+        var builder = new UnorderedConcurrentLongStreamBuilder(BuilderOptions.defaults(), 8);
+        int expectedCount = TestUtils.withContention(() -> builder.add(1));
+        Spliterator.OfLong spliterator = builder.build().spliterator();
+        assertFalse(spliterator.hasCharacteristics(Spliterator.ORDERED));
+        assertEquals(expectedCount, TestUtils.assertExactSplits(spliterator));
+    }
+
+    @Test
+    void testInvalidLaneCount() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new UnorderedConcurrentLongStreamBuilder(BuilderOptions.defaults(), 0));
+    }
+}
@@ -0,0 +1,74 @@
+package me.hugmanrique.riviere;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+
+public class UnorderedConcurrentStreamBuilderTests {
+
+    @Test
+    void testAccepts() {
+        var builder = new UnorderedConcurrentStreamBuilder<String>();
+        builder.accept("a");
+        assertEquals(builder, builder.add("b"));
+    }
+
+    @Test
+    void testBuild() {
+        var builder = new UnorderedConcurrentStreamBuilder<String>();
+        builder.accept("b");
+        builder.accept("a");
+        builder.acceptAll(new String[] { "c", "a" });
+
+        List<String> elements = builder.build().sorted().collect(Collectors.toList());
+        assertEquals(List.of("a", "a", "b", "c"), elements);
+    }
+
+    @Test
+    void testNullElements() {
+        var builder = new UnorderedConcurrentStreamBuilder<String>();
+        builder.add(null).add("a").add(null);
+        assertEquals(2, builder.build().filter(element -> element == null).count());
+    }
+
+    @Test
+    void testEmptyBuild() {
+        var builder = new UnorderedConcurrentStreamBuilder<String>();
+        Stream<String> stream = builder.build();
+        assertEquals(0, stream.count());
+    }
+
+    @Test
+    void testBuiltStateChecks() {
+        var builder = new UnorderedConcurrentStreamBuilder<String>();
+        builder.accept("a");
+        builder.build();
+        assertThrows(IllegalStateException.class, builder::build);
+        assertThrows(IllegalStateException.class, () -> builder.accept("b"));
+    }
+
+    @Test
+    void testAcceptsWithContention() throws InterruptedException {
+        var builder = new UnorderedConcurrentStreamBuilder<String>(BuilderOptions.defaults(), 4);
+        int expectedCount = TestUtils.withContention(() -> builder.add("a"));
+        Object[] elements = builder.build().toArray();
+        assertEquals(expectedCount, elements.length);
+        for (int i = 0; i < expectedCount; i++)
+            assertEquals("a", elements[i]);
+    }
+
+    @Test
+    void testSplits() throws InterruptedException {
+        var builder = new UnorderedConcurrentStreamBuilder<String>(BuilderOptions.defaults(), 8);
+        int expectedCount = TestUtils.withContention(() -> builder.add("a"));
+        Spliterator<String> spliterator = builder.build().spliterator();
+        assertFalse(spliterator.hasCharacteristics(Spliterator.ORDERED));
+        assertEquals(expectedCount, TestUtils.assertExactSplits(spliterator));
+    }
+}